@@ -0,0 +1,38 @@
+package QLNKcom.example.QLNK.DTO.data;
+
+import QLNKcom.example.QLNK.enums.Downsampling;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+
+import java.time.Duration;
+import java.time.Instant;
+
+@Data
+public class HistoryRequest {
+    @NotBlank(message = "Feed is required")
+    private String feed;
+
+    @NotNull(message = "From is required")
+    private Instant from;
+
+    @NotNull(message = "To is required")
+    private Instant to;
+
+    // next value of the previous page, NONE only
+    private String cursor;
+
+    @Positive(message = "Limit must be a positive number")
+    private Integer limit;
+
+    private Downsampling downsample = Downsampling.NONE;
+
+    // readings to keep, LTTB only
+    @Min(value = 3, message = "Points must be at least 3")
+    private Integer points;
+
+    // bucket width in whole seconds, e.g. PT5M, AVERAGE only
+    private Duration bucket;
+}
@@ -16,6 +16,9 @@ public class CreateFeedRuleRequest {
     @PositiveOrZero(message = "Floor must be a positive number")
     private Double floor;
 
+    @PositiveOrZero(message = "Hysteresis must be a positive number")
+    private Double hysteresis;
+
     private String outputFeedAbove;
 
     private String outputFeedBelow;
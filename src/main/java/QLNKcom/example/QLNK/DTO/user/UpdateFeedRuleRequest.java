@@ -17,6 +17,9 @@ public class UpdateFeedRuleRequest {
     @PositiveOrZero(message = "Floor must be a positive number")
     private Double floor;
 
+    @PositiveOrZero(message = "Hysteresis must be a positive number")
+    private Double hysteresis;
+
     private String outputFeedAbove;
 
     private String outputFeedBelow;
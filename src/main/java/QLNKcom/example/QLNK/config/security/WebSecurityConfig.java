@@ -36,6 +36,8 @@ public class WebSecurityConfig {
                 .pathMatchers("/" + apiPrefix + "/auth/logout").authenticated()
                 .pathMatchers("/" + apiPrefix + "/**").authenticated()
                 .pathMatchers("/ws").permitAll()
+                .pathMatchers("/actuator/health").permitAll()
+                .pathMatchers("/actuator/**").authenticated()
                 .anyExchange().authenticated()
         );
         http.addFilterBefore(jwtAuthenticationFilter, SecurityWebFiltersOrder.AUTHENTICATION);
@@ -33,6 +33,7 @@ public class MqttReactiveWebSocketHandler implements WebSocketHandler {
     private final MqttService mqttService;
     private final UserProvider userProvider;
     private final ObjectMapper objectMapper;
+    private final WebSocketFeedFilter webSocketFeedFilter;
 
 
     @Override
@@ -139,7 +140,7 @@ public class MqttReactiveWebSocketHandler implements WebSocketHandler {
 
         // Handle outgoing messages as a Flux
         Mono<Void> sendFlux = session.send(sessionManager.getUserFlux(userId)
-                        .filter(json -> shouldSendData(json, feed))
+                        .filter(json -> webSocketFeedFilter.shouldSendData(json, feed))
                         .map(session::textMessage))
                 .doOnError(error -> log.error("❌ Send error for user {}: {}", userId, error.getMessage(), error));
 
@@ -168,16 +169,4 @@ public class MqttReactiveWebSocketHandler implements WebSocketHandler {
         }
     }
 
-
-    private boolean shouldSendData(String json, String requestedKey) {
-        try {
-            JsonNode jsonNode = objectMapper.readTree(json);
-            String key = jsonNode.get("key").asText();
-            return requestedKey == null || key.equals(requestedKey);
-        } catch (Exception e) {
-            log.error("❌ Error parsing JSON: {}", json, e);
-            return false;
-        }
-    }
-
 }
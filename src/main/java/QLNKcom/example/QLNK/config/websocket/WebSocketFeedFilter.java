@@ -0,0 +1,46 @@
+package QLNKcom.example.QLNK.config.websocket;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Decides whether a reading is pushed to a WebSocket session opened with {@code ?key=feedKey}.
+ * Runs for every reading and every session, so the top-level {@code key} field is read with Jackson's streaming parser
+ * and the parse stops as soon as it is found.
+ */
+@Component
+@Slf4j
+public class WebSocketFeedFilter {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * @param requestedKey the feed key the session asked for, or {@code null} for every feed
+     * @return whether the message has a top-level {@code key} and it matches {@code requestedKey}
+     */
+    public boolean shouldSendData(String json, String requestedKey) {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return false;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if ("key".equals(field) && token.isScalarValue()) {
+                    return requestedKey == null || requestedKey.equals(parser.getText());
+                }
+                parser.skipChildren();
+            }
+            log.debug("Message without a key is not sent: {}", json);
+            return false;
+        } catch (IOException e) {
+            log.error("❌ Error parsing JSON: {}", json, e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package QLNKcom.example.QLNK.controller.data;
+
+import QLNKcom.example.QLNK.DTO.data.HistoryRequest;
+import QLNKcom.example.QLNK.response.ResponseObject;
+import QLNKcom.example.QLNK.response.data.HistoryCursor;
+import QLNKcom.example.QLNK.service.data.DataService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+
+@RestController
+@RequestMapping("${webapp.version}/user/data")
+@RequiredArgsConstructor
+public class DataController {
+
+    private final DataService dataService;
+
+    @GetMapping(value = "/history", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Object> getHistory(@Valid @ModelAttribute HistoryRequest request) {
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .map(Authentication::getName)
+                .flatMapMany(email -> dataService.findHistory(email, request));
+    }
+
+    /**
+     * Same stream as {@link #getHistory} as server-sent events named {@code point} and {@code next}.
+     */
+    @GetMapping(value = "/history/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamHistory(@Valid @ModelAttribute HistoryRequest request) {
+        return getHistory(request)
+                .map(item -> ServerSentEvent.builder(item)
+                        .event(item instanceof HistoryCursor ? "next" : "point")
+                        .build());
+    }
+
+    @GetMapping("/recent")
+    public Mono<ResponseEntity<ResponseObject>> getRecent(
+            @RequestParam("feed") String fullFeedKey,
+            @RequestParam(value = "window", defaultValue = "PT15M") Duration window) {
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .map(Authentication::getName)
+                .flatMap(email -> dataService.findRecent(email, fullFeedKey, window))
+                .map(points -> ResponseEntity.ok(
+                        ResponseObject.builder()
+                                .message("Get recent readings successfully")
+                                .data(points)
+                                .status(HttpStatus.OK.value())
+                                .build()
+                ));
+    }
+
+    @GetMapping("/latest")
+    public Mono<ResponseEntity<ResponseObject>> getLatest() {
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .map(Authentication::getName)
+                .flatMap(dataService::findLatest)
+                .map(groups -> ResponseEntity.ok(
+                        ResponseObject.builder()
+                                .message("Get latest values successfully")
+                                .data(groups)
+                                .status(HttpStatus.OK.value())
+                                .build()
+                ));
+    }
+
+    @PostMapping("/rollups/rebuild")
+    public Mono<ResponseEntity<ResponseObject>> rebuildRollups(
+            @RequestParam("feed") String fullFeedKey,
+            @RequestParam("from") Instant from,
+            @RequestParam("to") Instant to) {
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .map(Authentication::getName)
+                .flatMap(email -> dataService.rebuildRollups(email, fullFeedKey, from, to))
+                .thenReturn(ResponseEntity.ok(
+                        ResponseObject.builder()
+                                .message("Rebuild rollups successfully")
+                                .data(null)
+                                .status(HttpStatus.OK.value())
+                                .build()
+                ));
+    }
+}
@@ -88,11 +88,12 @@ public class UserController {
     @PutMapping("/rule")
     public Mono<ResponseEntity<ResponseObject>> updateFeedRule(
             @RequestBody @Valid UpdateFeedRuleRequest request,
-            @RequestParam("feed") String fullFeedKey) {
+            @RequestParam("feed") String fullFeedKey,
+            @RequestParam(value = "id", required = false) String ruleId) {
         return ReactiveSecurityContextHolder.getContext()
                 .map(SecurityContext::getAuthentication)
                 .map(Authentication::getName)
-                .flatMap(email -> userService.updateFeedRule(email, fullFeedKey, request))
+                .flatMap(email -> userService.updateFeedRule(email, fullFeedKey, ruleId, request))
                 .map(feedRule -> ResponseEntity.ok(
                         ResponseObject.builder()
                                 .message("Update feed rule rule successfully")
@@ -0,0 +1,6 @@
+package QLNKcom.example.QLNK.enums;
+
+public enum AlertDirection {
+    ABOVE,  // reading exceeded the rule's ceiling
+    BELOW   // reading fell below the rule's floor
+}
@@ -3,21 +3,37 @@ package QLNKcom.example.QLNK.enums;
 import lombok.Getter;
 
 import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Getter
 public enum DeviceType {
     FAN("fan"),
     PUMP("pump");
 
+    private static final Map<String, DeviceType> BY_TYPE = Arrays.stream(values())
+            .collect(Collectors.toUnmodifiableMap(DeviceType::getType, Function.identity()));
+
     private final String type;
 
     DeviceType(String type) {
         this.type = type;
     }
 
+    /**
+     * @param feedKey the feed part of a full feed key, e.g. {@code fan} in {@code cay-1.fan}
+     */
+    public static DeviceType fromFeedKey(String feedKey) {
+        return BY_TYPE.get(feedKey);
+    }
+
     public static boolean isDevice(String fullFeedKey) {
-        String deviceType = fullFeedKey.split("\\.")[1];
-        return Arrays.stream(DeviceType.values())
-                .anyMatch(device -> device.type.equals(deviceType));
+        int dot = fullFeedKey.indexOf('.');
+        if (dot < 0) {
+            return false;
+        }
+        int end = fullFeedKey.indexOf('.', dot + 1);
+        return BY_TYPE.containsKey(fullFeedKey.substring(dot + 1, end < 0 ? fullFeedKey.length() : end));
     }
 }
@@ -0,0 +1,7 @@
+package QLNKcom.example.QLNK.enums;
+
+public enum Downsampling {
+    NONE,       // every stored reading, paged with a cursor
+    AVERAGE,    // min/max/average per fixed-width time bucket
+    LTTB        // largest-triangle-three-buckets: a fixed number of readings that keep the shape of the series
+}
@@ -0,0 +1,7 @@
+package QLNKcom.example.QLNK.enums;
+
+public enum IngestDedupMode {
+    OFF,        // process every delivery
+    MEMORY,     // remember recent fingerprints on this node only
+    REDIS       // share recent fingerprints between nodes through Redis, on top of the local memory
+}
@@ -0,0 +1,7 @@
+package QLNKcom.example.QLNK.enums;
+
+public enum IngestOverflowPolicy {
+    BLOCK,          // block the MQTT callback thread until there is room
+    DROP_OLDEST,    // evict the oldest queued message to make room
+    DROP_LATEST     // reject the incoming message
+}
@@ -0,0 +1,8 @@
+package QLNKcom.example.QLNK.enums;
+
+public enum OutboxStatus {
+    PENDING,    // waiting for its first attempt or for the backoff after a failed one
+    SENDING,    // claimed by a worker; reclaimed if the lock expires before it is sent
+    FAILED,     // gave up after email.outbox.max-attempts, kept for inspection until purgeAt
+    EXPIRED     // not sent before expiresAt; its text is dropped and the document removed at purgeAt
+}
@@ -0,0 +1,24 @@
+package QLNKcom.example.QLNK.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum RollupResolution {
+    MINUTE("minute", 60_000L, "sensorRollupMinute"),
+    HOUR("hour", 3_600_000L, "sensorRollupHour"),
+    DAY("day", 86_400_000L, "sensorRollupDay");     // UTC days
+
+    private final String unit;              // $dateTrunc unit
+    private final long bucketMillis;
+    private final String collection;
+
+    RollupResolution(String unit, long bucketMillis, String collection) {
+        this.unit = unit;
+        this.bucketMillis = bucketMillis;
+        this.collection = collection;
+    }
+
+    public long bucketStart(long epochMillis) {
+        return epochMillis - Math.floorMod(epochMillis, bucketMillis);
+    }
+}
@@ -3,6 +3,9 @@ package QLNKcom.example.QLNK.enums;
 import lombok.Getter;
 
 import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Getter
 public enum SensorType {
@@ -10,15 +13,28 @@ public enum SensorType {
     HUMIDITY("hum"),
     LIGHT("light");
 
+    private static final Map<String, SensorType> BY_TYPE = Arrays.stream(values())
+            .collect(Collectors.toUnmodifiableMap(SensorType::getType, Function.identity()));
+
     private final String type;
 
     SensorType(String type) {
         this.type = type;
     }
 
+    /**
+     * @param feedKey the feed part of a full feed key, e.g. {@code temp} in {@code cay-1.temp}
+     */
+    public static SensorType fromFeedKey(String feedKey) {
+        return BY_TYPE.get(feedKey);
+    }
+
     public static boolean isSensor(String fullFeedKey) {
-        String sensorType = fullFeedKey.split("\\.")[1];
-        return Arrays.stream(SensorType.values())
-                .anyMatch(sensor -> sensor.type.equals(sensorType));
+        int dot = fullFeedKey.indexOf('.');
+        if (dot < 0) {
+            return false;
+        }
+        int end = fullFeedKey.indexOf('.', dot + 1);
+        return BY_TYPE.containsKey(fullFeedKey.substring(dot + 1, end < 0 ? fullFeedKey.length() : end));
     }
 }
@@ -0,0 +1,7 @@
+package QLNKcom.example.QLNK.enums;
+
+public enum SubscriptionChangeType {
+    ADD,        // the user wants these topics
+    REMOVE,     // the user no longer wants these topics
+    CLEAR       // the user no longer wants any topic
+}
@@ -0,0 +1,13 @@
+package QLNKcom.example.QLNK.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+@Getter
+public class InvalidRequestException extends RuntimeException {
+    private final HttpStatus httpStatus;
+    public InvalidRequestException(String message, HttpStatus httpStatus) {
+        super(message);
+        this.httpStatus = httpStatus;
+    }
+}
@@ -4,6 +4,7 @@ import QLNKcom.example.QLNK.exception.AdafruitException;
 import QLNKcom.example.QLNK.exception.CustomAuthException;
 import QLNKcom.example.QLNK.exception.DataNotFoundException;
 import QLNKcom.example.QLNK.exception.InvalidPasswordException;
+import QLNKcom.example.QLNK.exception.InvalidRequestException;
 import QLNKcom.example.QLNK.response.ResponseObject;
 import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
@@ -117,4 +118,15 @@ public class GlobalExceptionHandler {
 
         return Mono.just(ResponseEntity.status(ex.getHttpStatus()).body(response));
     }
+
+    @ExceptionHandler(InvalidRequestException.class)
+    public Mono<ResponseEntity<ResponseObject>> handleInvalidRequestException(InvalidRequestException ex) {
+        ResponseObject response = ResponseObject.builder()
+                .message(ex.getMessage())
+                .status(ex.getHttpStatus().value())
+                .data(null)
+                .build();
+
+        return Mono.just(ResponseEntity.status(ex.getHttpStatus()).body(response));
+    }
 }
@@ -6,9 +6,14 @@ import lombok.NoArgsConstructor;
 import lombok.experimental.SuperBuilder;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
 
 import java.time.Instant;
 
+/**
+ * A reading stored in a time-series collection: {@code timeStamp} is the time field and
+ * {@code meta} (username, groupKey, feedKey) the meta field, so readings of one feed are bucketed together.
+ */
 @Data
 @Document
 @SuperBuilder
@@ -18,8 +23,11 @@ public abstract class DataEntity {
     @Id
     private String id;
 
+    @Field("meta.username")
     private String username;
+    @Field("meta.groupKey")
     private String groupKey;
+    @Field("meta.feedKey")
     private String feedKey;
     private Instant timeStamp;
 }
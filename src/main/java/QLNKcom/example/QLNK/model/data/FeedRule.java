@@ -22,6 +22,7 @@ public class FeedRule {
     private String inputFeed; // cay-1.temp
     private Double ceiling;
     private Double floor;
+    private Double hysteresis; // band the value must clear before a side returns to NORMAL; null = rules.hysteresis.default
     private String outputFeedAbove;
     private String outputFeedBelow;
     private Double aboveValue;
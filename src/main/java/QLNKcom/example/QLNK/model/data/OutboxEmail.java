@@ -0,0 +1,31 @@
+package QLNKcom.example.QLNK.model.data;
+
+import QLNKcom.example.QLNK.enums.OutboxStatus;
+import lombok.Builder;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * An email waiting to be sent; removed from the outbox once the SMTP server accepts it.
+ */
+@Document(collection = "email_outbox")
+@Data
+@Builder
+public class OutboxEmail {
+    @Id
+    private String id;
+    private String to;
+    private String subject;
+    private String text;
+    private OutboxStatus status;
+    private int attempts;
+    private Instant createdAt;
+    private Instant nextAttemptAt;
+    private Instant lockedUntil;
+    private Instant expiresAt;  // not sent from then on, e.g. once a link in the text has expired
+    private Instant purgeAt;    // deleted by a TTL index; set once the email is FAILED or EXPIRED
+    private String lastError;
+}
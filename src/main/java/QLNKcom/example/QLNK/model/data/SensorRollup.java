@@ -0,0 +1,35 @@
+package QLNKcom.example.QLNK.model.data;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+
+import java.time.Instant;
+
+/**
+ * Min, max, sum and count of one sensor feed over one minute, hour or day, stored in the collection of its
+ * {@link QLNKcom.example.QLNK.enums.RollupResolution}. The id sorts by feed, then time, so a range of buckets
+ * is read from the {@code _id} index.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SensorRollup {
+    @Id
+    private String id;          // username|feedKey|bucket start in epoch millis, zero-padded
+    private String username;
+    private String groupKey;
+    private String feedKey;
+    private Instant bucketStart;
+    private double min;
+    private double max;
+    private double sum;
+    private long count;
+
+    public static String idOf(String username, String feedKey, long bucketStartMillis) {
+        return username + "|" + feedKey + "|" + String.format("%013d", bucketStartMillis);
+    }
+}
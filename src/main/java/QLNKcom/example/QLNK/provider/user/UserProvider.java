@@ -23,6 +23,6 @@ public interface UserProvider {
     Mono<Void> deleteFeedFromGroup(String userId, String groupKey, String feedKey);
     Mono<Void> deleteGroup(String userId, String groupKey);
 
-    Mono<FeedRule> findByEmailAndFullFeedKey(String email, String fullFeedKey);
+    Mono<FeedRule> findByEmailAndFullFeedKey(String email, String fullFeedKey, String ruleId);
     Mono<Void> updateFeedRulesEmail(String oldEmail, String newEmail);
 }
@@ -1,6 +1,7 @@
 package QLNKcom.example.QLNK.provider.user;
 
 import QLNKcom.example.QLNK.DTO.feed.UpdateFeedRequest;
+import QLNKcom.example.QLNK.exception.DataDuplicateException;
 import QLNKcom.example.QLNK.exception.DataNotFoundException;
 import QLNKcom.example.QLNK.model.User;
 import QLNKcom.example.QLNK.model.adafruit.Feed;
@@ -39,10 +40,20 @@ public class UserProviderImpl implements UserProvider {
     }
 
     @Override
-    public Mono<FeedRule> findByEmailAndFullFeedKey(String email, String inputFullFeedKey) {
+    public Mono<FeedRule> findByEmailAndFullFeedKey(String email, String inputFullFeedKey, String ruleId) {
         log.info("🚀 Finding feed rule {} of email {}", inputFullFeedKey, email);
         return feedRuleRepository.findByEmailAndInputFeed(email, inputFullFeedKey)
-                .switchIfEmpty(Mono.error(new DataNotFoundException("Feed rule not found for email: " + email + " and inputFullFeedKey: " + inputFullFeedKey, HttpStatus.NOT_FOUND)));
+                .filter(rule -> ruleId == null || ruleId.equals(rule.getId()))
+                .collectList()
+                .flatMap(rules -> {
+                    if (rules.isEmpty()) {
+                        return Mono.error(new DataNotFoundException("Feed rule not found for email: " + email + " and inputFullFeedKey: " + inputFullFeedKey, HttpStatus.NOT_FOUND));
+                    }
+                    if (rules.size() > 1) {
+                        return Mono.error(new DataDuplicateException("Feed " + inputFullFeedKey + " has " + rules.size() + " rules, specify the id of the rule", HttpStatus.BAD_REQUEST));
+                    }
+                    return Mono.just(rules.get(0));
+                });
     }
 
     @Override
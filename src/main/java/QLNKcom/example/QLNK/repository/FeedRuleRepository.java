@@ -1,13 +1,15 @@
 package QLNKcom.example.QLNK.repository;
 
+import QLNKcom.example.QLNK.enums.FeedState;
 import QLNKcom.example.QLNK.model.data.FeedRule;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.data.mongodb.repository.Update;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface FeedRuleRepository extends ReactiveMongoRepository<FeedRule, String> {
-    Mono<FeedRule> findByEmailAndInputFeed(String email, String inputFullFeedKey);
+    Flux<FeedRule> findByEmailAndInputFeed(String email, String inputFullFeedKey);
     Flux<FeedRule> findByEmail(String email);
     Mono<FeedRule> findByInputFeedAndOutputFeedAboveAndOutputFeedBelow(
             String inputFeed, String outputFeedAbove, String outputFeedBelow);
@@ -15,4 +17,8 @@ public interface FeedRuleRepository extends ReactiveMongoRepository<FeedRule, St
             String email, String inputFeed, String outputFeedAbove, String outputFeedBelow);
     @Query("{ 'email': ?0, $or: [ { 'inputFeed': ?1 }, { 'outputFeedAbove': ?1 }, { 'outputFeedBelow': ?1 } ] }")
     Flux<FeedRule> findByEmailAndFeedKey(String email, String feedKey);
+
+    @Query("{ '_id': ?0 }")
+    @Update("{ '$set': { 'aboveState': ?1, 'belowState': ?2 } }")
+    Mono<Long> updateStates(String id, FeedState aboveState, FeedState belowState);
 }
@@ -0,0 +1,10 @@
+package QLNKcom.example.QLNK.repository;
+
+import QLNKcom.example.QLNK.enums.OutboxStatus;
+import QLNKcom.example.QLNK.model.data.OutboxEmail;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Mono;
+
+public interface OutboxEmailRepository extends ReactiveMongoRepository<OutboxEmail, String> {
+    Mono<Long> countByStatus(OutboxStatus status);
+}
@@ -1,9 +1,11 @@
 package QLNKcom.example.QLNK.repository;
 
 import QLNKcom.example.QLNK.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import org.springframework.data.mongodb.repository.Update;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface UserRepository extends ReactiveMongoRepository<User, String> {
@@ -12,6 +14,8 @@ public interface UserRepository extends ReactiveMongoRepository<User, String> {
 
     Mono<User> findByUsername(String username);
 
+    Flux<User> findByIdGreaterThan(String id, Pageable pageable);
+
     @Query("{ '_id': ?0, 'groups.key': ?1 }")
     @Update("{ '$pull': { 'groups.$.feeds': { 'key': ?2 } } }")
     Mono<Void> deleteFeedFromGroup(String userId, String groupKey, String feedKey);
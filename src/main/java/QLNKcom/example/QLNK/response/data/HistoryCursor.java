@@ -0,0 +1,15 @@
+package QLNKcom.example.QLNK.response.data;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Last line of a full page of raw history; pass {@code next} as {@code cursor} to read the following page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HistoryCursor {
+    private String next;
+}
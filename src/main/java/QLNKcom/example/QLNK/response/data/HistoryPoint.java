@@ -0,0 +1,28 @@
+package QLNKcom.example.QLNK.response.data;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * One line of a history stream: a reading ({@code value} or {@code status}), or with {@link
+ * QLNKcom.example.QLNK.enums.Downsampling#AVERAGE} a bucket starting at {@code timeStamp} whose {@code value} is the
+ * average of its {@code count} readings.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class HistoryPoint {
+    private Instant timeStamp;
+    private Double value;
+    private Boolean status;
+    private Double min;
+    private Double max;
+    private Long count;
+}
@@ -0,0 +1,24 @@
+package QLNKcom.example.QLNK.response.data;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * A feed with its last reading; {@code value} and {@code timeStamp} are left out when nothing was received yet.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class LatestFeed {
+    private String key;
+    private String name;
+    private Double value;
+    private Instant timeStamp;
+}
@@ -0,0 +1,18 @@
+package QLNKcom.example.QLNK.response.data;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LatestGroup {
+    private String key;
+    private String name;
+    private List<LatestFeed> feeds;
+}
@@ -0,0 +1,354 @@
+package QLNKcom.example.QLNK.service.alert;
+
+import QLNKcom.example.QLNK.enums.AlertDirection;
+import QLNKcom.example.QLNK.service.email.EmailService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Turns threshold violations into a bounded number of emails.
+ * Episodes are kept per rule and direction, so rules sharing an input feed alert and resolve independently.
+ * The first violation of an episode is emailed right away; further violations of the same rule and direction
+ * within {@code alerts.cooldown} are merged into one digest email per user every {@code alerts.digest.window}.
+ * A violation that lasts {@code alerts.escalation.after}, then twice, four times as long, and so on, is escalated
+ * with its own email. Emails are sent without making the ingest lane wait.
+ * States are written to the Redis hash {@code qlnk:alerts} every {@code alerts.flush-interval} and loaded at startup,
+ * so cooldowns and pending digests survive a restart.
+ */
+@Service
+@Slf4j
+public class AlertAggregator {
+
+    private static final String STATES_KEY = "qlnk:alerts";
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm").withZone(ZoneOffset.UTC);
+
+    private final EmailService emailService;
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, AlertState> states = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final Counter immediateCounter;
+    private final Counter escalatedCounter;
+    private final Counter deferredCounter;
+    private final Counter digestCounter;
+
+    @Value("${alerts.cooldown:10m}")
+    private Duration cooldown;
+
+    @Value("${alerts.digest.window:15m}")
+    private Duration digestWindow;
+
+    @Value("${alerts.escalation.after:1h}")
+    private Duration escalateAfter;
+
+    @Value("${alerts.flush-interval:30s}")
+    private Duration flushInterval;
+
+    private Disposable digests;
+    private Disposable flushes;
+
+    public AlertAggregator(EmailService emailService,
+                           @Qualifier("reactiveRedisTemplate") ReactiveRedisTemplate<String, String> redisTemplate,
+                           MeterRegistry meterRegistry) {
+        this.emailService = emailService;
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.immediateCounter = alertCounter("immediate");
+        this.escalatedCounter = alertCounter("escalated");
+        this.deferredCounter = alertCounter("deferred");
+        this.digestCounter = Counter.builder("qlnk.alerts.digests")
+                .description("Digest emails sent")
+                .register(meterRegistry);
+        Gauge.builder("qlnk.alerts.active", states, s -> s.values().stream().filter(state -> state.getResolvedAt() == null).count())
+                .description("Rules whose feed is currently outside a threshold")
+                .register(meterRegistry);
+    }
+
+    private Counter alertCounter(String outcome) {
+        return Counter.builder("qlnk.alerts")
+                .description("Threshold violations by how they were reported")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        redisTemplate.<String, String>opsForHash().entries(STATES_KEY)
+                .doOnNext(entry -> {
+                    try {
+                        AlertState state = objectMapper.readValue(entry.getValue(), AlertState.class);
+                        if (state.getRuleId() == null) {
+                            dirty.add(entry.getKey()); // kept per feed before rule ids, removed on the next flush
+                            return;
+                        }
+                        states.putIfAbsent(entry.getKey(), state);
+                    } catch (JsonProcessingException e) {
+                        log.warn("⚠️ Dropping unreadable alert state {}: {}", entry.getKey(), e.getMessage());
+                    }
+                })
+                .then()
+                .doOnSuccess(v -> log.info("🔔 Restored {} alert states", states.size()))
+                .onErrorResume(e -> {
+                    log.error("❌ Failed to restore alert states: {}", e.getMessage());
+                    return Mono.empty();
+                })
+                .block(Duration.ofSeconds(10));
+
+        digests = Flux.interval(digestWindow, digestWindow)
+                .onBackpressureDrop()
+                .concatMap(tick -> sendDigests())
+                .subscribe();
+        flushes = Flux.interval(flushInterval, flushInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> flush())
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (digests != null) {
+            digests.dispose();
+            flushes.dispose();
+            flush().block(Duration.ofSeconds(5));
+        }
+    }
+
+    /**
+     * Records a reading outside the threshold of a rule; emails immediately only when it starts an episode or
+     * escalates it.
+     */
+    public void violation(String ruleId, String email, String feed, AlertDirection direction, double value, double threshold) {
+        String key = key(ruleId, direction);
+        long now = System.currentTimeMillis();
+        Email[] toSend = new Email[1];
+        states.compute(key, (k, state) -> {
+            if (state == null || (state.getResolvedAt() != null && now - state.getResolvedAt() >= cooldown.toMillis())) {
+                state = newEpisode(ruleId, email, feed, direction, threshold, now);
+                toSend[0] = thresholdEmail(state, value);
+                return state;
+            }
+            if (state.getResolvedAt() != null) {
+                // back outside within the cooldown: flapping, the same episode goes on and keeps escalating
+                state.setResolvedAt(null);
+            }
+            state.setThreshold(threshold);
+            if (now - state.getEpisodeStart() >= escalateAfter.toMillis() << Math.min(state.getEscalationLevel(), 20)) {
+                state.setEscalationLevel(state.getEscalationLevel() + 1);
+                state.setLastSentAt(now);
+                toSend[0] = escalationEmail(state, value, now);
+                return state;
+            }
+            addPending(state, value, now);
+            return state;
+        });
+        dirty.add(key);
+
+        if (toSend[0] == null) {
+            deferredCounter.increment();
+            return;
+        }
+        (toSend[0].escalation ? escalatedCounter : immediateCounter).increment();
+        send(toSend[0]);
+    }
+
+    /**
+     * Ends the episode of a rule whose reading is back within the threshold of {@code direction}.
+     */
+    public void resolve(String ruleId, AlertDirection direction) {
+        String key = key(ruleId, direction);
+        AlertState state = states.get(key);
+        if (state == null || state.getResolvedAt() != null) {
+            return;
+        }
+        states.computeIfPresent(key, (k, current) -> {
+            if (current.getResolvedAt() == null) {
+                current.setResolvedAt(System.currentTimeMillis());
+            }
+            return current;
+        });
+        dirty.add(key);
+    }
+
+    private AlertState newEpisode(String ruleId, String email, String feed, AlertDirection direction, double threshold, long now) {
+        AlertState state = new AlertState();
+        state.setRuleId(ruleId);
+        state.setEmail(email);
+        state.setFeed(feed);
+        state.setDirection(direction);
+        state.setThreshold(threshold);
+        state.setEpisodeStart(now);
+        state.setLastSentAt(now);
+        return state;
+    }
+
+    private void addPending(AlertState state, double value, long now) {
+        boolean above = state.getDirection() == AlertDirection.ABOVE;
+        if (state.getPendingCount() == 0) {
+            state.setPendingFrom(now);
+            state.setPendingWorst(value);
+        } else if (above ? value > state.getPendingWorst() : value < state.getPendingWorst()) {
+            state.setPendingWorst(value);
+        }
+        state.setPendingCount(state.getPendingCount() + 1);
+        state.setPendingTo(now);
+    }
+
+    /**
+     * Sends one email per user listing every feed with unreported violations, and forgets episodes
+     * that ended longer than a cooldown ago.
+     */
+    Mono<Void> sendDigests() {
+        long now = System.currentTimeMillis();
+        Map<String, List<String>> linesByEmail = new TreeMap<>();
+        for (String key : List.copyOf(states.keySet())) {
+            states.computeIfPresent(key, (k, state) -> {
+                if (state.getPendingCount() > 0) {
+                    linesByEmail.computeIfAbsent(state.getEmail(), e -> new ArrayList<>()).add(digestLine(state));
+                    state.setPendingCount(0);
+                    dirty.add(k);
+                    return state;
+                }
+                if (state.getResolvedAt() != null && now - state.getResolvedAt() >= cooldown.toMillis()) {
+                    dirty.add(k);
+                    return null;
+                }
+                return state;
+            });
+        }
+
+        return Flux.fromIterable(linesByEmail.entrySet())
+                .concatMap(entry -> {
+                    digestCounter.increment();
+                    List<String> lines = entry.getValue();
+                    String subject = "Alert digest: " + lines.size() + (lines.size() == 1 ? " feed" : " feeds")
+                            + " outside thresholds";
+                    String text = "Since the last alert the following feeds were outside their thresholds:\n\n"
+                            + String.join("\n", lines);
+                    return emailService.sendEmail(entry.getKey(), subject, text)
+                            .onErrorResume(e -> Mono.empty());
+                })
+                .then();
+    }
+
+    /**
+     * Writes changed states to Redis and removes forgotten ones.
+     */
+    Mono<Void> flush() {
+        if (dirty.isEmpty()) {
+            return Mono.empty();
+        }
+        Map<String, String> changed = new HashMap<>();
+        List<Object> removed = new ArrayList<>();
+        for (String key : List.copyOf(dirty)) {
+            dirty.remove(key);
+            AlertState state = states.get(key);
+            if (state == null) {
+                removed.add(key);
+                continue;
+            }
+            try {
+                changed.put(key, objectMapper.writeValueAsString(state));
+            } catch (JsonProcessingException e) {
+                log.warn("⚠️ Could not serialise alert state {}: {}", key, e.getMessage());
+            }
+        }
+
+        Mono<Void> save = changed.isEmpty() ? Mono.empty() : redisTemplate.opsForHash().putAll(STATES_KEY, changed).then();
+        Mono<Void> delete = removed.isEmpty() ? Mono.empty() : redisTemplate.opsForHash().remove(STATES_KEY, removed.toArray()).then();
+        return save.then(delete)
+                .onErrorResume(e -> {
+                    log.error("❌ Failed to save alert states: {}", e.getMessage());
+                    dirty.addAll(changed.keySet());
+                    removed.forEach(key -> dirty.add((String) key));
+                    return Mono.empty();
+                });
+    }
+
+    private void send(Email email) {
+        emailService.sendEmail(email.to, email.subject, email.text)
+                .doOnSuccess(v -> log.info("Queued email alert: {}", email.subject))
+                .onErrorResume(e -> Mono.empty())
+                .subscribe();
+    }
+
+    private static Email thresholdEmail(AlertState state, double value) {
+        String feed = state.getFeed();
+        if (state.getDirection() == AlertDirection.ABOVE) {
+            return new Email(state.getEmail(), "Alert: " + feed + " Exceeded Upper Threshold",
+                    String.format("The %s value (%.1f) has exceeded the upper threshold of %.1f.", feed, value, state.getThreshold()),
+                    false);
+        }
+        return new Email(state.getEmail(), "Alert: " + feed + " Below Lower Threshold",
+                String.format("The %s value (%.1f) has fallen below the lower threshold of %.1f.", feed, value, state.getThreshold()),
+                false);
+    }
+
+    private static Email escalationEmail(AlertState state, double value, long now) {
+        String feed = state.getFeed();
+        String bound = state.getDirection() == AlertDirection.ABOVE ? "above the upper" : "below the lower";
+        return new Email(state.getEmail(), "Alert: " + feed + " still " + bound.split(" ")[0] + " threshold for " + format(now - state.getEpisodeStart()),
+                String.format("The %s value (%.1f) has been %s threshold of %.1f since %s UTC.",
+                        feed, value, bound, state.getThreshold(), TIME.format(Instant.ofEpochMilli(state.getEpisodeStart()))),
+                true);
+    }
+
+    private static String digestLine(AlertState state) {
+        String bound = state.getDirection() == AlertDirection.ABOVE ? "above" : "below";
+        String worst = state.getDirection() == AlertDirection.ABOVE ? "highest" : "lowest";
+        String line = String.format("- %s %s %.1f: %d readings between %s and %s UTC, %s %.1f",
+                state.getFeed(), bound, state.getThreshold(), state.getPendingCount(),
+                TIME.format(Instant.ofEpochMilli(state.getPendingFrom())), TIME.format(Instant.ofEpochMilli(state.getPendingTo())),
+                worst, state.getPendingWorst());
+        return state.getResolvedAt() == null
+                ? line
+                : line + ", back to normal at " + TIME.format(Instant.ofEpochMilli(state.getResolvedAt())) + " UTC";
+    }
+
+    private static String format(long millis) {
+        Duration duration = Duration.ofMillis(millis);
+        return duration.toHours() > 0
+                ? duration.toHours() + "h " + duration.toMinutesPart() + "m"
+                : duration.toMinutes() + "m";
+    }
+
+    private static String key(String ruleId, AlertDirection direction) {
+        return ruleId + "|" + direction;
+    }
+
+    private static class Email {
+        private final String to;
+        private final String subject;
+        private final String text;
+        private final boolean escalation;
+
+        private Email(String to, String subject, String text, boolean escalation) {
+            this.to = to;
+            this.subject = subject;
+            this.text = text;
+            this.escalation = escalation;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package QLNKcom.example.QLNK.service.alert;
+
+import QLNKcom.example.QLNK.enums.AlertDirection;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Alerting state of one rule and direction, kept by {@link AlertAggregator} and saved to Redis as JSON.
+ * Times are epoch milliseconds.
+ */
+@Data
+@NoArgsConstructor
+public class AlertState {
+    private String ruleId;
+    private String email;
+    private String feed;
+    private AlertDirection direction;
+    private double threshold;
+
+    private long episodeStart;      // first violation of the current episode
+    private Long resolvedAt;        // null while the feed is still outside the threshold
+    private long lastSentAt;        // last immediate or escalation email
+    private int escalationLevel;    // escalation emails sent in this episode
+
+    // violations not yet reported, merged into the next digest
+    private int pendingCount;
+    private long pendingFrom;
+    private long pendingTo;
+    private double pendingWorst;
+}
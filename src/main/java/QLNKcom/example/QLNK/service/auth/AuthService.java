@@ -131,7 +131,8 @@ public class AuthService {
                                     email,
                                     "Reset Your Password",
                                     "Click the link to reset your password: " + RESET_LINK_BASE_URL + "?token=" + token +
-                                            "\nThis link expires in 5 minutes."
+                                            "\nThis link expires in " + RedisService.RESET_PASSWORD_TOKEN_TTL.toMinutes() + " minutes.",
+                                    RedisService.RESET_PASSWORD_TOKEN_TTL
                             ));
                 });
     }
@@ -0,0 +1,140 @@
+package QLNKcom.example.QLNK.service.cluster;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Tracks the live QLNK nodes through heartbeats in a Redis sorted set and places them on a consistent-hash ring,
+ * so every node computes the same owner for a key and only the keys of a joining or leaving node move.
+ */
+@Component
+@Slf4j
+public class ClusterMembership {
+
+    private static final String NODES_KEY = "qlnk:cluster:nodes";
+
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+
+    @Getter
+    @Value("${cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${cluster.node-id:}")
+    private String configuredNodeId;
+
+    @Value("${cluster.node-ttl:15s}")
+    private Duration nodeTtl;
+
+    @Value("${cluster.virtual-nodes:64}")
+    private int virtualNodes;
+
+    @Getter
+    private String nodeId;
+    @Getter
+    private volatile List<String> liveNodes = List.of();
+    private volatile NavigableMap<Long, String> ring = new TreeMap<>();
+
+    public ClusterMembership(@Qualifier("reactiveRedisTemplate") ReactiveRedisTemplate<String, String> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        nodeId = configuredNodeId == null || configuredNodeId.isBlank() ? defaultNodeId() : configuredNodeId;
+        updateRing(List.of(nodeId));
+        if (enabled) {
+            log.info("🧭 Cluster mode enabled, this node is {}", nodeId);
+        }
+    }
+
+    /**
+     * Records this node as alive, forgets nodes whose heartbeat is older than {@code cluster.node-ttl} and rebuilds the ring.
+     */
+    public Mono<Void> heartbeat() {
+        long now = System.currentTimeMillis();
+        return redisTemplate.opsForZSet().add(NODES_KEY, nodeId, now)
+                .then(redisTemplate.opsForZSet().removeRangeByScore(NODES_KEY, Range.closed(0d, (double) (now - nodeTtl.toMillis()))))
+                .thenMany(redisTemplate.opsForZSet().range(NODES_KEY, Range.closed(0L, -1L)))
+                .collectSortedList()
+                .doOnNext(nodes -> {
+                    if (!nodes.contains(nodeId)) {
+                        nodes.add(nodeId);
+                        nodes.sort(String::compareTo);
+                    }
+                    if (!nodes.equals(liveNodes)) {
+                        log.info("🧭 Cluster nodes changed: {} -> {}", liveNodes, nodes);
+                        updateRing(nodes);
+                    }
+                })
+                .then();
+    }
+
+    public Mono<Void> leave() {
+        return redisTemplate.opsForZSet().remove(NODES_KEY, nodeId).then();
+    }
+
+    public String ownerOf(String key) {
+        NavigableMap<Long, String> current = ring;
+        Map.Entry<Long, String> entry = current.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : current.firstEntry().getValue();
+    }
+
+    public boolean isLocal(String key) {
+        return !enabled || nodeId.equals(ownerOf(key));
+    }
+
+    private void updateRing(List<String> nodes) {
+        NavigableMap<Long, String> next = new TreeMap<>();
+        for (String node : nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                next.put(hash(node + "#" + i), node);
+            }
+        }
+        ring = next;
+        liveNodes = List.copyOf(nodes);
+    }
+
+    /**
+     * 64-bit FNV-1a followed by the MurmurHash3 finalizer, which spreads the short, similar keys used here evenly.
+     */
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "node";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,15 @@
+package QLNKcom.example.QLNK.service.cluster;
+
+import QLNKcom.example.QLNK.enums.SubscriptionChangeType;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+@Getter
+@RequiredArgsConstructor
+public class SubscriptionChange {
+    private final SubscriptionChangeType type;
+    private final String userId;
+    private final List<String> topics;
+}
@@ -0,0 +1,71 @@
+package QLNKcom.example.QLNK.service.cluster;
+
+import QLNKcom.example.QLNK.enums.SubscriptionChangeType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Tells the other nodes that a user subscribed or unsubscribed feeds, so the node owning the user's account
+ * can apply it; messages are tab separated: {@code nodeId, type, userId, topics...}.
+ */
+@Component
+@Slf4j
+public class SubscriptionChangeBus {
+
+    private static final String CHANNEL = "qlnk:mqtt:subscription-changes";
+
+    private final ClusterMembership clusterMembership;
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+
+    public SubscriptionChangeBus(ClusterMembership clusterMembership,
+                                 @Qualifier("reactiveRedisTemplate") ReactiveRedisTemplate<String, String> redisTemplate) {
+        this.clusterMembership = clusterMembership;
+        this.redisTemplate = redisTemplate;
+    }
+
+    public Mono<Void> publish(SubscriptionChangeType type, String userId, Collection<String> topics) {
+        if (!clusterMembership.isEnabled()) {
+            return Mono.empty();
+        }
+        List<String> fields = new ArrayList<>(topics.size() + 3);
+        fields.add(clusterMembership.getNodeId());
+        fields.add(type.name());
+        fields.add(userId);
+        fields.addAll(topics);
+        return redisTemplate.convertAndSend(CHANNEL, String.join("\t", fields))
+                .onErrorResume(e -> {
+                    log.error("❌ Failed to broadcast subscription change of user {}: {}", userId, e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * @return changes made on other nodes; empty when cluster mode is disabled
+     */
+    public Flux<SubscriptionChange> listen() {
+        if (!clusterMembership.isEnabled()) {
+            return Flux.empty();
+        }
+        return redisTemplate.listenToChannel(CHANNEL)
+                .map(message -> message.getMessage().split("\t"))
+                .filter(fields -> fields.length >= 3 && !clusterMembership.getNodeId().equals(fields[0]))
+                .map(fields -> new SubscriptionChange(
+                        SubscriptionChangeType.valueOf(fields[1]),
+                        fields[2],
+                        List.copyOf(Arrays.asList(fields).subList(3, fields.length))))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> log.warn("⚠️ Subscription change listener failed, retrying: {}", signal.failure().getMessage())));
+    }
+}
@@ -0,0 +1,158 @@
+package QLNKcom.example.QLNK.service.cluster;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides which node subscribes a broker account. The account is owned by the node the ring of {@link ClusterMembership}
+ * maps it to, and that node must also hold the account's Redis lease, so two nodes never connect the same account at once.
+ * With {@code cluster.enabled=false} this node owns every account.
+ */
+@Component
+@Slf4j
+public class SubscriptionOwnership {
+
+    private static final String LEASE_PREFIX = "qlnk:mqtt:lease:";
+    private static final RedisScript<Long> RENEW_SCRIPT = RedisScript.of(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end",
+            Long.class);
+    private static final RedisScript<Long> RELEASE_SCRIPT = RedisScript.of(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final ClusterMembership clusterMembership;
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Set<String> heldAccounts = ConcurrentHashMap.newKeySet();
+
+    @Value("${cluster.lease-ttl:15s}")
+    private Duration leaseTtl;
+
+    @Value("${cluster.heartbeat-interval:5s}")
+    private Duration heartbeatInterval;
+
+    private Disposable heartbeat;
+
+    public SubscriptionOwnership(ClusterMembership clusterMembership,
+                                 @Qualifier("reactiveRedisTemplate") ReactiveRedisTemplate<String, String> redisTemplate,
+                                 MeterRegistry meterRegistry) {
+        this.clusterMembership = clusterMembership;
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!clusterMembership.isEnabled()) {
+            return;
+        }
+        Gauge.builder("qlnk.cluster.nodes", clusterMembership, c -> c.getLiveNodes().size()).register(meterRegistry);
+        Gauge.builder("qlnk.cluster.owned.accounts", heldAccounts, Set::size).register(meterRegistry);
+        heartbeat = Flux.interval(heartbeatInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> refresh())
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (heartbeat == null) {
+            return;
+        }
+        heartbeat.dispose();
+        Flux.fromIterable(List.copyOf(heldAccounts))
+                .flatMap(this::release)
+                .then(clusterMembership.leave())
+                .onErrorResume(e -> Mono.empty())
+                .block(Duration.ofSeconds(5));
+    }
+
+    /**
+     * Sends the node heartbeat and renews the leases this node holds; a lease that could not be renewed is given up.
+     */
+    public Mono<Void> refresh() {
+        if (!clusterMembership.isEnabled()) {
+            return Mono.empty();
+        }
+        return clusterMembership.heartbeat()
+                .thenMany(Flux.fromIterable(List.copyOf(heldAccounts)))
+                .flatMap(account -> redisTemplate.execute(RENEW_SCRIPT, List.of(LEASE_PREFIX + account),
+                                List.of(clusterMembership.getNodeId(), Long.toString(leaseTtl.toMillis())))
+                        .next()
+                        .filter(renewed -> renewed == 0)
+                        .doOnNext(lost -> {
+                            heldAccounts.remove(account);
+                            log.warn("⚠️ Lost subscription lease of account {}", account);
+                        }))
+                .then()
+                .onErrorResume(e -> {
+                    log.error("❌ Cluster heartbeat failed: {}", e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * @return whether the ring maps the account to this node
+     */
+    public boolean shouldOwn(String account) {
+        return clusterMembership.isLocal(account);
+    }
+
+    /**
+     * @return whether this node may keep a subscribed connection for the account right now
+     */
+    public boolean isOwnedLocally(String account) {
+        return !clusterMembership.isEnabled() || heldAccounts.contains(account);
+    }
+
+    /**
+     * Takes the account's lease when the ring maps the account to this node and no other node still holds it.
+     */
+    public Mono<Boolean> claim(String account) {
+        if (isOwnedLocally(account)) {
+            return Mono.just(true);
+        }
+        if (!shouldOwn(account)) {
+            return Mono.just(false);
+        }
+        String nodeId = clusterMembership.getNodeId();
+        return redisTemplate.opsForValue().setIfAbsent(LEASE_PREFIX + account, nodeId, leaseTtl)
+                .flatMap(acquired -> acquired
+                        ? Mono.just(true)
+                        : redisTemplate.opsForValue().get(LEASE_PREFIX + account).map(nodeId::equals).defaultIfEmpty(false))
+                .doOnNext(acquired -> {
+                    if (acquired && heldAccounts.add(account)) {
+                        log.info("🔑 Acquired subscription lease of account {}", account);
+                    }
+                });
+    }
+
+    public Mono<Void> release(String account) {
+        if (!clusterMembership.isEnabled() || !heldAccounts.remove(account)) {
+            return Mono.empty();
+        }
+        log.info("🔓 Releasing subscription lease of account {}", account);
+        return redisTemplate.execute(RELEASE_SCRIPT, List.of(LEASE_PREFIX + account), List.of(clusterMembership.getNodeId()))
+                .then();
+    }
+
+    public Set<String> getHeldAccounts() {
+        return Set.copyOf(heldAccounts);
+    }
+}
@@ -0,0 +1,233 @@
+package QLNKcom.example.QLNK.service.data;
+
+import QLNKcom.example.QLNK.enums.IngestOverflowPolicy;
+import QLNKcom.example.QLNK.model.data.DataEntity;
+import QLNKcom.example.QLNK.model.data.DeviceData;
+import QLNKcom.example.QLNK.model.data.SensorData;
+import com.mongodb.MongoBulkWriteException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.util.MongoDbErrorCodes;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Buffers incoming readings and writes them to Mongo in unordered bulk inserts,
+ * flushing when a batch is full or when the oldest reading has waited {@code ingest.batch.max-latency}.
+ * <p>
+ * Each collection queues at most {@code ingest.queue.capacity} readings besides the batches being built and flushed;
+ * {@code ingest.queue.overflow-policy} decides what happens when the queue is full, as for the ingest lanes. A failed
+ * flush is retried {@code ingest.batch.retries} times with exponential backoff, only for the documents that were not
+ * inserted, before they are counted in {@code qlnk.ingest.flush.failed} and dropped.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class DataBatchWriter {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ingest.batch.size:500}")
+    private int batchSize;
+
+    @Value("${ingest.batch.max-latency:200ms}")
+    private Duration maxLatency;
+
+    @Value("${ingest.batch.max-in-flight:4}")
+    private int maxInFlight;
+
+    @Value("${ingest.queue.capacity:10000}")
+    private int capacity;
+
+    @Value("${ingest.queue.overflow-policy:DROP_OLDEST}")
+    private IngestOverflowPolicy overflowPolicy;
+
+    @Value("${ingest.batch.retries:3}")
+    private int retries;
+
+    @Value("${ingest.batch.retry-backoff:200ms}")
+    private Duration retryBackoff;
+
+    private Batcher<SensorData> sensorBatcher;
+    private Batcher<DeviceData> deviceBatcher;
+
+    @PostConstruct
+    public void start() {
+        sensorBatcher = new Batcher<>(SensorData.class, "sensorData");
+        deviceBatcher = new Batcher<>(DeviceData.class, "deviceData");
+    }
+
+    @PreDestroy
+    public void stop() {
+        sensorBatcher.drain();
+        deviceBatcher.drain();
+    }
+
+    public void write(SensorData sensorData) {
+        sensorBatcher.emit(sensorData);
+    }
+
+    public void write(DeviceData deviceData) {
+        deviceBatcher.emit(deviceData);
+    }
+
+    private class Batcher<T extends DataEntity> {
+        private final Class<T> type;
+        private final String collection;
+        private final BlockingQueue<T> queue;
+        private final Sinks.Many<T> sink;
+        private final DistributionSummary batchSizes;
+        private final Timer flushLatency;
+        private final Counter droppedCounter;
+        private final Counter failedCounter;
+        private final CompletableFuture<Void> completion;
+
+        private Batcher(Class<T> type, String collection) {
+            this.type = type;
+            this.collection = collection;
+            this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+            this.sink = Sinks.many().unicast().onBackpressureBuffer(queue);
+            this.batchSizes = DistributionSummary.builder("qlnk.ingest.batch.size")
+                    .tag("collection", collection)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            this.flushLatency = Timer.builder("qlnk.ingest.flush.latency")
+                    .tag("collection", collection)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            this.droppedCounter = Counter.builder("qlnk.ingest.write.dropped")
+                    .description("Readings dropped because the write queue was full")
+                    .tag("collection", collection)
+                    .tag("policy", overflowPolicy.name())
+                    .register(meterRegistry);
+            this.failedCounter = Counter.builder("qlnk.ingest.flush.failed")
+                    .description("Readings dropped after every flush attempt failed")
+                    .tag("collection", collection)
+                    .register(meterRegistry);
+            Gauge.builder("qlnk.ingest.write.queue.depth", queue, BlockingQueue::size)
+                    .tag("collection", collection)
+                    .register(meterRegistry);
+            this.completion = sink.asFlux()
+                    .bufferTimeout(batchSize, maxLatency, true)
+                    .flatMap(this::flush, maxInFlight)
+                    .then()
+                    .toFuture();
+        }
+
+        private void emit(T data) {
+            while (true) {
+                switch (sink.tryEmitNext(data)) {
+                    case OK -> {
+                        return;
+                    }
+                    case FAIL_NON_SERIALIZED -> Thread.onSpinWait();
+                    case FAIL_OVERFLOW -> {
+                        if (!makeRoom()) {
+                            return;
+                        }
+                    }
+                    default -> {
+                        droppedCounter.increment();
+                        log.warn("⚠️ {} writer is closed, dropped a reading", collection);
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return whether to try emitting again
+         */
+        private boolean makeRoom() {
+            switch (overflowPolicy) {
+                case BLOCK -> LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                case DROP_OLDEST -> {
+                    if (queue.poll() != null) {
+                        droppedCounter.increment();
+                    }
+                }
+                case DROP_LATEST -> {
+                    droppedCounter.increment();
+                    log.warn("⚠️ {} write queue full, dropped a reading", collection);
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private Mono<Void> flush(List<T> batch) {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            batchSizes.record(batch.size());
+            return insert(batch, 0)
+                    .doFinally(signal -> sample.stop(flushLatency));
+        }
+
+        private Mono<Void> insert(List<T> batch, int attempt) {
+            return reactiveMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, type)
+                    .insert(batch)
+                    .execute()
+                    .doOnSuccess(result -> log.debug("💾 Flushed {} documents into {}", result.getInsertedCount(), collection))
+                    .then()
+                    .onErrorResume(error -> {
+                        List<T> failed = notInserted(batch, error);
+                        if (failed.isEmpty()) {
+                            return Mono.empty();
+                        }
+                        if (attempt >= retries) {
+                            log.error("❌ Dropped {} documents for {} after {} attempts: {}",
+                                    failed.size(), collection, attempt + 1, error.getMessage());
+                            failedCounter.increment(failed.size());
+                            return Mono.empty();
+                        }
+                        log.warn("⚠️ Error flushing {} documents into {}, retrying: {}", failed.size(), collection, error.getMessage());
+                        return Mono.delay(retryBackoff.multipliedBy(1L << attempt))
+                                .then(insert(failed, attempt + 1));
+                    });
+        }
+
+        /**
+         * The documents of {@code batch} a failed bulk insert did not write. The documents of an unordered bulk insert
+         * without a write error were inserted, and so were those rejected as duplicate keys.
+         */
+        private List<T> notInserted(List<T> batch, Throwable error) {
+            for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+                if (cause instanceof MongoBulkWriteException bulk) {
+                    return bulk.getWriteErrors().stream()
+                            .filter(writeError -> !MongoDbErrorCodes.isDuplicateKeyCode(writeError.getCode()))
+                            .map(writeError -> batch.get(writeError.getIndex()))
+                            .toList();
+                }
+            }
+            return batch;
+        }
+
+        private void drain() {
+            sink.emitComplete(Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100)));
+            try {
+                completion.get(10, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                log.warn("⚠️ Could not drain pending {} writes: {}", collection, e.getMessage());
+            }
+        }
+    }
+}
@@ -1,12 +1,52 @@
 package QLNKcom.example.QLNK.service.data;
 
+import QLNKcom.example.QLNK.DTO.data.HistoryRequest;
+import QLNKcom.example.QLNK.enums.DeviceType;
+import QLNKcom.example.QLNK.enums.Downsampling;
+import QLNKcom.example.QLNK.enums.RollupResolution;
+import QLNKcom.example.QLNK.enums.SensorType;
+import QLNKcom.example.QLNK.exception.InvalidRequestException;
+import QLNKcom.example.QLNK.model.User;
+import QLNKcom.example.QLNK.model.adafruit.Feed;
+import QLNKcom.example.QLNK.model.adafruit.Group;
+import QLNKcom.example.QLNK.model.data.DataEntity;
+import QLNKcom.example.QLNK.model.data.DeviceData;
+import QLNKcom.example.QLNK.model.data.SensorData;
+import QLNKcom.example.QLNK.provider.user.UserProvider;
 import QLNKcom.example.QLNK.repository.DeviceDataRepository;
 import QLNKcom.example.QLNK.repository.SensorDataRepository;
+import QLNKcom.example.QLNK.response.data.HistoryCursor;
+import QLNKcom.example.QLNK.response.data.HistoryPoint;
+import QLNKcom.example.QLNK.response.data.LatestFeed;
+import QLNKcom.example.QLNK.response.data.LatestGroup;
+import QLNKcom.example.QLNK.service.cluster.SubscriptionOwnership;
 import QLNKcom.example.QLNK.service.websocket.WebSocketSessionManager;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 @Slf4j
@@ -17,5 +57,270 @@ public class DataService {
     private final SensorDataRepository sensorDataRepository;
     private final WebSocketSessionManager webSocketSessionManager;
     private final ObjectMapper objectMapper;
+    private final UserProvider userProvider;
+    private final SensorRollupService sensorRollupService;
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final LatestValueStore latestValueStore;
+    private final RecentReadingStore recentReadingStore;
+    private final SubscriptionOwnership subscriptionOwnership;
+
+    @Value("${data.history.page-size:1000}")
+    private int defaultPageSize;
+
+    @Value("${data.history.max-page-size:10000}")
+    private int maxPageSize;
+
+    @Value("${data.history.max-points:5000}")
+    private int maxPoints;
+
+    @Value("${recent.max-window:1h}")
+    private Duration maxRecentWindow;
+
+    /**
+     * Streams the readings of a feed in [from, to), oldest first, straight from the Mongo cursor.
+     * <p>
+     * Without downsampling, at most {@code limit} readings are returned, followed by a {@link HistoryCursor} when the
+     * page is full. Downsampled sensor history is bounded by {@code data.history.max-points} and not paged: LTTB keeps
+     * {@code points} readings, AVERAGE returns one point per {@code bucket}, read from the minute/hour/day rollups when
+     * the bucket is exactly one of them (which trail ingestion by up to {@code rollup.flush-interval}) and aggregated
+     * from the raw readings otherwise.
+     *
+     * @return a stream of {@link HistoryPoint}s, possibly ending with a {@link HistoryCursor}
+     */
+    public Flux<Object> findHistory(String email, HistoryRequest request) {
+        String feed = request.getFeed();
+        boolean sensor = SensorType.isSensor(feed);
+        if (!sensor && !DeviceType.isDevice(feed)) {
+            return Flux.error(new InvalidRequestException("Unknown feed type: " + feed, HttpStatus.BAD_REQUEST));
+        }
+        if (!request.getFrom().isBefore(request.getTo())) {
+            return Flux.error(new InvalidRequestException("'from' must be before 'to'", HttpStatus.BAD_REQUEST));
+        }
+        if (!sensor && request.getDownsample() != Downsampling.NONE) {
+            return Flux.error(new InvalidRequestException("Only sensor feeds can be downsampled", HttpStatus.BAD_REQUEST));
+        }
+
+        return userProvider.findByEmail(email)
+                .map(User::getUsername)
+                .flatMapMany(username -> switch (request.getDownsample()) {
+                    case NONE -> findRaw(username, request, sensor ? SensorData.class : DeviceData.class);
+                    case LTTB -> findLttb(username, request);
+                    case AVERAGE -> findAverages(username, request);
+                });
+    }
+
+    private Flux<Object> findRaw(String username, HistoryRequest request, Class<? extends DataEntity> type) {
+        int limit = request.getLimit() != null ? request.getLimit() : defaultPageSize;
+        if (limit > maxPageSize) {
+            return Flux.error(new InvalidRequestException("Limit must be at most " + maxPageSize, HttpStatus.BAD_REQUEST));
+        }
+        Query page = rangeQuery(username, request)
+                .with(Sort.by("timeStamp", "id"))
+                .limit(limit)
+                .cursorBatchSize(Math.min(limit, defaultPageSize));
+        if (request.getCursor() != null) {
+            page.addCriteria(after(request.getCursor()));
+        }
+
+        return Flux.defer(() -> {
+            AtomicInteger count = new AtomicInteger();
+            AtomicReference<DataEntity> last = new AtomicReference<>();
+            return reactiveMongoTemplate.find(page, type)
+                    .doOnNext(entity -> {
+                        count.incrementAndGet();
+                        last.set(entity);
+                    })
+                    .<Object>map(DataService::toPoint)
+                    .concatWith(Mono.fromSupplier(() -> count.get() == limit ? new HistoryCursor(cursorOf(last.get())) : null));
+        });
+    }
+
+    private Flux<Object> findLttb(String username, HistoryRequest request) {
+        Integer points = request.getPoints();
+        if (points == null || points > maxPoints) {
+            return Flux.error(new InvalidRequestException(
+                    "Points between 3 and " + maxPoints + " is required for LTTB", HttpStatus.BAD_REQUEST));
+        }
+        Query range = rangeQuery(username, request);
+        Flux<HistoryPoint> readings = reactiveMongoTemplate.find(Query.of(range).with(Sort.by("timeStamp", "id")), SensorData.class)
+                .filter(reading -> reading.getValue() != null)
+                .map(DataService::toPoint);
+        return reactiveMongoTemplate.count(range, SensorData.class)
+                .flatMapMany(expected -> LttbDownsampler.downsample(readings, expected, points));
+    }
+
+    private Flux<Object> findAverages(String username, HistoryRequest request) {
+        Duration bucket = request.getBucket();
+        if (bucket == null || bucket.toSeconds() < 1 || bucket.toMillis() % 1000 != 0) {
+            return Flux.error(new InvalidRequestException(
+                    "A bucket of whole seconds is required for AVERAGE", HttpStatus.BAD_REQUEST));
+        }
+        long buckets = Duration.between(request.getFrom(), request.getTo()).toMillis() / bucket.toMillis() + 1;
+        if (buckets > maxPoints) {
+            return Flux.error(new InvalidRequestException(
+                    "Range and bucket give more than " + maxPoints + " points", HttpStatus.BAD_REQUEST));
+        }
+
+        RollupResolution resolution = Arrays.stream(RollupResolution.values())
+                .filter(r -> r.getBucketMillis() == bucket.toMillis())
+                .findFirst()
+                .orElse(null);
+        if (resolution != null) {
+            return sensorRollupService.find(username, request.getFeed(), resolution, request.getFrom(), request.getTo())
+                    .map(rollup -> HistoryPoint.builder()
+                            .timeStamp(rollup.getBucketStart())
+                            .value(rollup.getSum() / rollup.getCount())
+                            .min(rollup.getMin())
+                            .max(rollup.getMax())
+                            .count(rollup.getCount())
+                            .build());
+        }
+
+        List<Document> pipeline = List.of(
+                new Document("$match", new Document("meta.username", username)
+                        .append("meta.feedKey", request.getFeed())
+                        .append("timeStamp", new Document("$gte", Date.from(request.getFrom()))
+                                .append("$lt", Date.from(request.getTo())))),
+                new Document("$group", new Document("_id", new Document("$dateTrunc", new Document("date", "$timeStamp")
+                        .append("unit", "second")
+                        .append("binSize", bucket.toSeconds())))
+                        .append("value", new Document("$avg", "$value"))
+                        .append("min", new Document("$min", "$value"))
+                        .append("max", new Document("$max", "$value"))
+                        .append("count", new Document("$sum", 1L))),
+                new Document("$sort", new Document("_id", 1)));
+        return reactiveMongoTemplate.getCollection("sensorData")
+                .flatMapMany(collection -> collection.aggregate(pipeline))
+                .map(group -> HistoryPoint.builder()
+                        .timeStamp(group.getDate("_id").toInstant())
+                        .value(group.getDouble("value"))
+                        .min(group.getDouble("min"))
+                        .max(group.getDouble("max"))
+                        .count(group.get("count", Number.class).longValue())
+                        .build());
+    }
+
+    private static Query rangeQuery(String username, HistoryRequest request) {
+        return rangeQuery(username, request.getFeed(), request.getFrom(), request.getTo());
+    }
+
+    private static Query rangeQuery(String username, String fullFeedKey, Instant from, Instant to) {
+        return Query.query(Criteria.where("username").is(username)
+                .and("feedKey").is(fullFeedKey)
+                .and("timeStamp").gte(from).lt(to));
+    }
+
+    private static HistoryPoint toPoint(DataEntity entity) {
+        HistoryPoint.HistoryPointBuilder point = HistoryPoint.builder().timeStamp(entity.getTimeStamp());
+        if (entity instanceof SensorData sensorData) {
+            point.value(sensorData.getValue());
+        } else if (entity instanceof DeviceData deviceData) {
+            point.status(deviceData.getStatus());
+        }
+        return point.build();
+    }
+
+    /**
+     * Cursors are the time stamp and id of the last reading of a page, so the next page starts right after it even
+     * when readings share a time stamp.
+     */
+    private static String cursorOf(DataEntity last) {
+        String cursor = last.getTimeStamp().toEpochMilli() + ":" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Criteria after(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int colon = decoded.indexOf(':');
+            Instant timeStamp = Instant.ofEpochMilli(Long.parseLong(decoded.substring(0, colon)));
+            String id = decoded.substring(colon + 1);
+            Object lastId = ObjectId.isValid(id) ? new ObjectId(id) : id;
+            return new Criteria().orOperator(
+                    Criteria.where("timeStamp").gt(timeStamp),
+                    Criteria.where("timeStamp").is(timeStamp).and("id").gt(lastId));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidRequestException("Invalid cursor", HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Readings of a feed over the last {@code window}, oldest first, for live charts. Served from
+     * {@link RecentReadingStore} when this node owns the user's broker account and holds the whole window,
+     * read from Mongo otherwise.
+     */
+    public Mono<List<HistoryPoint>> findRecent(String email, String fullFeedKey, Duration window) {
+        boolean sensor = SensorType.isSensor(fullFeedKey);
+        if (!sensor && !DeviceType.isDevice(fullFeedKey)) {
+            return Mono.error(new InvalidRequestException("Unknown feed type: " + fullFeedKey, HttpStatus.BAD_REQUEST));
+        }
+        if (!window.isPositive() || window.compareTo(maxRecentWindow) > 0) {
+            return Mono.error(new InvalidRequestException(
+                    "Window must be positive and at most " + maxRecentWindow, HttpStatus.BAD_REQUEST));
+        }
+
+        Instant now = Instant.now();
+        Instant from = now.minus(window);
+        return userProvider.findByEmail(email).flatMap(user -> {
+            RecentReadingStore.Window recent = subscriptionOwnership.isOwnedLocally(user.getUsername())
+                    ? recentReadingStore.find(user.getId(), fullFeedKey, from.toEpochMilli())
+                    : null;
+            if (recent != null) {
+                List<HistoryPoint> points = new ArrayList<>(recent.size());
+                for (int i = 0; i < recent.size(); i++) {
+                    HistoryPoint.HistoryPointBuilder point = HistoryPoint.builder().timeStamp(Instant.ofEpochMilli(recent.time(i)));
+                    if (sensor) {
+                        point.value(recent.value(i));
+                    } else {
+                        point.status(recent.value(i) == 1.0);
+                    }
+                    points.add(point.build());
+                }
+                return Mono.just(points);
+            }
+            log.debug("Recent readings of {} not held for the last {}, reading them from Mongo", fullFeedKey, window);
+            Query range = rangeQuery(user.getUsername(), fullFeedKey, from, now).with(Sort.by("timeStamp", "id"));
+            Class<? extends DataEntity> type = sensor ? SensorData.class : DeviceData.class;
+            return reactiveMongoTemplate.find(range, type)
+                    .map(DataService::toPoint)
+                    .collectList();
+        });
+    }
+
+    /**
+     * Last value and time stamp of every feed of every group, from {@link LatestValueStore}.
+     */
+    public Mono<List<LatestGroup>> findLatest(String email) {
+        return userProvider.findByEmail(email)
+                .flatMap(user -> latestValueStore.find(user.getId())
+                        .map(latest -> user.getGroups() == null
+                                ? List.<LatestGroup>of()
+                                : user.getGroups().stream().map(group -> toLatestGroup(group, latest)).toList()));
+    }
+
+    private static LatestGroup toLatestGroup(Group group, Map<String, LatestValueStore.LatestValue> latest) {
+        List<Feed> feeds = group.getFeeds() != null ? group.getFeeds() : List.of();
+        return LatestGroup.builder()
+                .key(group.getKey())
+                .name(group.getName())
+                .feeds(feeds.stream().map(feed -> {
+                    LatestValueStore.LatestValue value = latest.get(feed.getKey());
+                    return LatestFeed.builder()
+                            .key(feed.getKey())
+                            .name(feed.getName())
+                            .value(value != null ? value.getValue() : null)
+                            .timeStamp(value != null ? value.getTimeStamp() : null)
+                            .build();
+                }).toList())
+                .build();
+    }
 
+    public Mono<Void> rebuildRollups(String email, String fullFeedKey, Instant from, Instant to) {
+        if (!from.isBefore(to)) {
+            return Mono.error(new InvalidRequestException("'from' must be before 'to'", HttpStatus.BAD_REQUEST));
+        }
+        return userProvider.findByEmail(email)
+                .map(User::getUsername)
+                .flatMap(username -> sensorRollupService.rebuild(username, fullFeedKey, from, to));
+    }
 }
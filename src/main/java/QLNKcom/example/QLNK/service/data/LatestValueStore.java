@@ -0,0 +1,238 @@
+package QLNKcom.example.QLNK.service.data;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Last value and time stamp of every feed, kept in the Redis hash {@code qlnk:latest:<userId>} (field: full feed key)
+ * with a near-cache in front of it.
+ * <p>
+ * Readings update the near-cache right away and reach Redis every {@code latest.flush-interval}, so a burst of
+ * readings costs one script call per user; the script only replaces stored values with older time stamps, so a node
+ * flushing late never overwrites a newer value written by another node. Reads are served from the near-cache when it
+ * was loaded from Redis within {@code latest.near-cache.ttl}, which bounds how stale values ingested on other nodes
+ * can be; a value only replaces one with an older time stamp, so a reload never loses a newer local reading. Users
+ * neither written nor read for {@code latest.near-cache.idle} are evicted.
+ */
+@Service
+@Slf4j
+public class LatestValueStore {
+
+    private static final String KEY_PREFIX = "qlnk:latest:";
+    // ARGV: field, encoded value, field, encoded value, ...; values are written when newer than the stored ones
+    private static final RedisScript<Long> PUT_NEWER_SCRIPT = RedisScript.of(
+            "local written = 0 "
+                    + "for i = 1, #ARGV, 2 do "
+                    + "local stored = redis.call('hget', KEYS[1], ARGV[i]) "
+                    + "local storedMillis = stored and tonumber(string.match(stored, '|(%-?%d+)$')) "
+                    + "if not storedMillis or storedMillis < tonumber(string.match(ARGV[i + 1], '|(%-?%d+)$')) then "
+                    + "redis.call('hset', KEYS[1], ARGV[i], ARGV[i + 1]) "
+                    + "written = written + 1 "
+                    + "end "
+                    + "end "
+                    + "return written",
+            Long.class);
+
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final Map<String, UserValues> users = new ConcurrentHashMap<>();
+    private final Set<String> dirtyUsers = ConcurrentHashMap.newKeySet();
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    @Value("${latest.flush-interval:1s}")
+    private Duration flushInterval;
+
+    @Value("${latest.near-cache.ttl:2s}")
+    private Duration nearCacheTtl;
+
+    @Value("${latest.near-cache.idle:10m}")
+    private Duration nearCacheIdle;
+
+    private Disposable flushes;
+
+    public LatestValueStore(@Qualifier("reactiveRedisTemplate") ReactiveRedisTemplate<String, String> redisTemplate,
+                            MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.hitCounter = cacheCounter(meterRegistry, "hit");
+        this.missCounter = cacheCounter(meterRegistry, "miss");
+        Gauge.builder("qlnk.latest.users", users, Map::size)
+                .description("Users with latest values in the near-cache")
+                .register(meterRegistry);
+    }
+
+    private static Counter cacheCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("qlnk.latest.cache")
+                .description("Latest-value reads served from the near-cache or reloaded from Redis")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        flushes = Flux.interval(flushInterval, flushInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> flush())
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flushes != null) {
+            flushes.dispose();
+            flush().block(Duration.ofSeconds(5));
+        }
+    }
+
+    public void record(String userId, String fullFeedKey, double value, Instant timeStamp) {
+        LatestValue latest = new LatestValue(value, timeStamp);
+        users.compute(userId, (id, entry) -> {
+            UserValues values = entry != null ? entry : new UserValues();
+            if (values.merge(fullFeedKey, latest)) {
+                values.dirty.add(fullFeedKey);
+            }
+            values.lastUsed = System.nanoTime();
+            return values;
+        });
+        dirtyUsers.add(userId);
+    }
+
+    /**
+     * @return the latest value of every feed of the user that has one, by full feed key
+     */
+    public Mono<Map<String, LatestValue>> find(String userId) {
+        long now = System.nanoTime();
+        UserValues cached = users.get(userId);
+        if (cached != null && cached.loadedAt != 0 && now - cached.loadedAt < nearCacheTtl.toNanos()) {
+            cached.lastUsed = now;
+            hitCounter.increment();
+            return Mono.just(Collections.unmodifiableMap(cached.values));
+        }
+
+        missCounter.increment();
+        return redisTemplate.<String, String>opsForHash().entries(KEY_PREFIX + userId)
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                .onErrorResume(e -> {
+                    log.error("❌ Failed to load latest values of {}: {}", userId, e.getMessage());
+                    return Mono.just(Map.of());
+                })
+                .map(stored -> {
+                    UserValues values = users.compute(userId, (id, entry) -> {
+                        UserValues loaded = entry != null ? entry : new UserValues();
+                        stored.forEach((feed, encoded) -> {
+                            LatestValue latest = decode(encoded);
+                            if (latest != null) {
+                                loaded.merge(feed, latest);
+                            }
+                        });
+                        loaded.loadedAt = now;
+                        loaded.lastUsed = now;
+                        return loaded;
+                    });
+                    return Collections.unmodifiableMap(values.values);
+                });
+    }
+
+    Mono<Void> flush() {
+        evictIdle();
+        if (dirtyUsers.isEmpty()) {
+            return Mono.empty();
+        }
+        return Flux.fromIterable(List.copyOf(dirtyUsers))
+                .flatMap(userId -> {
+                    dirtyUsers.remove(userId);
+                    UserValues values = users.get(userId);
+                    if (values == null) {
+                        return Mono.empty();
+                    }
+                    List<String> changed = new ArrayList<>();
+                    List<String> args = new ArrayList<>();
+                    for (String feed : List.copyOf(values.dirty)) {
+                        values.dirty.remove(feed);
+                        LatestValue latest = values.values.get(feed);
+                        if (latest != null) {
+                            changed.add(feed);
+                            args.add(feed);
+                            args.add(encode(latest));
+                        }
+                    }
+                    if (changed.isEmpty()) {
+                        return Mono.empty();
+                    }
+                    return redisTemplate.execute(PUT_NEWER_SCRIPT, List.of(KEY_PREFIX + userId), args)
+                            .then()
+                            .onErrorResume(e -> {
+                                log.error("❌ Failed to save latest values of {}: {}", userId, e.getMessage());
+                                values.dirty.addAll(changed);
+                                dirtyUsers.add(userId);
+                                return Mono.empty();
+                            });
+                }, 16)
+                .then();
+    }
+
+    private void evictIdle() {
+        long idleBefore = System.nanoTime() - nearCacheIdle.toNanos();
+        for (String userId : users.keySet()) {
+            users.computeIfPresent(userId, (id, values) ->
+                    values.lastUsed < idleBefore && values.dirty.isEmpty() ? null : values);
+        }
+    }
+
+    private static String encode(LatestValue latest) {
+        return latest.getValue() + "|" + latest.getTimeStamp().toEpochMilli();
+    }
+
+    private static LatestValue decode(String encoded) {
+        int bar = encoded.indexOf('|');
+        try {
+            return new LatestValue(Double.parseDouble(encoded.substring(0, bar)),
+                    Instant.ofEpochMilli(Long.parseLong(encoded.substring(bar + 1))));
+        } catch (RuntimeException e) {
+            log.warn("⚠️ Dropping unreadable latest value {}", encoded);
+            return null;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static final class LatestValue {
+        private final double value;
+        private final Instant timeStamp;
+    }
+
+    private static final class UserValues {
+        private final Map<String, LatestValue> values = new ConcurrentHashMap<>();
+        private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+        private volatile long loadedAt;     // nanoTime of the last load from Redis, 0 if never loaded
+        private volatile long lastUsed;
+
+        /**
+         * @return whether {@code latest} replaced the stored value
+         */
+        private boolean merge(String feed, LatestValue latest) {
+            LatestValue merged = values.merge(feed, latest, (old, candidate) ->
+                    candidate.getTimeStamp().isBefore(old.getTimeStamp()) ? old : candidate);
+            return merged == latest;
+        }
+    }
+}
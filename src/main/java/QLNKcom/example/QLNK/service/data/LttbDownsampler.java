@@ -0,0 +1,142 @@
+package QLNKcom.example.QLNK.service.data;
+
+import QLNKcom.example.QLNK.response.data.HistoryPoint;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Largest-triangle-three-buckets over a stream of readings ordered by time.
+ * <p>
+ * The first and last readings are kept and the ones between are split into {@code threshold - 2} buckets of equal
+ * count; from each bucket the reading forming the largest triangle with the previously kept reading and the average
+ * of the next bucket is kept. Bucket sizes come from the expected count, so the stream is processed as it arrives
+ * holding two buckets at a time. If the stream turns out longer than expected the extra readings form extra buckets;
+ * if shorter, fewer readings are kept.
+ */
+final class LttbDownsampler {
+
+    private final double every;
+
+    private long index;
+    private long bucket;
+    private long boundary;          // index of the first reading of the next bucket
+    private HistoryPoint kept;      // last reading kept, the first corner of the triangle
+    private HistoryPoint held;      // last reading seen, kept at the end if nothing follows it
+    private Bucket pending;         // complete, waiting for the average of the bucket after it
+    private Bucket current = new Bucket();
+
+    private LttbDownsampler(long expected, int threshold) {
+        this.every = (double) (expected - 2) / (threshold - 2);
+        this.boundary = bucketEnd(0);
+    }
+
+    /**
+     * @param expected  number of readings {@code points} is expected to emit
+     * @param threshold number of readings to keep, at least 3; {@code points} is passed through when not larger
+     */
+    static Flux<HistoryPoint> downsample(Flux<HistoryPoint> points, long expected, int threshold) {
+        if (expected <= threshold || threshold < 3) {
+            return points;
+        }
+        return Flux.defer(() -> {
+            LttbDownsampler lttb = new LttbDownsampler(expected, threshold);
+            return points.concatMapIterable(lttb::accept)
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(lttb.finish())));
+        });
+    }
+
+    private long bucketEnd(long bucket) {
+        return (long) ((bucket + 1) * every) + 1;
+    }
+
+    private List<HistoryPoint> accept(HistoryPoint point) {
+        if (kept == null) {
+            kept = point;
+            index = 1;
+            return List.of(point);
+        }
+        HistoryPoint previous = held;
+        held = point;
+        if (previous == null) {
+            return List.of();
+        }
+
+        List<HistoryPoint> selected = List.of();
+        if (index >= boundary && !current.isEmpty()) {
+            if (pending != null) {
+                selected = List.of(select(pending, current.averageX(), current.averageY()));
+            }
+            pending = current;
+            current = new Bucket();
+            boundary = bucketEnd(++bucket);
+        }
+        current.add(previous);
+        index++;
+        return selected;
+    }
+
+    private List<HistoryPoint> finish() {
+        List<HistoryPoint> rest = new ArrayList<>(3);
+        if (held == null) {
+            return rest;
+        }
+        double lastX = x(held);
+        double lastY = held.getValue();
+        if (pending != null) {
+            rest.add(current.isEmpty()
+                    ? select(pending, lastX, lastY)
+                    : select(pending, current.averageX(), current.averageY()));
+        }
+        if (!current.isEmpty()) {
+            rest.add(select(current, lastX, lastY));
+        }
+        rest.add(held);
+        return rest;
+    }
+
+    private HistoryPoint select(Bucket bucket, double nextX, double nextY) {
+        double ax = x(kept);
+        double ay = kept.getValue();
+        HistoryPoint best = bucket.points.get(0);
+        double bestArea = -1;
+        for (HistoryPoint point : bucket.points) {
+            double area = Math.abs((ax - nextX) * (point.getValue() - ay) - (ax - x(point)) * (nextY - ay));
+            if (area > bestArea) {
+                bestArea = area;
+                best = point;
+            }
+        }
+        kept = best;
+        return best;
+    }
+
+    private static double x(HistoryPoint point) {
+        return point.getTimeStamp().toEpochMilli();
+    }
+
+    private static final class Bucket {
+        private final List<HistoryPoint> points = new ArrayList<>();
+        private double sumX;
+        private double sumY;
+
+        private void add(HistoryPoint point) {
+            points.add(point);
+            sumX += x(point);
+            sumY += point.getValue();
+        }
+
+        private boolean isEmpty() {
+            return points.isEmpty();
+        }
+
+        private double averageX() {
+            return sumX / points.size();
+        }
+
+        private double averageY() {
+            return sumY / points.size();
+        }
+    }
+}
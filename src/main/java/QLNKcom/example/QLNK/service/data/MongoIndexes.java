@@ -0,0 +1,185 @@
+package QLNKcom.example.QLNK.service.data;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Declares the indexes behind the repository queries and creates them at startup, after
+ * {@link TimeSeriesCollections} has set up the data collections. Creating an index that already exists is a no-op.
+ * <p>
+ * Once done it logs, per collection, the declared indexes that are missing (creation failed, e.g. duplicate emails
+ * blocking the unique index, or an index with the same name but other keys exists) and the indexes with no recorded
+ * use in {@code $indexStats}, which only counts since the last server restart.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class MongoIndexes {
+
+    static final List<IndexSpec> INDEXES = List.of(
+            // UserRepository.findByEmail, findByUsername
+            new IndexSpec("users", new Index().on("email", Sort.Direction.ASC).named("email_1").unique()),
+            new IndexSpec("users", new Index().on("username", Sort.Direction.ASC).named("username_1")),
+            // FeedRuleRepository.findByEmailAndInputFeed, findByEmail, findByEmailAndFeedKey
+            new IndexSpec("feedRule", new Index().on("email", Sort.Direction.ASC).on("inputFeed", Sort.Direction.ASC)
+                    .named("email_1_inputFeed_1")),
+            // the outputFeed branches of deleteByEmailAndInputFeedOrOutputFeedAboveOrOutputFeedBelow
+            new IndexSpec("feedRule", new Index().on("outputFeedAbove", Sort.Direction.ASC).named("outputFeedAbove_1")),
+            new IndexSpec("feedRule", new Index().on("outputFeedBelow", Sort.Direction.ASC).named("outputFeedBelow_1")),
+            // ScheduleRepository.findByUserIdAndFullFeedKey, findByUserId
+            new IndexSpec("schedules", new Index().on("userId", Sort.Direction.ASC).on("fullFeedKey", Sort.Direction.ASC)
+                    .named("userId_1_fullFeedKey_1")),
+            // history and rollup rebuild ranges
+            new IndexSpec("sensorData", feedTimeIndex()),
+            new IndexSpec("deviceData", feedTimeIndex()),
+            // EmailOutboxWorker claims: due PENDING emails and expired SENDING locks
+            new IndexSpec("email_outbox", new Index().on("status", Sort.Direction.ASC).on("nextAttemptAt", Sort.Direction.ASC)
+                    .named("status_1_nextAttemptAt_1")),
+            new IndexSpec("email_outbox", new Index().on("status", Sort.Direction.ASC).on("lockedUntil", Sort.Direction.ASC)
+                    .named("status_1_lockedUntil_1")),
+            // deletes FAILED and EXPIRED emails, and the tokens in their text, once purgeAt has passed
+            new IndexSpec("email_outbox", new Index().on("purgeAt", Sort.Direction.ASC).expire(Duration.ZERO)
+                    .named("purgeAt_1")));
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${data.indexes.enabled:true}")
+    private boolean enabled;
+
+    private final AtomicInteger missing = new AtomicInteger();
+
+    private static Index feedTimeIndex() {
+        return new Index()
+                .on("meta.username", Sort.Direction.ASC)
+                .on("meta.feedKey", Sort.Direction.ASC)
+                .on("timeStamp", Sort.Direction.ASC)
+                .named("meta.username_1_meta.feedKey_1_timeStamp_1");
+    }
+
+    @Order(0)
+    @EventListener(ApplicationReadyEvent.class)
+    public void bootstrap() {
+        Gauge.builder("qlnk.mongo.indexes.missing", missing, AtomicInteger::get)
+                .description("Declared indexes that could not be created")
+                .register(meterRegistry);
+        if (!enabled) {
+            log.info("📇 Index bootstrap disabled");
+            return;
+        }
+        ensure().subscribe(
+                null,
+                e -> log.error("❌ Index bootstrap failed: {}", e.getMessage()));
+    }
+
+    /**
+     * Creates the declared indexes, then logs the report.
+     */
+    Mono<Void> ensure() {
+        Map<String, List<Index>> byCollection = new LinkedHashMap<>();
+        INDEXES.forEach(spec -> byCollection.computeIfAbsent(spec.getCollection(), c -> new ArrayList<>()).add(spec.getIndex()));
+
+        return Flux.fromIterable(byCollection.entrySet())
+                .concatMap(entry -> Flux.fromIterable(entry.getValue())
+                        .concatMap(index -> create(entry.getKey(), index))
+                        .then(report(entry.getKey(), entry.getValue())))
+                .reduce(0, Integer::sum)
+                .doOnNext(count -> {
+                    missing.set(count);
+                    if (count == 0) {
+                        log.info("✅ All {} declared indexes are in place", INDEXES.size());
+                    } else {
+                        log.warn("⚠️ {} of {} declared indexes are missing", count, INDEXES.size());
+                    }
+                })
+                .then();
+    }
+
+    private Mono<Void> create(String collection, Index index) {
+        return reactiveMongoTemplate.indexOps(collection)
+                .ensureIndex(index)
+                .onErrorResume(e -> {
+                    log.warn("⚠️ Could not create index {} on {}: {}", name(index), collection, e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * @return the number of declared indexes missing on {@code collection}
+     */
+    private Mono<Integer> report(String collection, List<Index> declared) {
+        Mono<Map<String, Document>> existing = reactiveMongoTemplate.indexOps(collection).getIndexInfo()
+                .collectMap(IndexInfo::getName, MongoIndexes::keysOf);
+        Mono<Map<String, Long>> usage = reactiveMongoTemplate.getCollection(collection)
+                .flatMapMany(c -> c.aggregate(List.of(new Document("$indexStats", new Document()))))
+                .collectMap(stats -> stats.getString("name"),
+                        stats -> stats.get("accesses", Document.class).get("ops", Number.class).longValue())
+                .onErrorResume(e -> Mono.just(Map.of())); // e.g. not available on time-series collections
+
+        return Mono.zip(existing, usage).map(tuple -> {
+            Map<String, Document> indexes = tuple.getT1();
+            Map<String, Long> ops = tuple.getT2();
+
+            List<String> absent = declared.stream()
+                    .filter(index -> !index.getIndexKeys().equals(indexes.get(name(index))))
+                    .map(MongoIndexes::name)
+                    .toList();
+            List<String> unused = indexes.keySet().stream()
+                    .filter(name -> !"_id_".equals(name) && ops.getOrDefault(name, -1L) == 0L)
+                    .sorted()
+                    .toList();
+            Set<String> declaredNames = declared.stream().map(MongoIndexes::name).collect(Collectors.toSet());
+            List<String> undeclared = indexes.keySet().stream()
+                    .filter(name -> !"_id_".equals(name) && !declaredNames.contains(name))
+                    .sorted()
+                    .toList();
+
+            if (absent.isEmpty()) {
+                log.info("📇 {}: {} declared indexes present, unused {}, undeclared {}",
+                        collection, declared.size(), unused, undeclared);
+            } else {
+                log.warn("⚠️ {}: missing {}, unused {}, undeclared {}", collection, absent, unused, undeclared);
+            }
+            return absent.size();
+        });
+    }
+
+    private static Document keysOf(IndexInfo info) {
+        Document keys = new Document();
+        info.getIndexFields().forEach(field -> keys.append(field.getKey(),
+                field.getDirection() == Sort.Direction.DESC ? -1 : 1));
+        return keys;
+    }
+
+    private static String name(Index index) {
+        return index.getIndexOptions().getString("name");
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    static final class IndexSpec {
+        private final String collection;
+        private final Index index;
+    }
+}
@@ -0,0 +1,299 @@
+package QLNKcom.example.QLNK.service.data;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The last {@code recent.capacity} readings of every feed ingested on this node, in per-feed ring buffers of
+ * primitive time stamps and values, so short windows are read without Mongo and without a {@code SensorData} per
+ * reading.
+ * <p>
+ * A ring knows the time from which it holds every reading this node received; a window starting earlier, e.g. right
+ * after a restart or once the ring has wrapped past it, is not served. The number of rings is capped so that their
+ * arrays fit in {@code recent.memory-budget}: creating one beyond the cap scans the rings and evicts the least recently
+ * written sixteenth of them, and rings not written for {@code recent.idle} are evicted by a sweep every minute. Writers
+ * only stamp their own ring, so lanes never wait on each other; a write that lands in a ring evicted meanwhile is
+ * repeated in a new one.
+ * <p>
+ * Only the node owning a user's broker account receives all of the user's readings, so the rings of a user are dropped
+ * when the account moves to another node.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class RecentReadingStore {
+
+    private static final long RING_OVERHEAD_BYTES = 96;    // object headers, array headers and fields
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${recent.capacity:1024}")
+    private int capacity;
+
+    @Value("${recent.memory-budget:64MB}")
+    private DataSize memoryBudget;
+
+    @Value("${recent.idle:1h}")
+    private Duration idle;
+
+    private final Map<String, Map<String, Ring>> rings = new ConcurrentHashMap<>();
+    private final AtomicInteger ringCount = new AtomicInteger();
+    private final AtomicBoolean trimming = new AtomicBoolean();
+    private int maxRings;
+    private Counter budgetEvictions;
+    private Counter idleEvictions;
+    private Disposable sweeps;
+
+    @PostConstruct
+    public void registerMeters() {
+        maxRings = (int) Math.max(1, memoryBudget.toBytes() / ringBytes());
+        budgetEvictions = evictionCounter("budget");
+        idleEvictions = evictionCounter("idle");
+        Gauge.builder("qlnk.recent.feeds", ringCount, AtomicInteger::get)
+                .description("Feeds with recent readings held in memory")
+                .register(meterRegistry);
+        Gauge.builder("qlnk.recent.bytes", ringCount, count -> (double) count.get() * ringBytes())
+                .description("Approximate memory held by recent readings")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    private Counter evictionCounter(String reason) {
+        return Counter.builder("qlnk.recent.evictions")
+                .description("Feeds whose recent readings were dropped, for the memory budget or for being idle")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private long ringBytes() {
+        return (long) capacity * (Long.BYTES + Double.BYTES) + RING_OVERHEAD_BYTES;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        log.info("📈 Keeping the last {} readings of up to {} feeds ({})", capacity, maxRings, memoryBudget);
+        sweeps = Flux.interval(Duration.ofMinutes(1))
+                .onBackpressureDrop()
+                .subscribe(tick -> evictIdle());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sweeps != null) {
+            sweeps.dispose();
+        }
+    }
+
+    public void record(String userId, String fullFeedKey, long epochMillis, double value) {
+        while (true) {
+            Ring ring = lookup(userId, fullFeedKey);
+            if (ring == null) {
+                if (ringCount.get() >= maxRings) {
+                    evictLeastRecent();
+                }
+                ring = create(userId, fullFeedKey);
+            }
+            ring.lastWrite = System.nanoTime();
+            ring.add(epochMillis, value);
+            if (lookup(userId, fullFeedKey) == ring) {
+                return;
+            }
+            // evicted between the lookup and the write
+        }
+    }
+
+    private Ring lookup(String userId, String fullFeedKey) {
+        Map<String, Ring> byFeed = rings.get(userId);
+        return byFeed != null ? byFeed.get(fullFeedKey) : null;
+    }
+
+    private Ring create(String userId, String fullFeedKey) {
+        Ring[] ring = new Ring[1];
+        rings.compute(userId, (id, feeds) -> {
+            Map<String, Ring> current = feeds != null ? feeds : new ConcurrentHashMap<>();
+            ring[0] = current.computeIfAbsent(fullFeedKey, feed -> {
+                ringCount.incrementAndGet();
+                return new Ring(userId, feed, capacity);
+            });
+            return current;
+        });
+        return ring[0];
+    }
+
+    /**
+     * @return the readings of the feed from {@code fromMillis} on, oldest first, or null when this node does not hold
+     * all of them
+     */
+    public Window find(String userId, String fullFeedKey, long fromMillis) {
+        Ring ring = lookup(userId, fullFeedKey);
+        return ring != null ? ring.since(fromMillis) : null;
+    }
+
+    /**
+     * Drops every ring of the user, e.g. once another node receives the user's readings.
+     */
+    public void drop(String userId) {
+        Map<String, Ring> byFeed = rings.remove(userId);
+        if (byFeed != null) {
+            ringCount.addAndGet(-byFeed.size());
+        }
+    }
+
+    private void evictLeastRecent() {
+        if (!trimming.compareAndSet(false, true)) {
+            return; // another writer is already making room
+        }
+        try {
+            List<Map.Entry<Ring, Long>> byLastWrite = new ArrayList<>(ringCount.get());
+            rings.values().forEach(byFeed -> byFeed.values().forEach(ring -> byLastWrite.add(Map.entry(ring, ring.lastWrite))));
+            byLastWrite.sort(Map.Entry.comparingByValue());
+            int excess = byLastWrite.size() - maxRings + Math.max(1, maxRings / 16);
+            for (int i = 0; i < excess && i < byLastWrite.size(); i++) {
+                if (remove(byLastWrite.get(i).getKey())) {
+                    budgetEvictions.increment();
+                }
+            }
+        } finally {
+            trimming.set(false);
+        }
+    }
+
+    void evictIdle() {
+        long idleBefore = System.nanoTime() - idle.toNanos();
+        rings.values().forEach(byFeed -> byFeed.values().forEach(ring -> {
+            if (ring.lastWrite - idleBefore < 0 && remove(ring)) {
+                idleEvictions.increment();
+            }
+        }));
+    }
+
+    /**
+     * Drops {@code ring}, and the map of its user when it was the user's last ring.
+     */
+    private boolean remove(Ring ring) {
+        boolean[] removed = new boolean[1];
+        rings.computeIfPresent(ring.userId, (id, byFeed) -> {
+            removed[0] = byFeed.remove(ring.feed, ring);
+            return byFeed.isEmpty() ? null : byFeed;
+        });
+        if (removed[0]) {
+            ringCount.decrementAndGet();
+        }
+        return removed[0];
+    }
+
+    /**
+     * A copy of the readings of one feed in a time window.
+     */
+    public static final class Window {
+        private final long[] times;
+        private final double[] values;
+
+        private Window(long[] times, double[] values) {
+            this.times = times;
+            this.values = values;
+        }
+
+        public int size() {
+            return times.length;
+        }
+
+        public long time(int i) {
+            return times[i];
+        }
+
+        public double value(int i) {
+            return values[i];
+        }
+    }
+
+    /**
+     * Readings ordered by time; a reading arriving out of order is moved back to its place.
+     */
+    private static final class Ring {
+        private final String userId;
+        private final String feed;
+        private final long[] times;
+        private final double[] values;
+        private int start;
+        private int size;
+        private long coveredFrom = Long.MAX_VALUE;   // every reading received from then on is held
+        private volatile long lastWrite = System.nanoTime();
+
+        private Ring(String userId, String feed, int capacity) {
+            this.userId = userId;
+            this.feed = feed;
+            this.times = new long[capacity];
+            this.values = new double[capacity];
+        }
+
+        private synchronized void add(long time, double value) {
+            int capacity = times.length;
+            if (size == capacity) {
+                if (time < times[start]) {
+                    return; // older than everything kept
+                }
+                coveredFrom = Math.max(coveredFrom, times[start] + 1);
+                start = (start + 1) % capacity;
+                size--;
+            } else if (size == 0) {
+                coveredFrom = time;
+            }
+
+            int i = (start + size) % capacity;
+            size++;
+            int placed = 1;
+            while (placed < size) {
+                int previous = (i + capacity - 1) % capacity;
+                if (times[previous] <= time) {
+                    break;
+                }
+                times[i] = times[previous];
+                values[i] = values[previous];
+                i = previous;
+                placed++;
+            }
+            times[i] = time;
+            values[i] = value;
+        }
+
+        private synchronized Window since(long fromMillis) {
+            if (size == 0 || fromMillis < coveredFrom) {
+                return null;
+            }
+            int capacity = times.length;
+            int count = 0;
+            while (count < size && times[(start + size - 1 - count) % capacity] >= fromMillis) {
+                count++;
+            }
+            long[] windowTimes = new long[count];
+            double[] windowValues = new double[count];
+            for (int k = 0; k < count; k++) {
+                int i = (start + size - count + k) % capacity;
+                windowTimes[k] = times[i];
+                windowValues[k] = values[i];
+            }
+            return new Window(windowTimes, windowValues);
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package QLNKcom.example.QLNK.service.data;
+
+import QLNKcom.example.QLNK.enums.RollupResolution;
+import QLNKcom.example.QLNK.model.data.SensorData;
+import QLNKcom.example.QLNK.model.data.SensorRollup;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Downsamples sensor readings into minute, hour and day {@link SensorRollup}s as they are ingested.
+ * <p>
+ * Each feed has running min/max/sum/count accumulators for its current minute, hour and day. Every
+ * {@code rollup.flush-interval} their contents are written as deltas: upserts that {@code $inc} sum and count and
+ * {@code $min}/{@code $max} the extremes, so a reading arriving after its bucket was written (late data) is merged
+ * into it. Each delta carries a sequence number recorded in the document's {@code applied} list and the upsert
+ * skips documents that already have it, so a delta retried after a failed or timed-out flush is applied once.
+ * <p>
+ * {@link #rebuild} recomputes the buckets of a range from the raw readings.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class SensorRollupService {
+
+    private static final RollupResolution[] RESOLUTIONS = RollupResolution.values();
+    private static final int APPLIED_KEPT = 50;
+    private static final int DUPLICATE_KEY = 11000;
+
+    // FeedAccumulator.add outcomes
+    private static final int ADDED = 0;
+    private static final int ADDED_LATE = 1;
+    private static final int RETIRED = 2;
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${rollup.flush-interval:30s}")
+    private Duration flushInterval;
+
+    @Value("${rollup.retry.max-pending:100000}")
+    private int maxPendingRetries;
+
+    private final Map<String, Map<String, FeedAccumulator>> accumulators = new ConcurrentHashMap<>();
+    private final Queue<Delta> retries = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger retryCount = new AtomicInteger();
+    private final String runId = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicLong sequence = new AtomicLong();
+
+    private Disposable flushes;
+    private Timer flushTimer;
+    private Counter writtenCounter;
+    private Counter retriedCounter;
+    private Counter droppedCounter;
+    private Counter lateCounter;
+
+    @PostConstruct
+    public void start() {
+        flushTimer = Timer.builder("qlnk.rollup.flush")
+                .description("Time to write the accumulated rollup deltas")
+                .register(meterRegistry);
+        writtenCounter = deltaCounter("written");
+        retriedCounter = deltaCounter("retried");
+        droppedCounter = deltaCounter("dropped");
+        lateCounter = Counter.builder("qlnk.rollup.late")
+                .description("Readings older than their feed's current bucket, merged into an already written rollup")
+                .register(meterRegistry);
+        Gauge.builder("qlnk.rollup.feeds", accumulators, a -> a.values().stream().mapToInt(Map::size).sum())
+                .description("Feeds with a rollup accumulator")
+                .register(meterRegistry);
+
+        flushes = Flux.interval(flushInterval, flushInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> flush(), 1)
+                .subscribe();
+    }
+
+    private Counter deltaCounter(String result) {
+        return Counter.builder("qlnk.rollup.deltas")
+                .description("Rollup deltas by outcome of their write")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flushes != null) {
+            flushes.dispose();
+        }
+        flush().block(Duration.ofSeconds(10));
+    }
+
+    /**
+     * Adds a reading to its feed's accumulators; called on the ingest path, allocates only for a new feed or bucket.
+     */
+    public void record(SensorData sensorData) {
+        if (sensorData.getValue() == null || sensorData.getTimeStamp() == null) {
+            return;
+        }
+        Map<String, FeedAccumulator> byFeed = accumulators.computeIfAbsent(sensorData.getUsername(),
+                username -> new ConcurrentHashMap<>());
+        while (true) {
+            FeedAccumulator accumulator = byFeed.computeIfAbsent(sensorData.getFeedKey(),
+                    feedKey -> new FeedAccumulator(sensorData.getUsername(), sensorData.getGroupKey(), feedKey));
+            int outcome = accumulator.add(sensorData.getTimeStamp().toEpochMilli(), sensorData.getValue());
+            if (outcome == RETIRED) {
+                // the flush dropped it as idle just now; start a new one
+                byFeed.remove(sensorData.getFeedKey(), accumulator);
+                continue;
+            }
+            if (outcome == ADDED_LATE) {
+                lateCounter.increment();
+            }
+            return;
+        }
+    }
+
+    /**
+     * @return the rollups of {@code feedKey} whose bucket starts in [from, to), oldest first
+     */
+    public Flux<SensorRollup> find(String username, String feedKey, RollupResolution resolution, Instant from, Instant to) {
+        Query range = Query.query(Criteria.where("_id")
+                        .gte(SensorRollup.idOf(username, feedKey, resolution.bucketStart(from.toEpochMilli())))
+                        .lt(SensorRollup.idOf(username, feedKey, to.toEpochMilli())))
+                .with(Sort.by("_id"));
+        return reactiveMongoTemplate.find(range, SensorRollup.class, resolution.getCollection());
+    }
+
+    /**
+     * Recomputes every rollup of {@code feedKey} overlapping [from, to) from the raw readings, replacing what the
+     * incremental path wrote. The range is widened to whole buckets of each resolution. Buckets without raw readings,
+     * e.g. because they have expired, are left as they are. Rebuild ranges older than the flush interval, or readings
+     * still in the accumulators may be counted twice.
+     */
+    public Mono<Void> rebuild(String username, String feedKey, Instant from, Instant to) {
+        return Flux.fromArray(RESOLUTIONS)
+                .concatMap(resolution -> rebuild(username, feedKey, resolution, from, to))
+                .then();
+    }
+
+    private Mono<Void> rebuild(String username, String feedKey, RollupResolution resolution, Instant from, Instant to) {
+        long start = resolution.bucketStart(from.toEpochMilli());
+        long end = resolution.bucketStart(to.toEpochMilli() - 1) + resolution.getBucketMillis();
+        String idPrefix = username + "|" + feedKey + "|";
+
+        List<Document> pipeline = List.of(
+                new Document("$match", new Document("meta.username", username)
+                        .append("meta.feedKey", feedKey)
+                        .append("timeStamp", new Document("$gte", new Date(start)).append("$lt", new Date(end)))),
+                new Document("$group", new Document("_id",
+                        new Document("$dateTrunc", new Document("date", "$timeStamp").append("unit", resolution.getUnit())))
+                        .append("groupKey", new Document("$last", "$meta.groupKey"))
+                        .append("min", new Document("$min", "$value"))
+                        .append("max", new Document("$max", "$value"))
+                        .append("sum", new Document("$sum", "$value"))
+                        .append("count", new Document("$sum", 1L))),
+                new Document("$project", new Document("_id", paddedId(idPrefix))
+                        .append("username", new Document("$literal", username))
+                        .append("groupKey", 1)
+                        .append("feedKey", new Document("$literal", feedKey))
+                        .append("bucketStart", "$_id")
+                        .append("min", 1)
+                        .append("max", 1)
+                        .append("sum", 1)
+                        .append("count", 1)
+                        .append("applied", new Document("$literal", List.of()))),
+                new Document("$merge", new Document("into", resolution.getCollection())
+                        .append("on", "_id")
+                        .append("whenMatched", "replace")
+                        .append("whenNotMatched", "insert")));
+
+        return reactiveMongoTemplate.getCollection("sensorData")
+                .flatMap(collection -> Mono.from(collection.aggregate(pipeline).toCollection()))
+                .doOnSuccess(v -> log.info("🔁 Rebuilt {} rollups of {}/{} from {} to {}",
+                        resolution, username, feedKey, Instant.ofEpochMilli(start), Instant.ofEpochMilli(end)));
+    }
+
+    /**
+     * {@code prefix + bucket start millis} zero-padded to 13 digits, the same id as {@link SensorRollup#idOf}.
+     */
+    private static Document paddedId(String prefix) {
+        Document millis = new Document("$toString", new Document("$toLong", "$_id"));
+        return new Document("$let", new Document("vars", new Document("m", millis))
+                .append("in", new Document("$concat", List.of(
+                        new Document("$literal", prefix),
+                        new Document("$substrCP", List.of(
+                                new Document("$concat", List.of("0000000000000", "$$m")),
+                                new Document("$strLenCP", "$$m"),
+                                13))))));
+    }
+
+    Mono<Void> flush() {
+        List<Delta> deltas = new ArrayList<>();
+        Delta retry;
+        while ((retry = retries.poll()) != null) {
+            retryCount.decrementAndGet();
+            deltas.add(retry);
+        }
+        // an accumulator with nothing since the last flush is dropped; the next reading of its feed creates a new one
+        accumulators.values().forEach(byFeed -> byFeed.values().removeIf(accumulator -> accumulator.drainTo(deltas, this::nextSequence)));
+        if (deltas.isEmpty()) {
+            return Mono.empty();
+        }
+
+        long start = System.nanoTime();
+        Map<RollupResolution, List<Delta>> byResolution = new EnumMap<>(RollupResolution.class);
+        deltas.forEach(delta -> byResolution.computeIfAbsent(delta.resolution, r -> new ArrayList<>()).add(delta));
+        return Flux.fromIterable(byResolution.entrySet())
+                .concatMap(entry -> write(entry.getKey(), entry.getValue()))
+                .then()
+                .doFinally(signal -> flushTimer.record(Duration.ofNanos(System.nanoTime() - start)));
+    }
+
+    private Mono<Void> write(RollupResolution resolution, List<Delta> deltas) {
+        ReactiveBulkOperations bulk = reactiveMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, resolution.getCollection());
+        for (Delta delta : deltas) {
+            Query notApplied = Query.query(Criteria.where("_id").is(SensorRollup.idOf(delta.username, delta.feedKey, delta.bucketStart))
+                    .and("applied").ne(delta.sequence));
+            Update update = new Update()
+                    .setOnInsert("username", delta.username)
+                    .setOnInsert("groupKey", delta.groupKey)
+                    .setOnInsert("feedKey", delta.feedKey)
+                    .setOnInsert("bucketStart", new Date(delta.bucketStart))
+                    .min("min", delta.min)
+                    .max("max", delta.max)
+                    .inc("sum", delta.sum)
+                    .inc("count", delta.count);
+            update.push("applied").slice(-APPLIED_KEPT).each(delta.sequence);
+            bulk.upsert(notApplied, update);
+        }
+
+        return bulk.execute()
+                .doOnSuccess(result -> {
+                    writtenCounter.increment(deltas.size());
+                    log.debug("💾 Wrote {} {} rollup deltas", deltas.size(), resolution);
+                })
+                .then()
+                .onErrorResume(e -> {
+                    requeue(deltas, e);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Queues failed deltas for the next flush. A duplicate key error means the document already holds the delta's
+     * sequence (or another node inserted it first), so such a delta is retried once and then considered applied.
+     */
+    private void requeue(List<Delta> deltas, Throwable error) {
+        List<Delta> failed = new ArrayList<>();
+        if (error instanceof MongoBulkWriteException bulkError) {
+            int written = deltas.size() - bulkError.getWriteErrors().size();
+            writtenCounter.increment(written);
+            for (BulkWriteError writeError : bulkError.getWriteErrors()) {
+                Delta delta = deltas.get(writeError.getIndex());
+                if (writeError.getCode() == DUPLICATE_KEY) {
+                    if (delta.duplicateSeen) {
+                        writtenCounter.increment();
+                        continue;
+                    }
+                    delta.duplicateSeen = true;
+                }
+                failed.add(delta);
+            }
+        } else {
+            failed.addAll(deltas);
+            log.warn("⚠️ Failed to write {} rollup deltas, retrying on the next flush: {}", deltas.size(), error.getMessage());
+        }
+
+        for (Delta delta : failed) {
+            if (retryCount.incrementAndGet() > maxPendingRetries) {
+                retryCount.decrementAndGet();
+                droppedCounter.increment();
+                continue;
+            }
+            retriedCounter.increment();
+            retries.add(delta);
+        }
+    }
+
+    private String nextSequence() {
+        return runId + ":" + sequence.incrementAndGet();
+    }
+
+    /**
+     * The current minute, hour and day of one feed. Readings of a user arrive on one ingest lane, the lock is only
+     * contended by the flush.
+     */
+    private static class FeedAccumulator {
+        private final String username;
+        private final String groupKey;
+        private final String feedKey;
+        private final Bucket[] current = new Bucket[RESOLUTIONS.length];
+        private final List<Delta> completed = new ArrayList<>();
+        private boolean retired;
+
+        private FeedAccumulator(String username, String groupKey, String feedKey) {
+            this.username = username;
+            this.groupKey = groupKey;
+            this.feedKey = feedKey;
+            for (int i = 0; i < RESOLUTIONS.length; i++) {
+                current[i] = new Bucket();
+            }
+        }
+
+        /**
+         * @return ADDED, ADDED_LATE when the reading is older than the current minute, or RETIRED if this accumulator
+         * was dropped and the reading not added
+         */
+        private synchronized int add(long epochMillis, double value) {
+            if (retired) {
+                return RETIRED;
+            }
+            boolean late = false;
+            for (int i = 0; i < RESOLUTIONS.length; i++) {
+                RollupResolution resolution = RESOLUTIONS[i];
+                long bucketStart = resolution.bucketStart(epochMillis);
+                Bucket bucket = current[i];
+                if (bucket.start == bucketStart) {
+                    bucket.add(value);
+                } else if (bucketStart > bucket.start) {
+                    if (bucket.count > 0) {
+                        completed.add(new Delta(resolution, this, bucket));
+                    }
+                    bucket.reset(bucketStart);
+                    bucket.add(value);
+                } else {
+                    Bucket single = new Bucket();
+                    single.reset(bucketStart);
+                    single.add(value);
+                    completed.add(new Delta(resolution, this, single));
+                    late = late || i == 0;
+                }
+            }
+            return late ? ADDED_LATE : ADDED;
+        }
+
+        /**
+         * Moves everything accumulated since the last call into {@code deltas}.
+         *
+         * @return true if there was nothing, in which case the accumulator is retired
+         */
+        private synchronized boolean drainTo(List<Delta> deltas, Supplier<String> sequences) {
+            int before = deltas.size();
+            completed.forEach(delta -> delta.sequence = sequences.get());
+            deltas.addAll(completed);
+            completed.clear();
+            for (int i = 0; i < RESOLUTIONS.length; i++) {
+                Bucket bucket = current[i];
+                if (bucket.count > 0) {
+                    Delta delta = new Delta(RESOLUTIONS[i], this, bucket);
+                    delta.sequence = sequences.get();
+                    deltas.add(delta);
+                    bucket.reset(bucket.start);
+                }
+            }
+            retired = deltas.size() == before;
+            return retired;
+        }
+    }
+
+    private static class Bucket {
+        private long start = Long.MIN_VALUE;
+        private double min;
+        private double max;
+        private double sum;
+        private long count;
+
+        private void reset(long start) {
+            this.start = start;
+            min = Double.POSITIVE_INFINITY;
+            max = Double.NEGATIVE_INFINITY;
+            sum = 0;
+            count = 0;
+        }
+
+        private void add(double value) {
+            if (value < min) {
+                min = value;
+            }
+            if (value > max) {
+                max = value;
+            }
+            sum += value;
+            count++;
+        }
+    }
+
+    private static class Delta {
+        private final RollupResolution resolution;
+        private final String username;
+        private final String groupKey;
+        private final String feedKey;
+        private final long bucketStart;
+        private final double min;
+        private final double max;
+        private final double sum;
+        private final long count;
+        private String sequence;
+        private boolean duplicateSeen;
+
+        private Delta(RollupResolution resolution, FeedAccumulator feed, Bucket bucket) {
+            this.resolution = resolution;
+            this.username = feed.username;
+            this.groupKey = feed.groupKey;
+            this.feedKey = feed.feedKey;
+            this.bucketStart = bucket.start;
+            this.min = bucket.min;
+            this.max = bucket.max;
+            this.sum = bucket.sum;
+            this.count = bucket.count;
+        }
+    }
+}
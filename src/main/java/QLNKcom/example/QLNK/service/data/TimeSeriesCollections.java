@@ -0,0 +1,305 @@
+package QLNKcom.example.QLNK.service.data;
+
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.model.Filters;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.timeseries.Granularity;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Makes {@code sensorData} and {@code deviceData} native time-series collections, with {@code timeStamp} as time field
+ * and {@code meta} (username, groupKey, feedKey) as meta field, before anything is ingested.
+ * <p>
+ * A missing collection is created with {@code data.timeseries.granularity} and {@code data.timeseries.expire-after};
+ * an existing time-series collection has both brought in line with collMod. An existing ordinary collection is renamed
+ * to {@code <name>_legacy}, replaced by a time-series one, and its documents are copied over in the background in
+ * {@code _id} order, reshaped into the meta field. Progress is kept in the {@code migrations} collection so an
+ * interrupted copy resumes after the last completed batch; documents of the first batch after a resume that are
+ * already in the time-series collection are not inserted again.
+ * <p>
+ * Nodes starting together take turns: setting up the collections holds a lock document in {@code migrations}, and
+ * the copy is done by the one node that gets a second lock, renewed with every batch. Locks expire after
+ * {@code data.timeseries.migration.lock-ttl} if their node dies; an abandoned copy resumes on the next start.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class TimeSeriesCollections {
+
+    private static final List<String> COLLECTIONS = List.of("sensorData", "deviceData");
+    private static final String MIGRATIONS = "migrations";
+    private static final String PREPARE_LOCK = "timeseries:prepare-lock";
+    private static final String COPY_LOCK = "timeseries:copy-lock";
+    private static final String TIME_FIELD = "timeStamp";
+    private static final String META_FIELD = "meta";
+    private static final Set<String> META_KEYS = Set.of("username", "groupKey", "feedKey");
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final String owner = UUID.randomUUID().toString();
+
+    @Value("${data.timeseries.granularity:SECONDS}")
+    private Granularity granularity;
+
+    @Value("${data.timeseries.expire-after:0s}")
+    private Duration expireAfter;
+
+    @Value("${data.timeseries.migration.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${data.timeseries.migration.drop-legacy:false}")
+    private boolean dropLegacy;
+
+    @Value("${data.timeseries.migration.lock-ttl:1m}")
+    private Duration lockTtl;
+
+    private Disposable migration;
+
+    @Order(-1)
+    @EventListener(ApplicationReadyEvent.class)
+    public void bootstrap() {
+        Mono<Boolean> prepareLock = lock(PREPARE_LOCK)
+                .filter(Boolean::booleanValue)
+                .repeatWhenEmpty(waits -> waits.delayElements(Duration.ofSeconds(1)));
+        Mono.usingWhen(prepareLock,
+                        locked -> Flux.fromIterable(COLLECTIONS).concatMap(this::prepare).then(),
+                        locked -> unlock(PREPARE_LOCK))
+                .block(Duration.ofMinutes(1));
+
+        migration = Mono.usingWhen(lock(COPY_LOCK),
+                        locked -> locked
+                                ? Flux.fromIterable(COLLECTIONS).concatMap(this::migrate).then()
+                                : Mono.fromRunnable(() -> log.info("🕒 Another node is copying legacy data")),
+                        locked -> locked ? unlock(COPY_LOCK) : Mono.empty())
+                .onErrorResume(e -> {
+                    log.error("❌ Time-series migration stopped, it resumes on the next start: {}", e.getMessage());
+                    return Mono.empty();
+                })
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (migration != null) {
+            migration.dispose();
+        }
+    }
+
+    private Mono<Void> prepare(String name) {
+        return reactiveMongoTemplate.getMongoDatabase()
+                .flatMap(db -> collectionInfo(db, name)
+                        .flatMap(info -> "timeseries".equals(info.getString("type"))
+                                ? alignOptions(db, name, info.get("options", Document.class))
+                                : moveToLegacy(db, name).then(create(name)))
+                        .switchIfEmpty(Mono.defer(() -> create(name))));
+    }
+
+    private Mono<Void> create(String name) {
+        CollectionOptions.TimeSeriesOptions timeSeries = CollectionOptions.TimeSeriesOptions.timeSeries(TIME_FIELD)
+                .metaField(META_FIELD)
+                .granularity(granularity);
+        if (expireAfter.isPositive()) {
+            timeSeries = timeSeries.expireAfter(expireAfter);
+        }
+        return reactiveMongoTemplate.createCollection(name, CollectionOptions.empty().timeSeries(timeSeries))
+                .doOnSuccess(c -> log.info("🕒 Created time-series collection {} (granularity {}, expire after {})",
+                        name, granularity, expireAfter.isPositive() ? expireAfter : "never"))
+                .then();
+    }
+
+    private Mono<Void> alignOptions(MongoDatabase db, String name, Document options) {
+        List<Document> commands = new ArrayList<>();
+
+        Document timeSeries = options.get("timeseries", Document.class);
+        String current = timeSeries != null ? timeSeries.getString("granularity") : null;
+        String wanted = (granularity == Granularity.DEFAULT ? Granularity.SECONDS : granularity).name().toLowerCase();
+        if (current != null && !current.equals(wanted)) {
+            // the server only allows coarser granularity; a finer one is rejected and logged below
+            commands.add(new Document("collMod", name).append("timeseries", new Document("granularity", wanted)));
+        }
+
+        Number currentExpiry = options.get("expireAfterSeconds", Number.class);
+        long wantedExpiry = expireAfter.toSeconds();
+        if (wantedExpiry > 0 && (currentExpiry == null || currentExpiry.longValue() != wantedExpiry)) {
+            commands.add(new Document("collMod", name).append("expireAfterSeconds", wantedExpiry));
+        } else if (wantedExpiry <= 0 && currentExpiry != null) {
+            commands.add(new Document("collMod", name).append("expireAfterSeconds", "off"));
+        }
+
+        return Flux.fromIterable(commands)
+                .concatMap(command -> Mono.from(db.runCommand(command))
+                        .doOnSuccess(result -> log.info("🕒 Updated time-series collection {}: {}", name, command.toJson()))
+                        .onErrorResume(e -> {
+                            log.warn("⚠️ Could not update time-series collection {} with {}: {}", name, command.toJson(), e.getMessage());
+                            return Mono.empty();
+                        }))
+                .then();
+    }
+
+    private Mono<Void> moveToLegacy(MongoDatabase db, String name) {
+        String legacy = legacyName(name);
+        return collectionInfo(db, legacy)
+                .flatMap(existing -> Mono.<Void>error(new IllegalStateException(
+                        "Both " + name + " and " + legacy + " are ordinary collections; merge or drop one of them")))
+                .then(Mono.from(db.getCollection(name).renameCollection(new MongoNamespace(db.getName(), legacy))))
+                .then(reactiveMongoTemplate.upsert(Query.query(Criteria.where("_id").is(migrationId(name))),
+                        Update.update("status", "COPYING").set("copied", 0L), MIGRATIONS))
+                .doOnSuccess(result -> log.info("🕒 Renamed ordinary collection {} to {} for migration", name, legacy))
+                .then();
+    }
+
+    /**
+     * Copies whatever is left of {@code <name>_legacy} into the time-series collection.
+     */
+    private Mono<Void> migrate(String name) {
+        String legacy = legacyName(name);
+        return reactiveMongoTemplate.findById(migrationId(name), Document.class, MIGRATIONS)
+                .filter(progress -> "COPYING".equals(progress.getString("status")))
+                .flatMap(progress -> {
+                    Object lastId = progress.get("lastId");
+                    log.info("🕒 Copying {} into time-series collection {}{}", legacy, name,
+                            lastId != null ? " from _id " + lastId : "");
+                    Query remaining = new Query().with(Sort.by("_id"));
+                    if (lastId != null) {
+                        remaining.addCriteria(Criteria.where("_id").gt(lastId));
+                    }
+                    return reactiveMongoTemplate.find(remaining, Document.class, legacy)
+                            .buffer(batchSize)
+                            .index()
+                            .concatMap(batch -> copyBatch(name, batch.getT2(), batch.getT1() == 0))
+                            .reduce(0L, Long::sum)
+                            .flatMap(copied -> finish(name, copied));
+                });
+    }
+
+    /**
+     * @param first whether this is the first batch of this run, which an interrupted run may have partly inserted
+     */
+    private Mono<Long> copyBatch(String name, List<Document> batch, boolean first) {
+        List<Document> reshaped = new ArrayList<>(batch.size());
+        for (Document document : batch) {
+            if (document.get(TIME_FIELD) instanceof Date) {
+                reshaped.add(reshape(document));
+            }
+        }
+        if (reshaped.size() < batch.size()) {
+            log.warn("⚠️ Skipping {} documents of {} without a timeStamp", batch.size() - reshaped.size(), name);
+        }
+
+        Object lastId = batch.get(batch.size() - 1).get("_id");
+        Mono<List<Document>> missing = first && !reshaped.isEmpty() ? withoutCopied(name, reshaped) : Mono.just(reshaped);
+        return missing.flatMap(documents -> {
+            Mono<Void> insert = documents.isEmpty()
+                    ? Mono.empty()
+                    : reactiveMongoTemplate.insert(documents, name).then();
+            return insert
+                    .then(reactiveMongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(migrationId(name))),
+                            new Update().set("lastId", lastId).inc("copied", (long) documents.size()), MIGRATIONS))
+                    .then(renew(COPY_LOCK))
+                    .thenReturn((long) documents.size());
+        });
+    }
+
+    /**
+     * Drops the documents already in the time-series collection. Time-series collections have no unique {@code _id}
+     * index, so inserting them again would duplicate them; they are looked up rather than deleted, as servers before
+     * 7.0 only delete from time-series collections by meta field.
+     */
+    private Mono<List<Document>> withoutCopied(String name, List<Document> documents) {
+        List<Object> ids = documents.stream().map(document -> document.get("_id")).toList();
+        Query copied = Query.query(Criteria.where("_id").in(ids));
+        copied.fields().include("_id");
+        return reactiveMongoTemplate.find(copied, Document.class, name)
+                .map(document -> document.get("_id"))
+                .collect(Collectors.toSet())
+                .map(existing -> {
+                    if (!existing.isEmpty()) {
+                        log.info("🕒 Skipping {} documents of {} copied before the interruption", existing.size(), name);
+                    }
+                    return documents.stream().filter(document -> !existing.contains(document.get("_id"))).toList();
+                });
+    }
+
+    private static Document reshape(Document legacy) {
+        Document meta = new Document();
+        Document reshaped = new Document("_id", legacy.get("_id")).append(META_FIELD, meta);
+        legacy.forEach((key, value) -> {
+            if (META_KEYS.contains(key)) {
+                meta.append(key, value);
+            } else if (!"_id".equals(key)) {
+                reshaped.append(key, value);
+            }
+        });
+        return reshaped;
+    }
+
+    private Mono<Void> finish(String name, long copied) {
+        String legacy = legacyName(name);
+        Mono<Void> drop = dropLegacy ? reactiveMongoTemplate.dropCollection(legacy) : Mono.empty();
+        return reactiveMongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(migrationId(name))),
+                        Update.update("status", "DONE"), MIGRATIONS)
+                .then(drop)
+                .doOnSuccess(v -> log.info("✅ Copied {} documents into time-series collection {}{}", copied, name,
+                        dropLegacy ? " and dropped " + legacy : ", " + legacy + " can be dropped"));
+    }
+
+    /**
+     * Takes or extends the lock document {@code id} for {@link #lockTtl}.
+     *
+     * @return false when another node holds it
+     */
+    private Mono<Boolean> lock(String id) {
+        Date now = new Date();
+        Query free = Query.query(Criteria.where("_id").is(id)
+                .orOperator(Criteria.where("lockedUntil").lt(now), Criteria.where("owner").is(owner)));
+        return reactiveMongoTemplate.upsert(free,
+                        Update.update("owner", owner).set("lockedUntil", new Date(now.getTime() + lockTtl.toMillis())),
+                        MIGRATIONS)
+                .thenReturn(true)
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.just(false));
+    }
+
+    private Mono<Void> renew(String id) {
+        return lock(id).flatMap(held -> held
+                ? Mono.<Void>empty()
+                : Mono.error(new IllegalStateException("Lost the migration lock " + id + " to another node")));
+    }
+
+    private Mono<Void> unlock(String id) {
+        return reactiveMongoTemplate.remove(Query.query(Criteria.where("_id").is(id).and("owner").is(owner)), MIGRATIONS)
+                .then();
+    }
+
+    private static Mono<Document> collectionInfo(MongoDatabase db, String name) {
+        return Mono.from(db.listCollections().filter(Filters.eq("name", name)).first());
+    }
+
+    private static String legacyName(String name) {
+        return name + "_legacy";
+    }
+
+    private static String migrationId(String name) {
+        return "timeseries:" + name;
+    }
+}
@@ -0,0 +1,310 @@
+package QLNKcom.example.QLNK.service.email;
+
+import QLNKcom.example.QLNK.enums.OutboxStatus;
+import QLNKcom.example.QLNK.model.data.OutboxEmail;
+import QLNKcom.example.QLNK.repository.OutboxEmailRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the {@code email_outbox} collection: claims up to {@code email.outbox.batch-size} due emails,
+ * splits them over the pooled SMTP connections and removes the ones the server accepted.
+ * A failed email is retried with exponential backoff from {@code email.outbox.retry.initial-backoff} up to
+ * {@code email.outbox.retry.max-backoff}, and marked FAILED after {@code email.outbox.max-attempts} or when the
+ * server rejected every recipient. An email still unsent at its {@code expiresAt} is marked EXPIRED and its text
+ * dropped. FAILED and EXPIRED emails are deleted {@code email.outbox.retention} later by the TTL index on
+ * {@code purgeAt}.
+ * Claims are locked for {@code email.outbox.lock-timeout}, so emails claimed by a node that died are sent by another.
+ */
+@Component
+@Slf4j
+public class EmailOutboxWorker {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final OutboxEmailRepository outboxEmailRepository;
+    private final SmtpConnectionPool smtpConnectionPool;
+    private final JavaMailSenderImpl javaMailSender;
+    private final Sinks.Many<Boolean> wakeUps = Sinks.many().multicast().directBestEffort();
+    private final AtomicLong depth = new AtomicLong();
+    private final Counter sentCounter;
+    private final Counter retriedCounter;
+    private final Counter failedCounter;
+    private final Counter expiredCounter;
+
+    @Value("${spring.mail.username}")
+    private String emailUsername;
+
+    @Value("${email.outbox.poll-interval:5s}")
+    private Duration pollInterval;
+
+    @Value("${email.outbox.batch-size:20}")
+    private int batchSize;
+
+    @Value("${email.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${email.outbox.retry.initial-backoff:30s}")
+    private Duration initialBackoff;
+
+    @Value("${email.outbox.retry.max-backoff:1h}")
+    private Duration maxBackoff;
+
+    @Value("${email.outbox.lock-timeout:2m}")
+    private Duration lockTimeout;
+
+    @Value("${email.outbox.retention:7d}")
+    private Duration retention;
+
+    private Disposable worker;
+
+    public EmailOutboxWorker(ReactiveMongoTemplate reactiveMongoTemplate, OutboxEmailRepository outboxEmailRepository,
+                             SmtpConnectionPool smtpConnectionPool, JavaMailSenderImpl javaMailSender,
+                             MeterRegistry meterRegistry) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.outboxEmailRepository = outboxEmailRepository;
+        this.smtpConnectionPool = smtpConnectionPool;
+        this.javaMailSender = javaMailSender;
+        this.sentCounter = outboxCounter(meterRegistry, "sent");
+        this.retriedCounter = outboxCounter(meterRegistry, "retried");
+        this.failedCounter = outboxCounter(meterRegistry, "failed");
+        this.expiredCounter = outboxCounter(meterRegistry, "expired");
+        Gauge.builder("qlnk.email.outbox.depth", depth, AtomicLong::get)
+                .description("Emails in the outbox waiting to be sent, including those being retried")
+                .register(meterRegistry);
+    }
+
+    private static Counter outboxCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("qlnk.email.outbox")
+                .description("Outbox send attempts by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        worker = Flux.merge(Flux.interval(Duration.ZERO, pollInterval).map(tick -> true), wakeUps.asFlux())
+                .onBackpressureDrop()
+                .concatMap(tick -> drain()
+                        .then(updateDepth())
+                        .onErrorResume(e -> {
+                            log.error("❌ Email outbox pass failed: {}", e.getMessage());
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+        log.info("📧 Email outbox worker started with {} SMTP connections", smtpConnectionPool.getPoolSize());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (worker != null) {
+            worker.dispose();
+        }
+    }
+
+    /**
+     * Starts a pass now instead of at the next poll; ignored while a pass is running, which picks the email up anyway.
+     */
+    public void wakeUp() {
+        depth.incrementAndGet();
+        wakeUps.tryEmitNext(true);
+    }
+
+    /**
+     * Expires the emails past their {@code expiresAt}, then sends batches until fewer than a full batch is due.
+     */
+    private Mono<Void> drain() {
+        return expire()
+                .then(sendBatch()
+                        .expand(claimed -> claimed == batchSize ? sendBatch() : Mono.empty())
+                        .then());
+    }
+
+    private Mono<Void> expire() {
+        Instant now = Instant.now();
+        Query expired = new Query(new Criteria().orOperator(
+                        Criteria.where("status").is(OutboxStatus.PENDING),
+                        Criteria.where("status").is(OutboxStatus.SENDING).and("lockedUntil").lt(now))
+                .and("expiresAt").lte(now));
+        Update expire = new Update()
+                .set("status", OutboxStatus.EXPIRED)
+                .set("purgeAt", now.plus(retention))
+                .unset("text")
+                .unset("lockedUntil");
+        return reactiveMongoTemplate.updateMulti(expired, expire, OutboxEmail.class)
+                .doOnNext(result -> {
+                    if (result.getModifiedCount() > 0) {
+                        expiredCounter.increment(result.getModifiedCount());
+                        log.warn("⌛ Dropped {} emails not sent before they expired", result.getModifiedCount());
+                    }
+                })
+                .then();
+    }
+
+    private Mono<Integer> sendBatch() {
+        return claim()
+                .collectList()
+                .flatMap(batch -> batch.isEmpty()
+                        ? Mono.just(0)
+                        : send(batch).thenReturn(batch.size()));
+    }
+
+    private Flux<OutboxEmail> claim() {
+        return claim(batchSize);
+    }
+
+    // one at a time, so no email is claimed beyond the batch and left locked
+    private Flux<OutboxEmail> claim(int remaining) {
+        return remaining == 0
+                ? Flux.empty()
+                : claimOne().flatMapMany(email -> Flux.just(email).concatWith(claim(remaining - 1)));
+    }
+
+    private Mono<OutboxEmail> claimOne() {
+        Instant now = Instant.now();
+        // $not also matches emails queued before expiresAt existed
+        Query due = new Query(new Criteria().orOperator(
+                        Criteria.where("status").is(OutboxStatus.PENDING).and("nextAttemptAt").lte(now),
+                        Criteria.where("status").is(OutboxStatus.SENDING).and("lockedUntil").lt(now))
+                .and("expiresAt").not().lte(now))
+                .with(Sort.by("nextAttemptAt"));
+        Update lock = new Update()
+                .set("status", OutboxStatus.SENDING)
+                .set("lockedUntil", now.plus(lockTimeout));
+        return reactiveMongoTemplate.findAndModify(due, lock, FindAndModifyOptions.options().returnNew(true), OutboxEmail.class);
+    }
+
+    private Mono<Void> send(List<OutboxEmail> batch) {
+        // one slice per connection, so a batch uses the whole pool and each slice reuses one connection
+        int slice = (batch.size() + smtpConnectionPool.getPoolSize() - 1) / smtpConnectionPool.getPoolSize();
+        List<List<OutboxEmail>> slices = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i += slice) {
+            slices.add(batch.subList(i, Math.min(i + slice, batch.size())));
+        }
+
+        return Flux.fromIterable(slices)
+                .flatMap(this::sendSlice, smtpConnectionPool.getPoolSize())
+                .then();
+    }
+
+    private Mono<Void> sendSlice(List<OutboxEmail> emails) {
+        List<MimeMessage> messages = new ArrayList<>(emails.size());
+        List<OutboxEmail> built = new ArrayList<>(emails.size());
+        List<Mono<Void>> updates = new ArrayList<>();
+        for (OutboxEmail email : emails) {
+            try {
+                messages.add(toMessage(email));
+                built.add(email);
+            } catch (MessagingException e) {
+                updates.add(recordFailure(email, e, true));
+            }
+        }
+
+        return smtpConnectionPool.send(messages)
+                .flatMap(results -> {
+                    List<String> sentIds = new ArrayList<>();
+                    for (int i = 0; i < results.size(); i++) {
+                        MessagingException error = results.get(i);
+                        if (error == null) {
+                            sentIds.add(built.get(i).getId());
+                        } else {
+                            updates.add(recordFailure(built.get(i), error, rejectsEveryRecipient(error)));
+                        }
+                    }
+                    sentCounter.increment(sentIds.size());
+                    log.debug("📧 Sent {} of {} emails", sentIds.size(), results.size());
+                    Mono<Void> removeSent = sentIds.isEmpty() ? Mono.empty() : outboxEmailRepository.deleteAllById(sentIds);
+                    return removeSent.then(Flux.concat(updates).then());
+                });
+    }
+
+    private MimeMessage toMessage(OutboxEmail email) throws MessagingException {
+        MimeMessage message = javaMailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, "UTF-8");
+        helper.setFrom(emailUsername);
+        helper.setTo(email.getTo());
+        helper.setSubject(email.getSubject());
+        helper.setText(email.getText());
+        return message;
+    }
+
+    /**
+     * A send that failed only because the server refused every recipient, e.g. a mailbox that does not exist,
+     * fails the same way when retried.
+     */
+    private static boolean rejectsEveryRecipient(MessagingException error) {
+        return error instanceof SendFailedException failed
+                && failed.getInvalidAddresses() != null && failed.getInvalidAddresses().length > 0
+                && (failed.getValidUnsentAddresses() == null || failed.getValidUnsentAddresses().length == 0)
+                && (failed.getValidSentAddresses() == null || failed.getValidSentAddresses().length == 0);
+    }
+
+    private Mono<Void> recordFailure(OutboxEmail email, MessagingException error, boolean permanent) {
+        int attempts = email.getAttempts() + 1;
+        Instant now = Instant.now();
+        Instant nextAttemptAt = now.plus(backoff(attempts));
+        email.setAttempts(attempts);
+        email.setLastError(error.getMessage());
+        email.setLockedUntil(null);
+        if (permanent || attempts >= maxAttempts) {
+            failedCounter.increment();
+            email.setStatus(OutboxStatus.FAILED);
+            email.setPurgeAt(now.plus(retention));
+            log.error("❌ Giving up on email to {} after {} attempts: {}", email.getTo(), attempts, error.getMessage());
+        } else if (email.getExpiresAt() != null && !nextAttemptAt.isBefore(email.getExpiresAt())) {
+            expiredCounter.increment();
+            email.setStatus(OutboxStatus.EXPIRED);
+            email.setPurgeAt(now.plus(retention));
+            email.setText(null);
+            log.warn("⌛ Email to {} failed (attempt {}) and expires before the next attempt: {}",
+                    email.getTo(), attempts, error.getMessage());
+        } else {
+            retriedCounter.increment();
+            email.setStatus(OutboxStatus.PENDING);
+            email.setNextAttemptAt(nextAttemptAt);
+            log.warn("⚠️ Email to {} failed (attempt {}), retrying at {}: {}",
+                    email.getTo(), attempts, email.getNextAttemptAt(), error.getMessage());
+        }
+        return outboxEmailRepository.save(email).then();
+    }
+
+    private Duration backoff(int attempts) {
+        Duration backoff = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+    }
+
+    private Mono<Void> updateDepth() {
+        return Flux.merge(outboxEmailRepository.countByStatus(OutboxStatus.PENDING),
+                        outboxEmailRepository.countByStatus(OutboxStatus.SENDING))
+                .reduce(0L, Long::sum)
+                .doOnNext(depth::set)
+                .then();
+    }
+}
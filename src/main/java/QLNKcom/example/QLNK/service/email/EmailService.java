@@ -1,37 +1,57 @@
 package QLNKcom.example.QLNK.service.email;
 
+import QLNKcom.example.QLNK.enums.OutboxStatus;
+import QLNKcom.example.QLNK.model.data.OutboxEmail;
+import QLNKcom.example.QLNK.repository.OutboxEmailRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class EmailService {
 
-    private final JavaMailSender javaMailSender;
+    private final OutboxEmailRepository outboxEmailRepository;
+    private final EmailOutboxWorker emailOutboxWorker;
 
-    @Value("${spring.mail.username}")
-    private String emailUsername;
+    @Value("${email.outbox.default-validity:1d}")
+    private Duration defaultValidity;
 
+    /**
+     * Queues the email in the outbox; it is sent by {@link EmailOutboxWorker}, retried if the SMTP server fails,
+     * and survives a restart once this completes.
+     */
     public Mono<Void> sendEmail(String to, String subject, String text) {
-        return Mono.fromCallable(() -> {
-                    SimpleMailMessage message = new SimpleMailMessage();
-                    message.setTo(to);
-                    message.setSubject(subject);
-                    message.setText(text);
-                    message.setFrom(emailUsername);
-                    javaMailSender.send(message);
-                    return null;
+        return sendEmail(to, subject, text, defaultValidity);
+    }
+
+    /**
+     * @param validFor how long the email is worth sending, e.g. the lifetime of a link in the text; it is dropped
+     *                 unsent after that
+     */
+    public Mono<Void> sendEmail(String to, String subject, String text, Duration validFor) {
+        Instant now = Instant.now();
+        OutboxEmail email = OutboxEmail.builder()
+                .to(to)
+                .subject(subject)
+                .text(text)
+                .status(OutboxStatus.PENDING)
+                .createdAt(now)
+                .nextAttemptAt(now)
+                .expiresAt(now.plus(validFor))
+                .build();
+        return outboxEmailRepository.save(email)
+                .doOnSuccess(saved -> {
+                    log.info("Email queued for {} with subject: {}", to, subject);
+                    emailOutboxWorker.wakeUp();
                 })
-                .subscribeOn(Schedulers.boundedElastic())
-                .doOnSuccess(v -> log.info("Email sent to {} with subject: {}", to, subject))
-                .doOnError(e -> log.error("Failed to send email to {}: {}", to, e.getMessage()))
+                .doOnError(e -> log.error("Failed to queue email to {}: {}", to, e.getMessage()))
                 .then();
     }
 }
@@ -0,0 +1,146 @@
+package QLNKcom.example.QLNK.service.email;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps up to {@code email.smtp.pool-size} authenticated SMTP connections open and sends batches of messages over them,
+ * instead of connecting, authenticating and quitting for every email.
+ * Sends run on a scheduler with one thread per connection, so at most that many are in progress at once.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class SmtpConnectionPool {
+
+    private final JavaMailSenderImpl javaMailSender;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${email.smtp.pool-size:2}")
+    private int poolSize;
+
+    private BlockingQueue<Transport> idle;
+    private Scheduler scheduler;
+    private Timer sendTimer;
+    private Counter connectCounter;
+
+    @PostConstruct
+    public void start() {
+        idle = new ArrayBlockingQueue<>(poolSize);
+        scheduler = Schedulers.newBoundedElastic(poolSize, Integer.MAX_VALUE, "smtp");
+        sendTimer = Timer.builder("qlnk.email.send")
+                .description("Time for the SMTP server to accept one message on an open connection")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        connectCounter = Counter.builder("qlnk.email.connections.opened")
+                .description("SMTP connections opened; stays low while connections are reused")
+                .register(meterRegistry);
+        Gauge.builder("qlnk.email.connections.idle", idle, BlockingQueue::size)
+                .description("Open SMTP connections waiting for the next batch")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        Transport transport;
+        while ((transport = idle.poll()) != null) {
+            close(transport);
+        }
+        scheduler.dispose();
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Sends the messages in order over one pooled connection.
+     *
+     * @return one entry per message: null when the server accepted it, otherwise why it was not sent
+     */
+    public Mono<List<MessagingException>> send(List<MimeMessage> messages) {
+        return Mono.fromCallable(() -> sendBlocking(messages))
+                .subscribeOn(scheduler);
+    }
+
+    private List<MessagingException> sendBlocking(List<MimeMessage> messages) {
+        List<MessagingException> results = new ArrayList<>(messages.size());
+        Transport transport = idle.poll();
+        if (transport != null && !isConnected(transport)) {
+            // the server dropped it while idle
+            close(transport);
+            transport = null;
+        }
+        for (MimeMessage message : messages) {
+            try {
+                if (transport == null) {
+                    transport = connect();
+                }
+                long start = System.nanoTime();
+                message.saveChanges();
+                transport.sendMessage(message, message.getAllRecipients());
+                sendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                results.add(null);
+            } catch (MessagingException e) {
+                results.add(e);
+                if (transport != null && !isConnected(transport)) {
+                    // the connection is gone; the next message gets a fresh one
+                    close(transport);
+                    transport = null;
+                }
+            }
+        }
+
+        if (transport != null && !idle.offer(transport)) {
+            close(transport);
+        }
+        return results;
+    }
+
+    private Transport connect() throws MessagingException {
+        String protocol = javaMailSender.getProtocol() != null ? javaMailSender.getProtocol() : "smtp";
+        Transport transport = javaMailSender.getSession().getTransport(protocol);
+        transport.connect(javaMailSender.getHost(), javaMailSender.getPort(),
+                javaMailSender.getUsername(), javaMailSender.getPassword());
+        connectCounter.increment();
+        log.debug("📧 Opened SMTP connection to {}", javaMailSender.getHost());
+        return transport;
+    }
+
+    private static boolean isConnected(Transport transport) {
+        try {
+            return transport.isConnected(); // a NOOP round trip for SMTP
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static void close(Transport transport) {
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            log.debug("Error closing SMTP connection: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package QLNKcom.example.QLNK.service.mqtt;
+
+import QLNKcom.example.QLNK.enums.IngestDedupMode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Drops QoS 1 redeliveries before they are saved, evaluated against rules or turned into commands.
+ * A delivery is fingerprinted by its topic, the Adafruit data id (or a hash of the payload when there is none)
+ * and {@code created_at}; a fingerprint seen within {@code ingest.dedup.window} is a duplicate.
+ * Recent fingerprints are kept in bounded insertion-ordered maps, sharded by fingerprint so that ingest lanes rarely
+ * wait on each other, and in REDIS mode also in Redis keys expiring after the window, so a redelivery to another node
+ * after a rebalance is caught too.
+ */
+@Component
+@Slf4j
+public class DuplicateDeliveryFilter {
+
+    private static final String KEY_PREFIX = "qlnk:ingest:seen:";
+    private static final int MAX_SHARDS = 64;
+    private static final int MIN_SHARD_ENTRIES = 1024;   // fewer, larger shards keep small bounds close to exact
+
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ingest.dedup.mode:MEMORY}")
+    private IngestDedupMode mode;
+
+    @Value("${ingest.dedup.window:10m}")
+    private Duration window;
+
+    @Value("${ingest.dedup.max-entries:100000}")
+    private int maxEntries;
+
+    private RecentFingerprints recent;
+    private Counter memoryHits;
+    private Counter redisHits;
+
+    public DuplicateDeliveryFilter(@Qualifier("reactiveRedisTemplate") ReactiveRedisTemplate<String, String> redisTemplate,
+                                   MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        recent = new RecentFingerprints(maxEntries, window.toNanos());
+        memoryHits = duplicateCounter("memory");
+        redisHits = duplicateCounter("redis");
+        Gauge.builder("qlnk.ingest.dedup.entries", recent, RecentFingerprints::size)
+                .description("Fingerprints remembered by the in-memory duplicate window")
+                .register(meterRegistry);
+    }
+
+    private Counter duplicateCounter(String source) {
+        return Counter.builder("qlnk.ingest.duplicates")
+                .description("Redelivered MQTT messages dropped before processing")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return whether the delivery should be processed, i.e. it is not a redelivery of a message seen within the window
+     */
+    public Mono<Boolean> isFirstDelivery(String topic, FeedPayload feedPayload, String payload) {
+        if (mode == IngestDedupMode.OFF || (feedPayload.getId() == null && feedPayload.getCreatedAt() == null)) {
+            // without an id or timestamp two equal readings cannot be told apart from a redelivery
+            return Mono.just(true);
+        }
+
+        long fingerprint = fingerprint(topic, feedPayload, payload);
+        if (!recent.add(fingerprint, System.nanoTime())) {
+            memoryHits.increment();
+            log.debug("Dropped duplicate delivery on {}", topic);
+            return Mono.just(false);
+        }
+        if (mode != IngestDedupMode.REDIS) {
+            return Mono.just(true);
+        }
+
+        return redisTemplate.opsForValue().setIfAbsent(KEY_PREFIX + Long.toHexString(fingerprint), "1", window)
+                .defaultIfEmpty(true)
+                .doOnNext(first -> {
+                    if (!first) {
+                        redisHits.increment();
+                        log.debug("Dropped duplicate delivery on {} seen by another node", topic);
+                    }
+                })
+                .onErrorResume(e -> {
+                    log.warn("⚠️ Duplicate check in Redis failed, processing message: {}", e.getMessage());
+                    return Mono.just(true);
+                });
+    }
+
+    /**
+     * 64-bit FNV-1a over topic, id or payload, and created_at; collisions within a window of
+     * {@code ingest.dedup.max-entries} fingerprints are negligible, and a long costs far less to keep than the string.
+     */
+    private static long fingerprint(String topic, FeedPayload feedPayload, String payload) {
+        long h = 0xcbf29ce484222325L;
+        h = fnv(h, topic);
+        h = fnv(h, feedPayload.getId() != null ? feedPayload.getId() : payload);
+        if (feedPayload.getCreatedAt() != null) {
+            long seconds = feedPayload.getCreatedAt().getEpochSecond();
+            for (int i = 0; i < 8; i++) {
+                h ^= (seconds >>> (i * 8)) & 0xff;
+                h *= 0x100000001b3L;
+            }
+        }
+        return h;
+    }
+
+    private static long fnv(long h, String text) {
+        for (byte b : text.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= 0xff; // separator, so "ab"+"c" and "a"+"bc" differ
+        h *= 0x100000001b3L;
+        return h;
+    }
+
+    /**
+     * Up to {@value #MAX_SHARDS} shards of at least {@value #MIN_SHARD_ENTRIES} fingerprints, each with its own lock;
+     * a fingerprint always lands in the same shard, so a redelivery is checked against the shard that saw the original.
+     */
+    private static class RecentFingerprints {
+        private final Shard[] shards;
+
+        private RecentFingerprints(int maxEntries, long windowNanos) {
+            int count = Integer.highestOneBit(Math.max(1, Math.min(MAX_SHARDS, maxEntries / MIN_SHARD_ENTRIES)));
+            shards = new Shard[count];
+            for (int i = 0; i < count; i++) {
+                shards[i] = new Shard(Math.max(1, maxEntries / count), windowNanos);
+            }
+        }
+
+        /**
+         * @return false when the fingerprint is already in the window
+         */
+        private boolean add(long fingerprint, long now) {
+            int spread = (int) (fingerprint ^ (fingerprint >>> 32));
+            return shards[spread & (shards.length - 1)].add(fingerprint, now);
+        }
+
+        private int size() {
+            int size = 0;
+            for (Shard shard : shards) {
+                size += shard.size();
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Fingerprints in arrival order; the oldest are evicted once past the window or over the size bound.
+     */
+    private static class Shard {
+        private final int maxEntries;
+        private final long windowNanos;
+        private final LinkedHashMap<Long, Long> seenAt = new LinkedHashMap<>();
+
+        private Shard(int maxEntries, long windowNanos) {
+            this.maxEntries = maxEntries;
+            this.windowNanos = windowNanos;
+        }
+
+        private synchronized boolean add(long fingerprint, long now) {
+            Iterator<Map.Entry<Long, Long>> oldest = seenAt.entrySet().iterator();
+            while (oldest.hasNext()) {
+                Map.Entry<Long, Long> entry = oldest.next();
+                if (seenAt.size() < maxEntries && now - entry.getValue() < windowNanos) {
+                    break;
+                }
+                oldest.remove();
+            }
+            return seenAt.putIfAbsent(fingerprint, now) == null;
+        }
+
+        private synchronized int size() {
+            return seenAt.size();
+        }
+    }
+}
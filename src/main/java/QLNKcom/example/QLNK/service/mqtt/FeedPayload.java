@@ -0,0 +1,14 @@
+package QLNKcom.example.QLNK.service.mqtt;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.Instant;
+
+@Getter
+@RequiredArgsConstructor
+public class FeedPayload {
+    private final double value;         // booleans are decoded as 1.0 / 0.0
+    private final Instant createdAt;    // null when the payload has no usable created_at
+    private final String id;            // Adafruit data point id, null when absent
+}
@@ -0,0 +1,13 @@
+package QLNKcom.example.QLNK.service.mqtt;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public class FeedTopic {
+    private final String username;
+    private final String groupKey;
+    private final String feedKey;       // temp
+    private final String fullFeedKey;   // cay-1.temp
+}
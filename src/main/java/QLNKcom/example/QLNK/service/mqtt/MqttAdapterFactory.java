@@ -1,23 +1,48 @@
 package QLNKcom.example.QLNK.service.mqtt;
 
-import QLNKcom.example.QLNK.model.User;
-import org.springframework.integration.mqtt.core.MqttPahoClientFactory;
+import lombok.RequiredArgsConstructor;
+import org.eclipse.paho.client.mqttv3.IMqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.integration.mqtt.core.ClientManager;
 import org.springframework.integration.mqtt.inbound.MqttPahoMessageDrivenChannelAdapter;
+import org.springframework.integration.mqtt.outbound.MqttPahoMessageHandler;
 import org.springframework.integration.mqtt.support.DefaultPahoMessageConverter;
+import org.springframework.messaging.MessageChannel;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
+import java.util.Collection;
 
 @Component
+@RequiredArgsConstructor
 public class MqttAdapterFactory {
 
-    public MqttPahoMessageDrivenChannelAdapter createMqttAdapter(User user, MqttPahoClientFactory client, List<String> feeds) {
-        String clientId = "mqtt-" + user.getId();
+    private final BeanFactory beanFactory;
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    public MqttPahoMessageDrivenChannelAdapter createMqttAdapter(ClientManager<IMqttAsyncClient, MqttConnectOptions> clientManager,
+                                                                 Collection<String> feeds,
+                                                                 MessageChannel outputChannel) {
         MqttPahoMessageDrivenChannelAdapter adapter = new MqttPahoMessageDrivenChannelAdapter(
-                clientId, client, feeds.toArray(new String[0])
+                clientManager, feeds.toArray(new String[0])
         );
         adapter.setQos(1);
         adapter.setConverter(new DefaultPahoMessageConverter());
+        adapter.setOutputChannel(outputChannel);
+        adapter.setBeanFactory(beanFactory);
+        adapter.setApplicationEventPublisher(applicationEventPublisher);
+        adapter.afterPropertiesSet();
         return adapter;
     }
+
+    public MqttPahoMessageHandler createMqttHandler(ClientManager<IMqttAsyncClient, MqttConnectOptions> clientManager) {
+        MqttPahoMessageHandler handler = new MqttPahoMessageHandler(clientManager);
+        handler.setAsync(true);
+        handler.setConverter(new DefaultPahoMessageConverter());
+        handler.setBeanFactory(beanFactory);
+        handler.setApplicationEventPublisher(applicationEventPublisher);
+        handler.afterPropertiesSet();
+        return handler;
+    }
 }
@@ -1,27 +1,40 @@
 package QLNKcom.example.QLNK.service.mqtt;
 
+import QLNKcom.example.QLNK.service.cluster.ClusterMembership;
+import lombok.RequiredArgsConstructor;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.integration.mqtt.core.DefaultMqttPahoClientFactory;
-import org.springframework.integration.mqtt.core.MqttPahoClientFactory;
+import org.springframework.integration.mqtt.core.Mqttv3ClientManager;
 import org.springframework.stereotype.Component;
 
 @Component
+@RequiredArgsConstructor
 public class MqttClientFactory {
+    private final ClusterMembership clusterMembership;
+
     @Value("${mqtt.broker.url}")
     private String brokerUrl;
 
-    public MqttPahoClientFactory createMqttClient(String username, String apiKey) {
-        DefaultMqttPahoClientFactory factory = new DefaultMqttPahoClientFactory();
-
+    public MqttConnectOptions createConnectOptions(String username, String apiKey) {
         MqttConnectOptions mqttConnectOptions = new MqttConnectOptions();
         mqttConnectOptions.setServerURIs(new String[]{brokerUrl});
         mqttConnectOptions.setUserName(username);
         mqttConnectOptions.setPassword(apiKey.toCharArray());
         mqttConnectOptions.setConnectionTimeout(3);
         mqttConnectOptions.setKeepAliveInterval(60);
+        return mqttConnectOptions;
+    }
 
-        factory.setConnectionOptions(mqttConnectOptions);
-        return factory;
+    /**
+     * One client manager owns one Paho client (one TCP connection) for a broker account.
+     * Both the inbound adapter and the outbound handler of that account are built on top of it.
+     * In cluster mode the client id carries the node id, so a node publishing for an account owned elsewhere
+     * does not take over the owner's session.
+     */
+    public Mqttv3ClientManager createClientManager(String username, String apiKey) {
+        String clientId = clusterMembership.isEnabled()
+                ? "mqtt-" + username + "-" + clusterMembership.getNodeId()
+                : "mqtt-" + username;
+        return new Mqttv3ClientManager(createConnectOptions(username, apiKey), clientId);
     }
 }
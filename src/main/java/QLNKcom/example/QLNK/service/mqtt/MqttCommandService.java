@@ -2,55 +2,143 @@ package QLNKcom.example.QLNK.service.mqtt;
 
 import QLNKcom.example.QLNK.model.User;
 import QLNKcom.example.QLNK.provider.user.UserProvider;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.integration.mqtt.core.MqttPahoClientFactory;
-import org.springframework.integration.mqtt.outbound.MqttPahoMessageHandler;
-import org.springframework.integration.mqtt.support.DefaultPahoMessageConverter;
-import org.springframework.integration.mqtt.support.MqttHeaders;
-import org.springframework.integration.support.MessageBuilder;
-import org.springframework.messaging.Message;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class MqttCommandService {
-    private final MqttClientFactory mqttClientFactory;
+    private final MqttConnectionPool mqttConnectionPool;
     private final UserProvider userProvider;
-    private final Map<String, MqttPahoMessageHandler> activeHandlers = new ConcurrentHashMap<>();
-
-    private MqttPahoMessageHandler getOrCreateHandler(String userId, User user) {
-        return activeHandlers.computeIfAbsent(userId, id -> {
-            MqttPahoClientFactory client = mqttClientFactory.createMqttClient(user.getUsername(), user.getApikey());
-            MqttPahoMessageHandler handler = new MqttPahoMessageHandler("mqtt-handler-" + userId, client);
-            handler.setAsync(true);
-            handler.setConverter(new DefaultPahoMessageConverter());
-            return handler;
-        });
+    private final Counter sentCounter;
+    private final Counter suppressedCounter;
+    private final Counter failedCounter;
+
+    @Value("${mqtt.command.dedup-window:30s}")
+    private Duration dedupWindow;
+
+    @Value("${mqtt.command.user-cache-ttl:5m}")
+    private Duration userCacheTtl;
+
+    // last value commanded to, or reported by, each device feed; keyed by userId/fullFeedKey
+    private final Map<String, DeviceState> deviceStates = new ConcurrentHashMap<>();
+    private final Map<String, CachedUser> users = new ConcurrentHashMap<>();
+
+    public MqttCommandService(MqttConnectionPool mqttConnectionPool, UserProvider userProvider, MeterRegistry meterRegistry) {
+        this.mqttConnectionPool = mqttConnectionPool;
+        this.userProvider = userProvider;
+        this.sentCounter = commandCounter(meterRegistry, "sent");
+        this.suppressedCounter = commandCounter(meterRegistry, "suppressed");
+        this.failedCounter = commandCounter(meterRegistry, "failed");
     }
 
+    private static Counter commandCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("qlnk.mqtt.commands")
+                .description("Commands published to device feeds, or suppressed because the device already has the value")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
 
+    /**
+     * Always publishes; used for commands a user or schedule asked for explicitly.
+     */
     public Mono<Void> sendMqttCommand(String userId, String feed, String value) {
-        return userProvider.findById(userId)
-                .flatMap(user -> {
-                    String topic = user.getUsername() + "/feeds/" + feed;
-                    Message<String> message = MessageBuilder.withPayload(value)
-                            .setHeader(MqttHeaders.TOPIC, topic)
-                            .build();
-                    MqttPahoMessageHandler handler = getOrCreateHandler(userId, user);
-                    handler.handleMessage(message);
-                    log.info("🚀 Sent to MQTT: {} -> {}", topic, value);
-                    return Mono.empty();
-                })
+        return findUser(userId)
+                .flatMap(user -> publish(user, feed, value))
                 .onErrorResume(e -> {
+                    failedCounter.increment();
                     log.error("❌ Failed to send MQTT command for user {}: {}", userId, e.getMessage());
                     return Mono.empty();
                 }).then();
     }
 
+    /**
+     * Publishes only when {@code value} differs from the last value commanded to or reported by the feed,
+     * or when that value is older than {@code mqtt.command.dedup-window}; used by feed rules that fire on every reading.
+     * A failure is counted and logged, then signalled so that the rule can retry on a later reading.
+     */
+    public Mono<Void> sendMqttCommandIfChanged(User user, String feed, String value) {
+        DeviceState state = deviceStates.get(stateKey(user.getId(), feed));
+        double numericValue = toNumber(value);
+        if (state != null && state.value == numericValue
+                && System.nanoTime() - state.updatedAt < dedupWindow.toNanos()) {
+            suppressedCounter.increment();
+            log.debug("Suppressed MQTT command {} -> {}, device already has it", feed, value);
+            return Mono.empty();
+        }
+        return publish(user, feed, value)
+                .doOnError(e -> {
+                    failedCounter.increment();
+                    log.error("❌ Failed to send MQTT command for user {}: {}", user.getId(), e.getMessage());
+                });
+    }
+
+    /**
+     * Records a value reported by a device feed, so that a later command is compared with the actual device state.
+     */
+    public void recordDeviceState(String userId, String feed, double value) {
+        deviceStates.put(stateKey(userId, feed), new DeviceState(value, System.nanoTime()));
+    }
+
+    public void evictUser(String userId) {
+        users.remove(userId);
+    }
+
+    private Mono<Void> publish(User user, String feed, String value) {
+        return Mono.fromRunnable(() -> {
+            String topic = user.getUsername() + "/feeds/" + feed;
+            mqttConnectionPool.publish(user, topic, value);
+            deviceStates.put(stateKey(user.getId(), feed), new DeviceState(toNumber(value), System.nanoTime()));
+            sentCounter.increment();
+            log.info("🚀 Sent to MQTT: {} -> {}", topic, value);
+        });
+    }
+
+    private Mono<User> findUser(String userId) {
+        CachedUser cached = users.get(userId);
+        if (cached != null && System.nanoTime() < cached.expiresAt) {
+            return Mono.just(cached.user);
+        }
+        return userProvider.findById(userId)
+                .doOnNext(user -> users.put(userId, new CachedUser(user, System.nanoTime() + userCacheTtl.toNanos())));
+    }
+
+    private static String stateKey(String userId, String feed) {
+        return userId + "/" + feed;
+    }
+
+    private static double toNumber(String value) {
+        if ("true".equalsIgnoreCase(value)) {
+            return 1.0;
+        }
+        if ("false".equalsIgnoreCase(value)) {
+            return 0.0;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN; // never equal, so non-numeric commands are not deduplicated
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class DeviceState {
+        private final double value;
+        private final long updatedAt;
+    }
+
+    @RequiredArgsConstructor
+    private static class CachedUser {
+        private final User user;
+        private final long expiresAt;
+    }
 }
@@ -0,0 +1,207 @@
+package QLNKcom.example.QLNK.service.mqtt;
+
+import QLNKcom.example.QLNK.model.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps one {@link PooledMqttConnection} per broker account (username + API key).
+ * Users holding the same credentials share the connection; it is closed when the last holder releases it.
+ * Connections are opened and closed outside the map, so a slow broker never blocks lookups of other accounts.
+ */
+@Component
+@Slf4j
+public class MqttConnectionPool {
+
+    private static final String PUBLISH_HOLDER = "publish";
+
+    private final MqttClientFactory mqttClientFactory;
+    private final MqttAdapterFactory mqttAdapterFactory;
+    private final Map<String, PooledMqttConnection> connections = new ConcurrentHashMap<>();
+    private final Map<String, String> holderKeys = new ConcurrentHashMap<>();
+    private final Counter received;
+    private final Counter published;
+    private final Counter unrouted;
+
+    @Value("${mqtt.subscription.wildcard:false}")
+    private boolean wildcard;
+
+    @Value("${mqtt.publish.idle-ttl:1m}")
+    private Duration publishIdleTtl;
+
+    private Disposable sweeps;
+
+    public MqttConnectionPool(MqttClientFactory mqttClientFactory, MqttAdapterFactory mqttAdapterFactory, MeterRegistry meterRegistry) {
+        this.mqttClientFactory = mqttClientFactory;
+        this.mqttAdapterFactory = mqttAdapterFactory;
+        Gauge.builder("qlnk.mqtt.pool.connections", connections, Map::size)
+                .description("Open broker connections on this node")
+                .register(meterRegistry);
+        Gauge.builder("qlnk.mqtt.adapters.active", connections,
+                        c -> c.values().stream().filter(PooledMqttConnection::hasInbound).count())
+                .description("Inbound channel adapters currently subscribed on the broker")
+                .register(meterRegistry);
+        Gauge.builder("qlnk.mqtt.handlers", connections,
+                        c -> c.values().stream().mapToInt(PooledMqttConnection::subscriptionCount).sum())
+                .description("User message handlers attached to pooled connections")
+                .register(meterRegistry);
+        Gauge.builder("qlnk.mqtt.pool.users", connections,
+                        c -> c.values().stream().mapToLong(connection -> connection.getHolders().stream()
+                                .filter(holder -> !PUBLISH_HOLDER.equals(holder))
+                                .count()).sum())
+                .description("Users holding a pooled connection")
+                .register(meterRegistry);
+        Gauge.builder("qlnk.mqtt.pool.topics", connections,
+                        c -> c.values().stream().mapToInt(PooledMqttConnection::topicCount).sum())
+                .description("Topics subscribed on the broker over pooled connections")
+                .register(meterRegistry);
+        Gauge.builder("qlnk.mqtt.pool.connected", connections,
+                        c -> c.values().stream().filter(PooledMqttConnection::isConnected).count())
+                .description("Pooled connections currently connected to the broker")
+                .register(meterRegistry);
+        this.received = Counter.builder("qlnk.mqtt.pool.messages.received").register(meterRegistry);
+        this.published = Counter.builder("qlnk.mqtt.pool.messages.published").register(meterRegistry);
+        this.unrouted = Counter.builder("qlnk.mqtt.pool.messages.unrouted")
+                .description("Messages no user of this node had asked for")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        sweeps = Flux.interval(publishIdleTtl)
+                .onBackpressureDrop()
+                .subscribe(tick -> closeIdlePublishers());
+    }
+
+    public PooledMqttConnection acquire(User user) {
+        String key = poolKey(user);
+        String previousKey = holderKeys.put(user.getId(), key);
+        if (previousKey != null && !previousKey.equals(key)) {
+            releaseFrom(previousKey, user.getId());
+        }
+        return hold(key, user, user.getId());
+    }
+
+    /**
+     * Publishes over the account's pooled connection. When the account has none, e.g. a command for a user not
+     * subscribed on this node, a connection is opened and kept for {@code mqtt.publish.idle-ttl} after its last
+     * command, so a burst of commands does not reconnect for each one.
+     */
+    public void publish(User user, String topic, String payload) {
+        hold(poolKey(user), user, PUBLISH_HOLDER).publish(topic, payload);
+    }
+
+    public Optional<PooledMqttConnection> find(User user) {
+        return Optional.ofNullable(connections.get(poolKey(user)));
+    }
+
+    public void release(String userId) {
+        String key = holderKeys.remove(userId);
+        if (key != null) {
+            releaseFrom(key, userId);
+        }
+    }
+
+    public List<PooledMqttConnection> connections() {
+        return List.copyOf(connections.values());
+    }
+
+    public int size() {
+        return connections.size();
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        if (sweeps != null) {
+            sweeps.dispose();
+        }
+        connections.values().forEach(this::close);
+        connections.clear();
+        holderKeys.clear();
+    }
+
+    void closeIdlePublishers() {
+        long idleNanos = publishIdleTtl.toNanos();
+        for (PooledMqttConnection connection : connections.values()) {
+            if (connection.releaseIfIdle(PUBLISH_HOLDER, idleNanos)) {
+                retire(connection);
+            }
+        }
+    }
+
+    private PooledMqttConnection hold(String key, User user, String holder) {
+        while (true) {
+            PooledMqttConnection connection = connections.get(key);
+            if (connection == null) {
+                PooledMqttConnection opened = open(key, user);
+                connection = connections.putIfAbsent(key, opened);
+                if (connection == null) {
+                    connection = opened;
+                } else {
+                    // another thread connected the same account first
+                    close(opened);
+                }
+            }
+            if (connection.hold(holder)) {
+                return connection;
+            }
+            // its last holder left while we looked it up, it is being closed
+            connections.remove(key, connection);
+        }
+    }
+
+    private void releaseFrom(String key, String holder) {
+        PooledMqttConnection connection = connections.get(key);
+        if (connection == null) {
+            return;
+        }
+        connection.unsubscribeAll(holder);
+        if (connection.release(holder)) {
+            retire(connection);
+        }
+    }
+
+    private void retire(PooledMqttConnection connection) {
+        connections.remove(connection.getKey(), connection);
+        close(connection);
+    }
+
+    private PooledMqttConnection open(String key, User user) {
+        PooledMqttConnection connection = new PooledMqttConnection(
+                key,
+                user.getUsername(),
+                mqttClientFactory.createClientManager(user.getUsername(), user.getApikey()),
+                mqttAdapterFactory,
+                wildcard,
+                received,
+                published,
+                unrouted
+        );
+        log.info("🔌 Opened pooled MQTT connection for account {}", user.getUsername());
+        return connection;
+    }
+
+    private void close(PooledMqttConnection connection) {
+        connection.close();
+        log.info("🔌 Closed pooled MQTT connection for account {}", connection.getUsername());
+    }
+
+    private String poolKey(User user) {
+        return user.getUsername() + ":" + user.getApikey();
+    }
+}
@@ -0,0 +1,14 @@
+package QLNKcom.example.QLNK.service.mqtt;
+
+import QLNKcom.example.QLNK.model.User;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public class MqttInboundMessage {
+    private final User user;
+    private final String topic;
+    private final String payload;
+    private final long receivedAt;
+}
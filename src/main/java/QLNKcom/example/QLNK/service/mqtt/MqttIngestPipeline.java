@@ -0,0 +1,179 @@
+package QLNKcom.example.QLNK.service.mqtt;
+
+import QLNKcom.example.QLNK.enums.IngestOverflowPolicy;
+import QLNKcom.example.QLNK.model.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.integration.mqtt.support.MqttHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded hand-off between the MQTT callback threads and message processing.
+ * Messages are hashed by topic onto {@code ingest.lanes} lanes (one per core by default). Each lane processes
+ * its messages one at a time, so readings of the same feed are evaluated in arrival order while different feeds run in parallel.
+ * The lanes share {@code ingest.queue.capacity} and {@code ingest.queue.overflow-policy} decides what happens when a lane is full.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class MqttIngestPipeline {
+
+    private final MqttMessageHandler mqttMessageHandler;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ingest.queue.capacity:10000}")
+    private int capacity;
+
+    @Value("${ingest.queue.overflow-policy:DROP_OLDEST}")
+    private IngestOverflowPolicy overflowPolicy;
+
+    @Value("${ingest.lanes:0}")
+    private int laneCount;
+
+    private Lane[] lanes;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private Counter droppedCounter;
+    private Counter rejectedCounter;
+    private Timer queueWait;
+
+    @PostConstruct
+    public void start() {
+        if (laneCount <= 0) {
+            laneCount = Runtime.getRuntime().availableProcessors();
+        }
+        droppedCounter = Counter.builder("qlnk.ingest.dropped")
+                .description("Messages evicted or rejected because the ingest queue was full")
+                .tag("policy", overflowPolicy.name())
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("qlnk.ingest.invalid")
+                .description("Messages rejected before entering the ingest queue")
+                .tag("reason", "empty")
+                .register(meterRegistry);
+        queueWait = Timer.builder("qlnk.ingest.queue.wait")
+                .description("Time a message spent in the ingest queue")
+                .register(meterRegistry);
+        Gauge.builder("qlnk.ingest.in.flight", inFlight, AtomicInteger::get).register(meterRegistry);
+
+        int laneCapacity = Math.max(1, capacity / laneCount);
+        lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(i, laneCapacity);
+        }
+        log.info("🚰 MQTT ingest pipeline started (lanes={}, capacity={}, overflow={})", laneCount, capacity, overflowPolicy);
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (Lane lane : lanes) {
+            lane.stop();
+        }
+    }
+
+    public void submit(User user, Message<?> message) {
+        String topic = (String) message.getHeaders().get(MqttHeaders.RECEIVED_TOPIC);
+        String payload = (String) message.getPayload();
+
+        if (topic == null || payload.isBlank()) {
+            log.warn("⚠️ Received empty payload from topic {}", topic);
+            rejectedCounter.increment();
+            return;
+        }
+
+        log.debug("🔔 MQTT Received from topic {}: {}", topic, payload);
+        lanes[Math.floorMod(topic.hashCode(), lanes.length)]
+                .enqueue(new MqttInboundMessage(user, topic, payload, System.nanoTime()));
+    }
+
+    private void enqueue(BlockingDeque<MqttInboundMessage> queue, MqttInboundMessage message) {
+        switch (overflowPolicy) {
+            case BLOCK -> {
+                try {
+                    queue.put(message);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    droppedCounter.increment();
+                }
+            }
+            case DROP_OLDEST -> {
+                while (!queue.offerLast(message)) {
+                    if (queue.pollFirst() != null) {
+                        droppedCounter.increment();
+                    }
+                }
+            }
+            case DROP_LATEST -> {
+                if (!queue.offerLast(message)) {
+                    droppedCounter.increment();
+                    log.warn("⚠️ Ingest lane full, dropped message from topic {}", message.getTopic());
+                }
+            }
+        }
+    }
+
+    private Mono<Void> process(MqttInboundMessage message) {
+        inFlight.incrementAndGet();
+        queueWait.record(System.nanoTime() - message.getReceivedAt(), TimeUnit.NANOSECONDS);
+        return mqttMessageHandler.processMessage(message.getUser(), message.getTopic(), message.getPayload())
+                .onErrorResume(e -> {
+                    log.error("Error processing MQTT message from topic {}: {}", message.getTopic(), e.getMessage());
+                    return Mono.empty();
+                })
+                .doFinally(signal -> inFlight.decrementAndGet());
+    }
+
+    /**
+     * A bounded queue drained by its own thread; messages of a lane are processed strictly one after another.
+     */
+    private class Lane {
+        private final BlockingDeque<MqttInboundMessage> queue;
+        private final Scheduler drainScheduler;
+        private final Disposable subscription;
+
+        Lane(int index, int laneCapacity) {
+            queue = new LinkedBlockingDeque<>(laneCapacity);
+            Gauge.builder("qlnk.ingest.queue.depth", queue, BlockingDeque::size)
+                    .tag("lane", Integer.toString(index))
+                    .register(meterRegistry);
+
+            drainScheduler = Schedulers.newSingle("mqtt-ingest-" + index);
+            subscription = Flux.<MqttInboundMessage>generate(sink -> {
+                        try {
+                            sink.next(queue.take());
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            sink.complete();
+                        }
+                    })
+                    .subscribeOn(drainScheduler)
+                    .concatMap(MqttIngestPipeline.this::process, 0)
+                    .subscribe();
+        }
+
+        void enqueue(MqttInboundMessage message) {
+            MqttIngestPipeline.this.enqueue(queue, message);
+        }
+
+        void stop() {
+            subscription.dispose();
+            drainScheduler.dispose();
+        }
+    }
+}
@@ -1,34 +1,33 @@
 package QLNKcom.example.QLNK.service.mqtt;
 
+import QLNKcom.example.QLNK.enums.AlertDirection;
 import QLNKcom.example.QLNK.enums.DeviceType;
 import QLNKcom.example.QLNK.enums.FeedState;
 import QLNKcom.example.QLNK.enums.SensorType;
-import QLNKcom.example.QLNK.exception.DataNotFoundException;
 import QLNKcom.example.QLNK.model.User;
 import QLNKcom.example.QLNK.model.data.DeviceData;
 import QLNKcom.example.QLNK.model.data.FeedRule;
 import QLNKcom.example.QLNK.model.data.SensorData;
-import QLNKcom.example.QLNK.provider.user.UserProvider;
-import QLNKcom.example.QLNK.repository.DeviceDataRepository;
-import QLNKcom.example.QLNK.repository.FeedRuleRepository;
-import QLNKcom.example.QLNK.repository.SensorDataRepository;
-import QLNKcom.example.QLNK.service.email.EmailService;
+import QLNKcom.example.QLNK.service.alert.AlertAggregator;
+import QLNKcom.example.QLNK.service.data.DataBatchWriter;
+import QLNKcom.example.QLNK.service.data.LatestValueStore;
+import QLNKcom.example.QLNK.service.data.RecentReadingStore;
+import QLNKcom.example.QLNK.service.data.SensorRollupService;
+import QLNKcom.example.QLNK.service.rule.CompiledRuleSet;
+import QLNKcom.example.QLNK.service.rule.FeedRuleIndex;
+import QLNKcom.example.QLNK.service.rule.FeedRuleStateWriter;
 import QLNKcom.example.QLNK.service.websocket.WebSocketSessionManager;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.integration.channel.DirectChannel;
-import org.springframework.integration.mqtt.core.MqttPahoClientFactory;
-import org.springframework.integration.mqtt.inbound.MqttPahoMessageDrivenChannelAdapter;
-import org.springframework.integration.mqtt.outbound.MqttPahoMessageHandler;
-import org.springframework.integration.mqtt.support.DefaultPahoMessageConverter;
-import org.springframework.integration.mqtt.support.MqttHeaders;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
 import java.time.Instant;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Slf4j
@@ -36,229 +35,234 @@ import java.time.Instant;
 public class MqttMessageHandler {
 
     private final WebSocketSessionManager webSocketSessionManager;
-    private final DeviceDataRepository deviceDataRepository;
-    private final SensorDataRepository sensorDataRepository;
-    private final FeedRuleRepository feedRuleRepository;
-    private final EmailService emailService;
-    private final UserProvider userProvider;
+    private final DataBatchWriter dataBatchWriter;
+    private final SensorRollupService sensorRollupService;
+    private final LatestValueStore latestValueStore;
+    private final RecentReadingStore recentReadingStore;
+    private final FeedRuleStateWriter feedRuleStateWriter;
+    private final AlertAggregator alertAggregator;
+    private final FeedRuleIndex feedRuleIndex;
     private final MqttCommandService mqttCommandService;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MqttTopicParser mqttTopicParser;
+    private final MqttPayloadDecoder mqttPayloadDecoder;
+    private final DuplicateDeliveryFilter duplicateDeliveryFilter;
+    private final MeterRegistry meterRegistry;
+
+    private Timer parseTimer;
+    private Timer ruleLookupTimer;
+    private Timer ruleCheckTimer;
+    private Timer saveTimer;
+    private Counter invalidTopicCounter;
+    private Counter invalidPayloadCounter;
+    private Counter unknownFeedCounter;
+
+    @PostConstruct
+    public void registerMeters() {
+        parseTimer = stageTimer("parse");
+        ruleLookupTimer = stageTimer("rule.lookup");
+        ruleCheckTimer = stageTimer("rule.check");
+        saveTimer = stageTimer("save");
+        invalidTopicCounter = invalidCounter("topic");
+        invalidPayloadCounter = invalidCounter("payload");
+        unknownFeedCounter = invalidCounter("feed");
+    }
 
-    private JsonNode parsePayload(String payload) {
-        try {
-            return objectMapper.readTree(payload).get("data");
-        } catch (JsonProcessingException e) {
-            log.error("❌ Failed to parse JSON payload: {}", e.getMessage());
-            return null;
-        }
+    private Timer stageTimer(String stage) {
+        return Timer.builder("qlnk.ingest.stage")
+                .description("Time spent in each stage of processing one MQTT message")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
-    private Mono<Void> saveDeviceData(User user, String groupKey, String feedKey, String valueStr, String payload) {
-        boolean status = "1".equals(valueStr) || "true".equalsIgnoreCase(valueStr);
+    private Counter invalidCounter(String reason) {
+        return Counter.builder("qlnk.ingest.invalid")
+                .description("Messages rejected because their topic, payload or feed was not recognised")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private Mono<Void> saveDeviceData(User user, String groupKey, String feedKey, FeedPayload feedPayload, String payload) {
         DeviceData deviceData = DeviceData.builder()
                 .username(user.getUsername())
                 .groupKey(groupKey)
                 .feedKey(feedKey)
-                .status(status)
-                .timeStamp(Instant.now())
+                .status(feedPayload.getValue() == 1.0)
+                .timeStamp(timeStampOf(feedPayload))
                 .build();
 
-        return deviceDataRepository.save(deviceData)
-                .doOnSuccess(savedData -> webSocketSessionManager.sendToUser(user.getId(), payload))
-                .doOnError(error -> log.error("❌ Error saving Device Data: {}", error.getMessage()))
-                .then();
+        return Mono.fromRunnable(() -> saveTimer.record(() -> {
+            mqttCommandService.recordDeviceState(user.getId(), feedKey, feedPayload.getValue());
+            latestValueStore.record(user.getId(), feedKey, feedPayload.getValue(), deviceData.getTimeStamp());
+            recentReadingStore.record(user.getId(), feedKey, deviceData.getTimeStamp().toEpochMilli(), feedPayload.getValue());
+            dataBatchWriter.write(deviceData);
+            webSocketSessionManager.sendToUser(user.getId(), payload);
+        }));
     }
 
-    private Mono<Void> saveSensorData(User user, String groupKey, String feedKey, String valueStr, String payload) {
-        try {
-            double value = Double.parseDouble(valueStr);
-            SensorData sensorData = SensorData.builder()
-                    .username(user.getUsername())
-                    .groupKey(groupKey)
-                    .feedKey(feedKey)
-                    .value(value)
-                    .timeStamp(Instant.now())
-                    .build();
+    private Mono<Void> saveSensorData(User user, String groupKey, String feedKey, FeedPayload feedPayload, String payload) {
+        SensorData sensorData = SensorData.builder()
+                .username(user.getUsername())
+                .groupKey(groupKey)
+                .feedKey(feedKey)
+                .value(feedPayload.getValue())
+                .timeStamp(timeStampOf(feedPayload))
+                .build();
 
-            return sensorDataRepository.save(sensorData)
-                    .doOnSuccess(savedData -> webSocketSessionManager.sendToUser(user.getId(), payload))
-                    .doOnError(error -> log.error("❌ Error saving Sensor Data: {}", error.getMessage()))
-                    .then();
-        } catch (NumberFormatException e) {
-            log.error("❌ Invalid sensor data: {}", payload);
-            return Mono.empty();
-        }
+        return Mono.fromRunnable(() -> saveTimer.record(() -> {
+            dataBatchWriter.write(sensorData);
+            sensorRollupService.record(sensorData);
+            latestValueStore.record(user.getId(), feedKey, feedPayload.getValue(), sensorData.getTimeStamp());
+            recentReadingStore.record(user.getId(), feedKey, sensorData.getTimeStamp().toEpochMilli(), feedPayload.getValue());
+            webSocketSessionManager.sendToUser(user.getId(), payload);
+        }));
     }
 
-    private Mono<Void> saveData(User user, String groupKey, String fullFeedKey, String value, String payload) {
-        log.info("fullFeedKey in save data : {}", fullFeedKey);
-        if (DeviceType.isDevice(fullFeedKey)) {
-            return saveDeviceData(user, groupKey, fullFeedKey, value, payload);
-        } else if (SensorType.isSensor(fullFeedKey)) {
-            return saveSensorData(user, groupKey, fullFeedKey, value, payload);
+    private static Instant timeStampOf(FeedPayload feedPayload) {
+        return feedPayload.getCreatedAt() != null ? feedPayload.getCreatedAt() : Instant.now();
+    }
+
+    private Mono<Void> saveData(User user, FeedTopic feedTopic, FeedPayload feedPayload, String payload) {
+        String fullFeedKey = feedTopic.getFullFeedKey();
+        log.debug("fullFeedKey in save data : {}", fullFeedKey);
+        if (DeviceType.fromFeedKey(feedTopic.getFeedKey()) != null) {
+            return saveDeviceData(user, feedTopic.getGroupKey(), fullFeedKey, feedPayload, payload);
+        } else if (SensorType.fromFeedKey(feedTopic.getFeedKey()) != null) {
+            return saveSensorData(user, feedTopic.getGroupKey(), fullFeedKey, feedPayload, payload);
         } else {
+            unknownFeedCounter.increment();
             log.warn("⚠️ Unrecognized feedKey: {}", fullFeedKey);
             return Mono.empty();
         }
     }
 
     public Mono<Void> processMessage(User user, String topic, String payload) {
-        String[] parts = topic.split("/");
-        if (parts.length < 4) {
+        long parseStart = System.nanoTime();
+        FeedTopic feedTopic = mqttTopicParser.parse(topic);
+        if (feedTopic == null) {
+            invalidTopicCounter.increment();
             log.warn("⚠️ Invalid topic format: {}", topic);
             return Mono.empty();
         }
 
-        String[] groupAndFeed = parts[2].split("\\.");
-        if (groupAndFeed.length < 2) {
-            log.warn("⚠️ Invalid feed format: {}", parts[2]);
+        FeedPayload feedPayload = mqttPayloadDecoder.decode(payload);
+        parseTimer.record(System.nanoTime() - parseStart, TimeUnit.NANOSECONDS);
+        if (feedPayload == null) {
+            invalidPayloadCounter.increment();
+            log.warn("⚠️ Missing or invalid 'data.value' in payload: {}", payload);
             return Mono.empty();
         }
 
-        String groupKey = groupAndFeed[0];
-        String feedKey = groupAndFeed[1];
-        String fullFeedKey = groupKey + "." + feedKey;
-
-        return Mono.just(payload)
-                .map(this::parsePayload)
-                .flatMap(dataNode -> {
-                    if (dataNode == null || dataNode.get("value") == null) { // Adjusted for your payload
-                        log.warn("⚠️ Missing 'data.value' in payload: {}", payload);
-                        return Mono.empty();
-                    }
-
-                    String valueStr = dataNode.get("value").asText();
-                    double value;
-                    try {
-                        value = Double.parseDouble(valueStr);
-                    } catch (NumberFormatException e) {
-                        log.warn("⚠️ Invalid value format in payload: {}", valueStr);
-                        return Mono.empty();
-                    }
-
-                    Mono<Void> alertMono = userProvider.findByEmailAndFullFeedKey(user.getEmail(), fullFeedKey)
-                            .flatMap(feedRule -> checkAndAlert(user, feedRule, value))
-                            .onErrorResume(DataNotFoundException.class, e -> Mono.empty())
-                            .then();
-
-                    return alertMono.then(saveData(user, groupKey, fullFeedKey, valueStr, payload));
-                });
+        return duplicateDeliveryFilter.isFirstDelivery(topic, feedPayload, payload)
+                .flatMap(first -> first ? handle(user, feedTopic, feedPayload, payload) : Mono.empty());
     }
 
+    private Mono<Void> handle(User user, FeedTopic feedTopic, FeedPayload feedPayload, String payload) {
+        double value = feedPayload.getValue();
+        long lookupStart = System.nanoTime();
+        CompiledRuleSet rules = feedRuleIndex.find(user.getEmail(), feedTopic.getFullFeedKey());
+        ruleLookupTimer.record(System.nanoTime() - lookupStart, TimeUnit.NANOSECONDS);
 
-    private Mono<Void> checkAndAlert(User user, FeedRule feed, double value) {
-        Double ceiling = feed.getCeiling();
-        Double floor = feed.getFloor();
-        String feedName = feed.getInputFeed();
+        return applyRules(user, rules, value).then(saveData(user, feedTopic, feedPayload, payload));
+    }
 
-        // Send email if value exceeds ceiling or falls below floor
-        Mono<Void> emailMono = Mono.empty();
-        if (ceiling != null && value > ceiling) {
-            String subject = "Alert: " + feedName + " Exceeded Upper Threshold";
-            String text = String.format("The %s value (%.1f) has exceeded the upper threshold of %.1f.",
-                    feedName, value, ceiling);
-            emailMono = emailService.sendEmail(user.getEmail(), subject, text)
-                    .doOnSuccess(v -> log.info("Sent email alert for {}: value = {}", feedName, value));
-        } else if (floor != null && value < floor) {
-            String subject = "Alert: " + feedName + " Below Lower Threshold";
-            String text = String.format("The %s value (%.1f) has fallen below the lower threshold of %.1f.",
-                    feedName, value, floor);
-            emailMono = emailService.sendEmail(user.getEmail(), subject, text)
-                    .doOnSuccess(v -> log.info("Sent email alert for {}: value = {}", feedName, value));
+    /**
+     * Evaluates every rule of the feed; only rules that fired or changed state cost more than a few comparisons.
+     * The rule.check timer covers the evaluation and the commands and state writes it waits on.
+     */
+    private Mono<Void> applyRules(User user, CompiledRuleSet rules, double value) {
+        long start = System.nanoTime();
+        Mono<Void> actions = null;
+        int unchanged = 0;
+        for (int i = 0; i < rules.size(); i++) {
+            FeedRule rule = rules.rule(i);
+            FeedState previousAbove = rule.getAboveState();
+            FeedState previousBelow = rule.getBelowState();
+            int outcome = rules.evaluate(i, value);
+            if ((outcome & CompiledRuleSet.CHANGED) == 0) {
+                unchanged++;
+            }
+            if (outcome != 0) {
+                Mono<Void> action = act(user, rules, i, outcome, value, previousAbove, previousBelow);
+                actions = actions == null ? action : actions.then(action);
+            }
+        }
+        if (unchanged > 0) {
+            feedRuleStateWriter.recordUnchanged(unchanged);
         }
 
-
-        // Update states and send MQTT message based on value
-        Mono<Void> mqttMono = Mono.just(value)
-                .flatMap(currentValue -> {
-                    Mono<Void> aboveMono = Mono.empty();
-                    Mono<Void> belowMono = Mono.empty();
-
-                    // Handle value > ceiling
-                    if (ceiling != null && currentValue > ceiling && feed.getOutputFeedAbove() != null) {
-                        feed.setAboveState(FeedState.VIOLATING);
-                        String topic = user.getUsername() + "/feeds/" + feed.getOutputFeedAbove();
-                        String aboveValueStr = feed.getAboveValue() != null ? feed.getAboveValue().toString() : "1.0";
-                        aboveMono = mqttCommandService.sendMqttCommand(user.getId(), feed.getOutputFeedAbove(), aboveValueStr)
-                                .doOnSuccess(v -> log.info("Sent MQTT adjustment to {}: {} (value: {} > ceiling: {})",
-                                        topic, aboveValueStr, currentValue, ceiling));
-                    }
-
-                    // Handle value < floor
-                    if (floor != null && currentValue < floor && feed.getOutputFeedBelow() != null) {
-                        feed.setBelowState(FeedState.VIOLATING);
-                        String topic = user.getUsername() + "/feeds/" + feed.getOutputFeedBelow();
-                        String belowValueStr = feed.getBelowValue() != null ? feed.getBelowValue().toString() : "1.0";
-                        belowMono = mqttCommandService.sendMqttCommand(user.getId(), feed.getOutputFeedBelow(), belowValueStr)
-                                .doOnSuccess(v -> log.info("Sent MQTT adjustment to {}: {} (value: {} < floor: {})",
-                                        topic, belowValueStr, currentValue, floor));
-                    }
-
-                    // If value is not above ceiling, check aboveState to send !aboveValue
-                    if (ceiling != null && currentValue <= ceiling && feed.getOutputFeedAbove() != null) {
-                        if (feed.getAboveState() == FeedState.VIOLATING) {
-                            String topic = user.getUsername() + "/feeds/" + feed.getOutputFeedAbove();
-                            String invertValueStr = (feed.getAboveValue() != null && feed.getAboveValue() == 1.0) ? "0.0" : "1.0";
-                            aboveMono = mqttCommandService.sendMqttCommand(user.getId(), feed.getOutputFeedAbove(), invertValueStr)
-                                    .doOnSuccess(v -> log.info("Sent MQTT adjustment to {}: {} (value: {} not above ceiling, was VIOLATING above)",
-                                            topic, invertValueStr, currentValue))
-                                    .then(Mono.fromRunnable(() -> feed.setAboveState(FeedState.NORMAL)));
-                        } else {
-                            feed.setAboveState(FeedState.NORMAL);
-                        }
-                    }
-
-                    // If value is not below floor, check belowState to send !belowValue
-                    if (floor != null && currentValue >= floor && feed.getOutputFeedBelow() != null) {
-                        if (feed.getBelowState() == FeedState.VIOLATING) {
-                            String topic = user.getUsername() + "/feeds/" + feed.getOutputFeedBelow();
-                            String invertValueStr = (feed.getBelowValue() != null && feed.getBelowValue() == 1.0) ? "0.0" : "1.0";
-                            belowMono = mqttCommandService.sendMqttCommand(user.getId(), feed.getOutputFeedBelow(), invertValueStr)
-                                    .doOnSuccess(v -> log.info("Sent MQTT adjustment to {}: {} (value: {} not below floor, was VIOLATING below)",
-                                            topic, invertValueStr, currentValue))
-                                    .then(Mono.fromRunnable(() -> feed.setBelowState(FeedState.NORMAL)));
-                        } else {
-                            feed.setBelowState(FeedState.NORMAL);
-                        }
-                    }
-
-                    // Combine above and below operations
-                    return aboveMono.then(belowMono);
-                });
-
-        return emailMono
-                .then(mqttMono)
-                .then(feedRuleRepository.save(feed))
-                .then();
+        if (actions == null) {
+            ruleCheckTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return Mono.empty();
+        }
+        return actions.doFinally(signal -> ruleCheckTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
     }
 
-    public void attachHandler(MqttPahoMessageDrivenChannelAdapter adapter, User user) {
-        DirectChannel mqttChannel = new DirectChannel();
-        adapter.setOutputChannel(mqttChannel);
+    private Mono<Void> act(User user, CompiledRuleSet rules, int i, int outcome, double value,
+                           FeedState previousAbove, FeedState previousBelow) {
+        FeedRule rule = rules.rule(i);
+        String feedName = rule.getInputFeed();
 
-        mqttChannel.subscribe(message -> {
-            String topic = (String) message.getHeaders().get(MqttHeaders.RECEIVED_TOPIC);
-            String payload = (String) message.getPayload();
+        // Alert emails are debounced and sent by the aggregator without holding up this message
+        if ((outcome & CompiledRuleSet.ABOVE) != 0) {
+            alertAggregator.violation(rule.getId(), user.getEmail(), feedName, AlertDirection.ABOVE, value, rules.ceiling(i));
+        } else if ((outcome & CompiledRuleSet.BELOW) != 0) {
+            alertAggregator.violation(rule.getId(), user.getEmail(), feedName, AlertDirection.BELOW, value, rules.floor(i));
+        }
+        if ((outcome & CompiledRuleSet.ABOVE_CLEARED) != 0) {
+            alertAggregator.resolve(rule.getId(), AlertDirection.ABOVE);
+        }
+        if ((outcome & CompiledRuleSet.BELOW_CLEARED) != 0) {
+            alertAggregator.resolve(rule.getId(), AlertDirection.BELOW);
+        }
 
-            if (payload.isBlank()) {
-                log.warn("⚠️ Received empty payload from topic {}", topic);
-                return;
-            }
+        Mono<Void> aboveMono = Mono.empty();
+        Mono<Void> belowMono = Mono.empty();
+        String outputAbove = rule.getOutputFeedAbove();
+        String outputBelow = rule.getOutputFeedBelow();
+
+        if ((outcome & CompiledRuleSet.ABOVE) != 0 && outputAbove != null) {
+            String aboveValueStr = rule.getAboveValue() != null ? rule.getAboveValue().toString() : "1.0";
+            aboveMono = mqttCommandService.sendMqttCommandIfChanged(user, outputAbove, aboveValueStr)
+                    .doOnSuccess(v -> log.debug("Sent MQTT adjustment to {}: {} (value: {} > ceiling: {})",
+                            outputAbove, aboveValueStr, value, rules.ceiling(i)))
+                    .onErrorResume(e -> Mono.empty());
+        } else if ((outcome & CompiledRuleSet.ABOVE_CLEARED) != 0 && outputAbove != null) {
+            String invertValueStr = inverse(rule.getAboveValue());
+            aboveMono = mqttCommandService.sendMqttCommandIfChanged(user, outputAbove, invertValueStr)
+                    .doOnSuccess(v -> log.info("Sent MQTT adjustment to {}: {} (value: {} back below ceiling, was VIOLATING above)",
+                            outputAbove, invertValueStr, value))
+                    .onErrorResume(e -> {
+                        // back to VIOLATING, so the next reading past the band clears it and sends the command again
+                        rule.setAboveState(FeedState.VIOLATING);
+                        return Mono.empty();
+                    });
+        }
+
+        if ((outcome & CompiledRuleSet.BELOW) != 0 && outputBelow != null) {
+            String belowValueStr = rule.getBelowValue() != null ? rule.getBelowValue().toString() : "1.0";
+            belowMono = mqttCommandService.sendMqttCommandIfChanged(user, outputBelow, belowValueStr)
+                    .doOnSuccess(v -> log.debug("Sent MQTT adjustment to {}: {} (value: {} < floor: {})",
+                            outputBelow, belowValueStr, value, rules.floor(i)))
+                    .onErrorResume(e -> Mono.empty());
+        } else if ((outcome & CompiledRuleSet.BELOW_CLEARED) != 0 && outputBelow != null) {
+            String invertValueStr = inverse(rule.getBelowValue());
+            belowMono = mqttCommandService.sendMqttCommandIfChanged(user, outputBelow, invertValueStr)
+                    .doOnSuccess(v -> log.info("Sent MQTT adjustment to {}: {} (value: {} back above floor, was VIOLATING below)",
+                            outputBelow, invertValueStr, value))
+                    .onErrorResume(e -> {
+                        rule.setBelowState(FeedState.VIOLATING);
+                        return Mono.empty();
+                    });
+        }
 
-            log.info("🔔 MQTT Received from topic {}: {}", topic, payload);
-            assert topic != null;
-            processMessage(user, topic, payload).subscribe(
-                    v -> {},
-                    e -> log.error("Error processing MQTT message from topic {}: {}", topic, e.getMessage())
-            );
-        });
+        Mono<Void> commands = aboveMono.then(belowMono);
+        return (outcome & CompiledRuleSet.CHANGED) == 0
+                ? commands
+                : commands.then(Mono.defer(() -> feedRuleStateWriter.persistIfChanged(rule, previousAbove, previousBelow)));
     }
 
-    public MqttPahoMessageHandler createMessageHandler(User user, MqttPahoClientFactory mqttPahoClientFactory) {
-        String clientId = "mqtt-handler-" + user.getId();
-        MqttPahoMessageHandler handler = new MqttPahoMessageHandler(clientId, mqttPahoClientFactory);
-        handler.setAsync(true);
-        handler.setConverter(new DefaultPahoMessageConverter());
-        return handler;
+    private static String inverse(Double actuatorValue) {
+        return actuatorValue != null && actuatorValue == 1.0 ? "0.0" : "1.0";
     }
 }
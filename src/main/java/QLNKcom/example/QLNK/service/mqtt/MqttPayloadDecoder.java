@@ -0,0 +1,142 @@
+package QLNKcom.example.QLNK.service.mqtt;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Reads {@code data.value}, {@code data.created_at} and {@code data.id} out of Adafruit JSON payloads with Jackson's streaming parser,
+ * skipping every other field without building a tree.
+ */
+@Component
+public class MqttPayloadDecoder {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * @return the decoded payload, or {@code null} when the JSON is malformed or {@code data.value} is missing, not numeric
+     * or not finite
+     */
+    public FeedPayload decode(String payload) {
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if ("data".equals(field) && token == JsonToken.START_OBJECT) {
+                    return readData(parser);
+                }
+                parser.skipChildren();
+            }
+            return null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private FeedPayload readData(JsonParser parser) throws IOException {
+        double value = Double.NaN;
+        Instant createdAt = null;
+        String id = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if ("value".equals(field)) {
+                value = readValue(parser, token);
+            } else if ("created_at".equals(field) && token == JsonToken.VALUE_STRING) {
+                createdAt = readInstant(parser.getText());
+            } else if ("id".equals(field) && token == JsonToken.VALUE_STRING) {
+                id = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return Double.isFinite(value) ? new FeedPayload(value, createdAt, id) : null;
+    }
+
+    private static double readValue(JsonParser parser, JsonToken token) throws IOException {
+        return switch (token) {
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> parser.getDoubleValue();
+            case VALUE_TRUE -> 1.0;
+            case VALUE_FALSE -> 0.0;
+            case VALUE_STRING -> parseNumber(parser.getText());
+            default -> {
+                parser.skipChildren();
+                yield Double.NaN;
+            }
+        };
+    }
+
+    private static double parseNumber(String text) {
+        if ("true".equalsIgnoreCase(text)) {
+            return 1.0;
+        }
+        if ("false".equalsIgnoreCase(text)) {
+            return 0.0;
+        }
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static Instant readInstant(String text) {
+        Instant instant = readUtcSeconds(text);
+        if (instant != null) {
+            return instant;
+        }
+        try {
+            return Instant.parse(text);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Fast path for the {@code yyyy-MM-ddTHH:mm:ssZ} form Adafruit sends, which costs far less than {@link Instant#parse}.
+     */
+    private static Instant readUtcSeconds(String text) {
+        if (text.length() != 20 || text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != 'T'
+                || text.charAt(13) != ':' || text.charAt(16) != ':' || text.charAt(19) != 'Z') {
+            return null;
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 2);
+        int day = digits(text, 8, 2);
+        int hour = digits(text, 11, 2);
+        int minute = digits(text, 14, 2);
+        int second = digits(text, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return null;
+        }
+        try {
+            long epochDay = LocalDate.of(year, month, day).toEpochDay();
+            return Instant.ofEpochSecond(epochDay * 86_400 + hour * 3_600L + minute * 60L + second);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    private static int digits(String text, int start, int length) {
+        int result = 0;
+        for (int i = start; i < start + length; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+}
@@ -19,13 +19,15 @@ public class MqttService {
     private final MqttSubscriptionManager mqttSubscriptionManager;
     private final MqttCommandService mqttCommandService;
 
-    public Mono<Void> subscribeUserFeedsOnLogin(User user) {
-        List<String> topics = user.getGroups().stream()
+    public List<String> feedTopics(User user) {
+        return user.getGroups().stream()
                 .flatMap(group -> group.getFeeds().stream())
                 .map(feed -> user.getUsername() + "/feeds/" + feed.getKey() + "/json")
                 .toList();
+    }
 
-        return mqttSubscriptionManager.subscribeFeed(user, topics)
+    public Mono<Void> subscribeUserFeedsOnLogin(User user) {
+        return mqttSubscriptionManager.subscribeFeed(user, feedTopics(user))
                 .onErrorResume(e -> {
                     log.error("Failed to subscribe feeds for user {}: {}", user.getUsername(), e.getMessage());
                     return Mono.empty();
@@ -50,6 +52,10 @@ public class MqttService {
         return mqttCommandService.sendMqttCommand(userId, feed, value);
     }
 
+    public void evictCachedUser(String userId) {
+        mqttCommandService.evictUser(userId);
+    }
+
     public Mono<Void> unsubscribeGroupFeeds(User user, List<Feed> feeds) {
         return Flux.fromIterable(feeds)
                 .flatMap(feed -> unsubscribeUserFeed(user, feed))
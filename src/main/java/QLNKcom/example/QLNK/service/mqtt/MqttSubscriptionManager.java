@@ -1,11 +1,18 @@
 package QLNKcom.example.QLNK.service.mqtt;
 
+import QLNKcom.example.QLNK.enums.SubscriptionChangeType;
 import QLNKcom.example.QLNK.model.User;
+import QLNKcom.example.QLNK.provider.user.UserProvider;
+import QLNKcom.example.QLNK.service.cluster.SubscriptionChange;
+import QLNKcom.example.QLNK.service.cluster.SubscriptionChangeBus;
+import QLNKcom.example.QLNK.service.cluster.SubscriptionOwnership;
+import QLNKcom.example.QLNK.service.data.RecentReadingStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.integration.mqtt.core.MqttPahoClientFactory;
-import org.springframework.integration.mqtt.inbound.MqttPahoMessageDrivenChannelAdapter;
 import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
@@ -16,10 +23,29 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 @RequiredArgsConstructor
 public class MqttSubscriptionManager {
-    private final MqttClientFactory mqttClientFactory;
-    private final MqttAdapterFactory mqttAdapterFactory;
-    private final MqttMessageHandler mqttMessageHandler;
-    private final Map<String, MqttPahoMessageDrivenChannelAdapter> activeSubscribers = new ConcurrentHashMap<>();
+    private final MqttConnectionPool mqttConnectionPool;
+    private final MqttIngestPipeline mqttIngestPipeline;
+    private final SubscriptionOwnership subscriptionOwnership;
+    private final SubscriptionChangeBus subscriptionChangeBus;
+    private final UserProvider userProvider;
+    private final RecentReadingStore recentReadingStore;
+
+    // topics each user asked for, whether or not this node delivers them; read by MqttSubscriptionReconciler
+    private final Map<String, User> desiredUsers = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> desiredTopics = new ConcurrentHashMap<>();
+    private Disposable remoteChanges;
+
+    @PostConstruct
+    public void listenForRemoteChanges() {
+        remoteChanges = subscriptionChangeBus.listen()
+                .concatMap(this::applyRemoteChange)
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        remoteChanges.dispose();
+    }
 
     public Mono<Void> subscribeFeed(User user, List<String> feeds) {
         if (feeds.isEmpty()) {
@@ -27,8 +53,29 @@ public class MqttSubscriptionManager {
             return Mono.empty();
         }
 
-        String clientId = "mqtt-" + user.getId();
-        return createNewAdapter(user, feeds, clientId).then()
+        return subscriptionChangeBus.publish(SubscriptionChangeType.ADD, user.getId(), feeds)
+                .then(restore(user, feeds));
+    }
+
+    /**
+     * Records the topics as wanted and subscribes them if this node owns the user's broker account,
+     * without telling the other nodes; used when every node rebuilds the same state, e.g. on startup.
+     */
+    public Mono<Void> restore(User user, Collection<String> topics) {
+        desire(user, topics);
+        return subscriptionOwnership.claim(user.getUsername())
+                .flatMap(owned -> owned
+                        ? Mono.fromRunnable(() -> {
+                            PooledMqttConnection connection = mqttConnectionPool.acquire(user);
+                            if (!connection.hasSubscription(user.getId())) {
+                                // readings that arrived while another node owned the account are missing from old rings
+                                recentReadingStore.drop(user.getId());
+                            }
+                            connection.subscribe(user, topics, message -> mqttIngestPipeline.submit(user, message));
+                        })
+                        .subscribeOn(Schedulers.boundedElastic())
+                        : Mono.empty())
+                .then()
                 .onErrorResume(e -> {
                     log.error("❌ Failed to subscribe user {} on login: {}", user.getId(), e.getMessage());
                     return Mono.empty();
@@ -39,14 +86,18 @@ public class MqttSubscriptionManager {
      * @param  topic  the topic must have format username/feeds/feedKey/json
      */
     public Mono<Void> updateSubscription(User user, String topic) {
-        String clientId = "mqtt-" + user.getId();
-        MqttPahoMessageDrivenChannelAdapter adapter = activeSubscribers.get(clientId);
-        if (adapter == null) {
+        Optional<PooledMqttConnection> connection = mqttConnectionPool.find(user)
+                .filter(c -> c.hasSubscription(user.getId()));
+        if (connection.isEmpty()) {
             log.warn("No active subscription found for user {}, subscribing instead", user.getUsername());
             return subscribeFeed(user, Collections.singletonList(topic));
         }
 
-        return updateAdapterTopics(adapter, topic, user)
+        desire(user, List.of(topic));
+        return subscriptionChangeBus.publish(SubscriptionChangeType.ADD, user.getId(), List.of(topic))
+                .then(Mono.fromRunnable(() -> connection.get()
+                        .subscribe(user, List.of(topic), message -> mqttIngestPipeline.submit(user, message))))
+                .then()
                 .doOnSuccess(v -> log.info("✅ Updated subscription for user {} to feeds: {}", user.getUsername(), topic))
                 .onErrorResume(e -> {
                     log.error("❌ Failed to update subscription for user {}: {}", user.getId(), e.getMessage());
@@ -54,66 +105,85 @@ public class MqttSubscriptionManager {
                 });
     }
 
+    public Mono<Void> unsubscribeFeeds(User user) {
+        return subscriptionChangeBus.publish(SubscriptionChangeType.CLEAR, user.getId(), List.of())
+                .then(Mono.fromRunnable(() -> {
+                    clear(user.getId());
+                    log.info("❌ Unsubscribed user {} from MQTT", user.getUsername());
+                }).subscribeOn(Schedulers.boundedElastic()))
+                .then();
+    }
+
+    /**
+     * @param topic the topic must have format username/feeds/feedKey/json
+     */
+    public Mono<Void> unsubscribeFeed(User user, String topic) {
+        desiredUsers.putIfAbsent(user.getId(), user);
+        return subscriptionChangeBus.publish(SubscriptionChangeType.REMOVE, user.getId(), List.of(topic))
+                .then(Mono.fromRunnable(() -> remove(user.getId(), topic)));
+    }
 
-    private Mono<MqttPahoMessageDrivenChannelAdapter> createNewAdapter(User user, List<String> feeds, String clientId) {
-        return Mono.fromCallable(() -> {
-            MqttPahoClientFactory client = mqttClientFactory.createMqttClient(user.getUsername(), user.getApikey());
-            MqttPahoMessageDrivenChannelAdapter adapter = mqttAdapterFactory.createMqttAdapter(user, client, feeds);
-            adapter.start();
-            mqttMessageHandler.attachHandler(adapter, user);
-            activeSubscribers.put(clientId, adapter);
-            return adapter;
-        });
+    /**
+     * Drops this node's subscriptions of every user of the account but keeps them as wanted;
+     * used when the account moves to another node.
+     */
+    public void releaseAccount(String account) {
+        mqttConnectionPool.connections().stream()
+                .filter(connection -> connection.getUsername().equals(account))
+                .forEach(connection -> List.copyOf(connection.getHolders()).stream()
+                        .filter(connection::hasSubscription)
+                        .forEach(userId -> {
+                            mqttConnectionPool.release(userId);
+                            recentReadingStore.drop(userId);
+                        }));
     }
 
-    private Mono<Void> updateAdapterTopics(MqttPahoMessageDrivenChannelAdapter adapter, String topic, User user) {
-        return Mono.fromRunnable(() -> {
-            Set<String> currentTopics = new HashSet<>(Arrays.asList(adapter.getTopic()));
-            log.info("current topic: {}", currentTopics);
+    public Map<String, Set<String>> getDesiredTopics() {
+        return Collections.unmodifiableMap(desiredTopics);
+    }
 
-            if (!currentTopics.contains(topic)) {
-                adapter.addTopic(topic);
-                log.info("➕ Added topic {} for user {}", topic, user.getUsername());
-            }
-        });
+    public Optional<User> findDesiredUser(String userId) {
+        return Optional.ofNullable(desiredUsers.get(userId));
     }
 
-    public Mono<Void> unsubscribeFeeds(User user) {
-        return Mono.fromRunnable(() -> {
-            String clientId = "mqtt-" + user.getId();
-            MqttPahoMessageDrivenChannelAdapter adapter = activeSubscribers.remove(clientId);
-            if (adapter != null) {
-                adapter.stop();
-                log.info("❌ Unsubscribed user {} from MQTT", user.getUsername());
-            }
-        }).subscribeOn(Schedulers.boundedElastic()).then();
+    private Mono<Void> applyRemoteChange(SubscriptionChange change) {
+        return switch (change.getType()) {
+            case ADD -> userProvider.findById(change.getUserId())
+                    .flatMap(user -> restore(user, change.getTopics()))
+                    .onErrorResume(e -> {
+                        log.error("❌ Failed to apply remote subscription of user {}: {}", change.getUserId(), e.getMessage());
+                        return Mono.empty();
+                    });
+            case REMOVE -> Mono.fromRunnable(() -> change.getTopics().forEach(topic -> remove(change.getUserId(), topic)));
+            case CLEAR -> Mono.fromRunnable(() -> clear(change.getUserId()));
+        };
     }
 
-    /**
-     * @param topic the topic must have format username/feeds/feedKey/json
-     */
-    public Mono<Void> unsubscribeFeed(User user, String topic) {
-        String clientId = "mqtt-" + user.getId();
-        MqttPahoMessageDrivenChannelAdapter adapter = activeSubscribers.get(clientId);
-
-        return Mono.fromRunnable(() -> {
-            if (adapter != null) {
-                Set<String> currentTopics = new HashSet<>(Arrays.asList(adapter.getTopic()));
-                if (currentTopics.contains(topic)) {
-                    adapter.removeTopic(topic);
-                    currentTopics.remove(topic);
-                    log.info("➖ Removed topic {} for user {}", topic, user.getUsername());
-
-                    if (currentTopics.isEmpty()) {
-                        adapter.stop();
-                        activeSubscribers.remove(clientId);
-                        log.info("🗑️ Removed adapter for user {} as no topics remain", user.getUsername());
-                    }
-                } else {
-                    log.info("❌ Topic {} is not subscribed by adapter of user {}", topic, user.getUsername());
-                }
+    private void desire(User user, Collection<String> topics) {
+        desiredUsers.put(user.getId(), user);
+        desiredTopics.computeIfAbsent(user.getId(), id -> ConcurrentHashMap.newKeySet()).addAll(topics);
+    }
+
+    private void remove(String userId, String topic) {
+        desiredTopics.computeIfPresent(userId, (id, topics) -> {
+            topics.remove(topic);
+            return topics.isEmpty() ? null : topics;
+        });
+        User user = desiredUsers.get(userId);
+        if (user == null) {
+            return;
+        }
+        mqttConnectionPool.find(user).ifPresent(connection -> {
+            if (!connection.unsubscribe(userId, topic)) {
+                mqttConnectionPool.release(userId);
+                log.info("🗑️ Released connection of user {} as no topics remain", user.getUsername());
             }
         });
     }
 
+    private void clear(String userId) {
+        desiredUsers.remove(userId);
+        desiredTopics.remove(userId);
+        mqttConnectionPool.release(userId);
+    }
 }
@@ -0,0 +1,226 @@
+package QLNKcom.example.QLNK.service.mqtt;
+
+import QLNKcom.example.QLNK.model.User;
+import QLNKcom.example.QLNK.repository.UserRepository;
+import QLNKcom.example.QLNK.service.cluster.SubscriptionOwnership;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Brings broker subscriptions back to what users asked for.
+ * On startup every user's feeds are recorded as wanted, paging through the users, and the accounts this node owns
+ * are subscribed at a paced connection rate. Afterwards, every {@code mqtt.reconcile.interval}, accounts that moved
+ * to another node are released, lost connections are reconnected with jittered exponential backoff
+ * and topics missing from the pool are subscribed again.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class MqttSubscriptionReconciler {
+
+    private static final String FIRST_ID = "000000000000000000000000";
+
+    private final UserRepository userRepository;
+    private final MqttService mqttService;
+    private final MqttSubscriptionManager mqttSubscriptionManager;
+    private final MqttConnectionPool mqttConnectionPool;
+    private final SubscriptionOwnership subscriptionOwnership;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${mqtt.reconcile.page-size:100}")
+    private int pageSize;
+
+    @Value("${mqtt.reconcile.connect-rate:5}")
+    private int connectRate;
+
+    @Value("${mqtt.reconcile.interval:5s}")
+    private Duration interval;
+
+    @Value("${mqtt.reconcile.backoff.initial:1s}")
+    private Duration initialBackoff;
+
+    @Value("${mqtt.reconcile.backoff.max:2m}")
+    private Duration maxBackoff;
+
+    private final AtomicLong desired = new AtomicLong();
+    private final AtomicLong active = new AtomicLong();
+    private final AtomicLong missing = new AtomicLong();
+    private final Map<String, Backoff> backoffs = new ConcurrentHashMap<>();
+    private Disposable startup;
+    private Disposable periodic;
+
+    @Order(1)
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Gauge.builder("qlnk.mqtt.subscriptions", desired, AtomicLong::get).tag("state", "desired").register(meterRegistry);
+        Gauge.builder("qlnk.mqtt.subscriptions", active, AtomicLong::get).tag("state", "active").register(meterRegistry);
+        Gauge.builder("qlnk.mqtt.subscriptions", missing, AtomicLong::get).tag("state", "missing").register(meterRegistry);
+
+        Duration pace = Duration.ofSeconds(1).dividedBy(Math.max(1, connectRate));
+        startup = subscriptionOwnership.refresh()
+                .thenMany(loadUsers())
+                .filter(user -> user.getApikey() != null && user.getGroups() != null)
+                .concatMap(user -> {
+                    List<String> topics = mqttService.feedTopics(user);
+                    if (topics.isEmpty()) {
+                        return Mono.empty();
+                    }
+                    Mono<Void> restore = mqttSubscriptionManager.restore(user, topics);
+                    return subscriptionOwnership.shouldOwn(user.getUsername()) ? Mono.delay(pace).then(restore) : restore;
+                })
+                .then()
+                .doOnSuccess(v -> log.info("🔁 Startup subscription of all users finished"))
+                .doOnError(e -> log.error("❌ Startup subscription failed: {}", e.getMessage()))
+                .subscribe();
+
+        periodic = Flux.interval(interval, interval)
+                .onBackpressureDrop()
+                .concatMap(tick -> Mono.fromRunnable(this::rebalance)
+                        .then(Mono.fromRunnable(this::reconnectLost))
+                        .then(Mono.defer(this::resubscribeMissing))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .onErrorResume(e -> {
+                            log.error("❌ Subscription reconcile failed: {}", e.getMessage());
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (startup != null) {
+            startup.dispose();
+        }
+        if (periodic != null) {
+            periodic.dispose();
+        }
+    }
+
+    private Flux<User> loadUsers() {
+        return loadPage(FIRST_ID)
+                .expand(page -> page.size() < pageSize ? Mono.empty() : loadPage(page.get(page.size() - 1).getId()))
+                .flatMapIterable(Function.identity());
+    }
+
+    private Mono<List<User>> loadPage(String afterId) {
+        return userRepository.findByIdGreaterThan(afterId, PageRequest.of(0, pageSize, Sort.by("id")))
+                .collectList();
+    }
+
+    /**
+     * Releases connections of accounts this node no longer owns, then gives up the leases the ring now maps elsewhere.
+     */
+    private void rebalance() {
+        for (PooledMqttConnection connection : mqttConnectionPool.connections()) {
+            String account = connection.getUsername();
+            if (!subscriptionOwnership.isOwnedLocally(account) || !subscriptionOwnership.shouldOwn(account)) {
+                log.info("🧭 Account {} moved to another node, releasing its subscriptions", account);
+                mqttSubscriptionManager.releaseAccount(account);
+            }
+        }
+        subscriptionOwnership.getHeldAccounts().stream()
+                .filter(account -> !subscriptionOwnership.shouldOwn(account))
+                .forEach(account -> subscriptionOwnership.release(account).subscribe());
+    }
+
+    private void reconnectLost() {
+        List<PooledMqttConnection> connections = mqttConnectionPool.connections();
+        Set<String> keys = new HashSet<>();
+        long now = System.nanoTime();
+        for (PooledMqttConnection connection : connections) {
+            keys.add(connection.getKey());
+            if (connection.isConnected()) {
+                if (backoffs.remove(connection.getKey()) != null) {
+                    log.info("✅ Connection of account {} is back", connection.getUsername());
+                }
+                continue;
+            }
+
+            Backoff backoff = backoffs.computeIfAbsent(connection.getKey(), key -> new Backoff());
+            if (now < backoff.nextAttemptAt) {
+                continue;
+            }
+            log.warn("🔌 Reconnecting account {} (attempt {})", connection.getUsername(), backoff.attempts + 1);
+            connection.reconnect();
+            if (!connection.isConnected()) {
+                backoff.failed(System.nanoTime());
+            }
+        }
+        backoffs.keySet().retainAll(keys);
+    }
+
+    private Mono<Void> resubscribeMissing() {
+        long desiredCount = 0;
+        long activeCount = 0;
+        long missingCount = 0;
+        List<Mono<Void>> resubscribes = new ArrayList<>();
+
+        for (Map.Entry<String, Set<String>> entry : mqttSubscriptionManager.getDesiredTopics().entrySet()) {
+            Optional<User> user = mqttSubscriptionManager.findDesiredUser(entry.getKey());
+            if (user.isEmpty() || !subscriptionOwnership.shouldOwn(user.get().getUsername())) {
+                continue;
+            }
+            Optional<PooledMqttConnection> connection = mqttConnectionPool.find(user.get());
+            Set<String> subscribed = connection.map(c -> c.topicsOf(entry.getKey())).orElse(Set.of());
+            boolean connected = connection.map(PooledMqttConnection::isConnected).orElse(false);
+
+            List<String> toSubscribe = new ArrayList<>();
+            for (String topic : entry.getValue()) {
+                desiredCount++;
+                if (!subscribed.contains(topic)) {
+                    missingCount++;
+                    toSubscribe.add(topic);
+                } else if (connected) {
+                    activeCount++;
+                } else {
+                    missingCount++; // subscribed on a connection that is down; reconnectLost takes care of it
+                }
+            }
+            if (!toSubscribe.isEmpty()) {
+                log.warn("🔁 Resubscribing user {} to {} missing topics", user.get().getUsername(), toSubscribe.size());
+                resubscribes.add(mqttSubscriptionManager.restore(user.get(), toSubscribe));
+            }
+        }
+
+        desired.set(desiredCount);
+        active.set(activeCount);
+        missing.set(missingCount);
+        return Flux.concat(resubscribes).then();
+    }
+
+    /**
+     * Exponential backoff with jitter: the n-th delay is drawn from [d/2, d] where d = min(max, initial * 2^n).
+     */
+    private class Backoff {
+        private int attempts;
+        private long nextAttemptAt;
+
+        private void failed(long now) {
+            long ceiling = Math.min(maxBackoff.toNanos(), initialBackoff.toNanos() << Math.min(attempts, 30));
+            long delay = ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+            attempts++;
+            nextAttemptAt = now + delay;
+        }
+    }
+}
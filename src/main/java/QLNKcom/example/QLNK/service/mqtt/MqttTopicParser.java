@@ -0,0 +1,48 @@
+package QLNKcom.example.QLNK.service.mqtt;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Parses Adafruit feed topics ({@code username/feeds/groupKey.feedKey/json}) with a single index scan,
+ * without regex or intermediate arrays.
+ */
+@Component
+public class MqttTopicParser {
+
+    private static final String FEEDS_SEGMENT = "feeds";
+
+    /**
+     * @return the parsed topic, or {@code null} when the topic does not have the expected format
+     */
+    public FeedTopic parse(String topic) {
+        int userEnd = topic.indexOf('/');
+        if (userEnd <= 0) {
+            return null;
+        }
+        int feedsEnd = topic.indexOf('/', userEnd + 1);
+        if (feedsEnd - userEnd - 1 != FEEDS_SEGMENT.length()
+                || !topic.regionMatches(userEnd + 1, FEEDS_SEGMENT, 0, FEEDS_SEGMENT.length())) {
+            return null;
+        }
+        int keyEnd = topic.indexOf('/', feedsEnd + 1);
+        if (keyEnd < 0 || keyEnd == topic.length() - 1) {
+            return null;
+        }
+
+        int groupEnd = topic.indexOf('.', feedsEnd + 1);
+        if (groupEnd <= feedsEnd + 1 || groupEnd >= keyEnd - 1) {
+            return null;
+        }
+        int feedEnd = topic.indexOf('.', groupEnd + 1);
+        if (feedEnd < 0 || feedEnd > keyEnd) {
+            feedEnd = keyEnd;
+        }
+
+        String groupKey = topic.substring(feedsEnd + 1, groupEnd);
+        String feedKey = topic.substring(groupEnd + 1, feedEnd);
+        String fullFeedKey = feedEnd == keyEnd
+                ? topic.substring(feedsEnd + 1, keyEnd)
+                : groupKey + "." + feedKey;
+        return new FeedTopic(topic.substring(0, userEnd), groupKey, feedKey, fullFeedKey);
+    }
+}
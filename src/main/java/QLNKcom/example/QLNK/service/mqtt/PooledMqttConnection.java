@@ -0,0 +1,292 @@
+package QLNKcom.example.QLNK.service.mqtt;
+
+import QLNKcom.example.QLNK.model.User;
+import io.micrometer.core.instrument.Counter;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.paho.client.mqttv3.IMqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.mqtt.core.Mqttv3ClientManager;
+import org.springframework.integration.mqtt.inbound.MqttPahoMessageDrivenChannelAdapter;
+import org.springframework.integration.mqtt.outbound.MqttPahoMessageHandler;
+import org.springframework.integration.mqtt.support.MqttHeaders;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A single broker connection shared by every user that logs in with the same broker account.
+ * Inbound subscriptions and outbound publishes go through the same Paho client.
+ * In wildcard mode the connection subscribes {@code username/feeds/+/json} once and routes each message
+ * to the users that asked for its topic, so adding or removing a feed does not touch the broker.
+ */
+@Slf4j
+public class PooledMqttConnection {
+
+    private static final long CONNECT_TIMEOUT_MS = 10_000;
+
+    @Getter
+    private final String key;
+    @Getter
+    private final String username;
+    @Getter
+    private final Mqttv3ClientManager clientManager;
+    @Getter
+    private final Set<String> holders = ConcurrentHashMap.newKeySet();
+
+    private final Counter received;
+    private final Counter published;
+    private final Counter unrouted;
+    private final MqttAdapterFactory mqttAdapterFactory;
+    private final String wildcardTopic;
+    private final MqttPahoMessageHandler outbound;
+    private final DirectChannel inboundChannel = new DirectChannel();
+    private final Map<String, UserSubscription> subscriptions = new ConcurrentHashMap<>();
+    private final Object holderLock = new Object();
+    private volatile MqttPahoMessageDrivenChannelAdapter inbound;
+    private boolean retired;
+    private long lastHeld = System.nanoTime();
+
+    PooledMqttConnection(String key, String username, Mqttv3ClientManager clientManager, MqttAdapterFactory mqttAdapterFactory,
+                         boolean wildcard, Counter received, Counter published, Counter unrouted) {
+        this.key = key;
+        this.username = username;
+        this.clientManager = clientManager;
+        this.mqttAdapterFactory = mqttAdapterFactory;
+        this.received = received;
+        this.published = published;
+        this.unrouted = unrouted;
+        this.wildcardTopic = wildcard ? username + "/feeds/+/json" : null;
+        this.clientManager.start();
+        this.outbound = mqttAdapterFactory.createMqttHandler(clientManager);
+        this.outbound.start();
+        this.inboundChannel.subscribe(this::dispatch);
+    }
+
+    public void publish(String topic, String value) {
+        Message<String> message = MessageBuilder.withPayload(value)
+                .setHeader(MqttHeaders.TOPIC, topic)
+                .build();
+        outbound.handleMessage(message);
+        published.increment();
+    }
+
+    /**
+     * @return false when the connection has already lost its last holder and is being closed
+     */
+    boolean hold(String holder) {
+        synchronized (holderLock) {
+            if (retired) {
+                return false;
+            }
+            holders.add(holder);
+            lastHeld = System.nanoTime();
+            return true;
+        }
+    }
+
+    /**
+     * @return whether this was the last holder; the connection is then retired and the caller must close it
+     */
+    boolean release(String holder) {
+        synchronized (holderLock) {
+            if (retired || !holders.remove(holder) || !holders.isEmpty()) {
+                return false;
+            }
+            retired = true;
+            return true;
+        }
+    }
+
+    /**
+     * Releases the holder only when nobody has held the connection for {@code idleNanos}.
+     *
+     * @return whether this was the last holder, see {@link #release(String)}
+     */
+    boolean releaseIfIdle(String holder, long idleNanos) {
+        synchronized (holderLock) {
+            if (!holders.contains(holder) || System.nanoTime() - lastHeld < idleNanos) {
+                return false;
+            }
+            return release(holder);
+        }
+    }
+
+    /**
+     * @param topics topics must have format username/feeds/feedKey/json
+     */
+    public synchronized void subscribe(User user, Collection<String> topics, MessageHandler handler) {
+        List<String> newTopics = topics.stream()
+                .map(this::brokerTopic)
+                .distinct()
+                .filter(topic -> !isSubscribed(topic))
+                .toList();
+
+        UserSubscription subscription = subscriptions.computeIfAbsent(user.getId(), id -> new UserSubscription(handler));
+        subscription.handler = handler;
+        subscription.topics.addAll(topics);
+
+        if (newTopics.isEmpty()) {
+            return;
+        }
+        if (inbound == null) {
+            inbound = mqttAdapterFactory.createMqttAdapter(clientManager, newTopics, inboundChannel);
+            inbound.start();
+        } else {
+            inbound.addTopic(newTopics.toArray(new String[0]));
+        }
+        log.info("➕ Connection {} now subscribed to {}", key, newTopics);
+    }
+
+    /**
+     * @return whether the user still has topics on this connection
+     */
+    public synchronized boolean unsubscribe(String userId, String topic) {
+        UserSubscription subscription = subscriptions.get(userId);
+        if (subscription == null || !subscription.topics.remove(topic)) {
+            log.info("❌ Topic {} is not subscribed by user {} on connection {}", topic, userId, key);
+            return subscription != null && !subscription.topics.isEmpty();
+        }
+
+        String brokerTopic = brokerTopic(topic);
+        if (!isSubscribed(brokerTopic) && inbound != null) {
+            inbound.removeTopic(brokerTopic);
+            log.info("➖ Connection {} removed topic {}", key, brokerTopic);
+        }
+        if (subscription.topics.isEmpty()) {
+            subscriptions.remove(userId);
+            return false;
+        }
+        return true;
+    }
+
+    public synchronized void unsubscribeAll(String userId) {
+        UserSubscription subscription = subscriptions.remove(userId);
+        if (subscription == null || inbound == null) {
+            return;
+        }
+        String[] orphanTopics = subscription.topics.stream()
+                .map(this::brokerTopic)
+                .distinct()
+                .filter(topic -> !isSubscribed(topic))
+                .toArray(String[]::new);
+        if (orphanTopics.length > 0) {
+            inbound.removeTopic(orphanTopics);
+        }
+    }
+
+    public boolean hasSubscription(String userId) {
+        return subscriptions.containsKey(userId);
+    }
+
+    public Set<String> topicsOf(String userId) {
+        UserSubscription subscription = subscriptions.get(userId);
+        return subscription == null ? Set.of() : Collections.unmodifiableSet(subscription.topics);
+    }
+
+    public boolean isConnected() {
+        return clientManager.isConnected();
+    }
+
+    /**
+     * Connects the Paho client again and, once it is connected, subscribes every topic again.
+     * The inbound adapter is rebuilt rather than left to resubscribe from the connect callback,
+     * which would block Paho's callback thread waiting for its own SUBACK.
+     */
+    synchronized void reconnect() {
+        if (inbound != null) {
+            inbound.stop();
+            inbound.destroy();
+            inbound = null;
+        }
+        IMqttAsyncClient client = clientManager.getClient();
+        if (client == null) {
+            clientManager.start();
+        } else {
+            // stopping the manager would first wait 30s for Paho to quiesce the dead connection
+            try {
+                client.connect(clientManager.getConnectionInfo()).waitForCompletion(CONNECT_TIMEOUT_MS);
+            } catch (MqttException e) {
+                log.warn("⚠️ Reconnect of {} failed: {}", key, e.getMessage());
+            }
+        }
+
+        List<String> topics = subscriptions.values().stream()
+                .flatMap(subscription -> subscription.topics.stream())
+                .map(this::brokerTopic)
+                .distinct()
+                .toList();
+        if (clientManager.isConnected() && !topics.isEmpty()) {
+            inbound = mqttAdapterFactory.createMqttAdapter(clientManager, topics, inboundChannel);
+            inbound.start();
+            log.info("🔁 Connection {} resubscribed to {} topics", key, topics.size());
+        }
+    }
+
+    public boolean hasInbound() {
+        return inbound != null;
+    }
+
+    public int subscriptionCount() {
+        return subscriptions.size();
+    }
+
+    public int topicCount() {
+        return inbound == null ? 0 : inbound.getTopic().length;
+    }
+
+    synchronized void close() {
+        if (inbound != null) {
+            inbound.stop();
+            inbound.destroy();
+            inbound = null;
+        }
+        outbound.stop();
+        clientManager.stop();
+        subscriptions.clear();
+        holders.clear();
+    }
+
+    private String brokerTopic(String topic) {
+        return wildcardTopic != null ? wildcardTopic : topic;
+    }
+
+    /**
+     * @param brokerTopic a topic as subscribed on the broker, i.e. the wildcard topic in wildcard mode
+     */
+    private boolean isSubscribed(String brokerTopic) {
+        if (wildcardTopic != null) {
+            return subscriptions.values().stream().anyMatch(subscription -> !subscription.topics.isEmpty());
+        }
+        return subscriptions.values().stream().anyMatch(subscription -> subscription.topics.contains(brokerTopic));
+    }
+
+    private void dispatch(Message<?> message) {
+        received.increment();
+        String topic = (String) message.getHeaders().get(MqttHeaders.RECEIVED_TOPIC);
+        boolean routed = false;
+        for (UserSubscription subscription : subscriptions.values()) {
+            if (subscription.topics.contains(topic)) {
+                subscription.handler.handleMessage(message);
+                routed = true;
+            }
+        }
+        if (!routed) {
+            // in wildcard mode the broker also delivers feeds no user of this node has asked for
+            unrouted.increment();
+        }
+    }
+
+    private static class UserSubscription {
+        private volatile MessageHandler handler;
+        private final Set<String> topics = ConcurrentHashMap.newKeySet();
+
+        private UserSubscription(MessageHandler handler) {
+            this.handler = handler;
+        }
+    }
+}
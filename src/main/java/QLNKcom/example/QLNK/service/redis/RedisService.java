@@ -11,6 +11,8 @@ import java.util.concurrent.TimeUnit;
 
 @Service
 public class RedisService {
+    public static final Duration RESET_PASSWORD_TOKEN_TTL = Duration.ofMinutes(5);
+
     private final ReactiveRedisTemplate<String, String> redisTemplate;
 
     public RedisService(@Qualifier("reactiveRedisTemplate") ReactiveRedisTemplate<String, String> redisTemplate) {
@@ -45,7 +47,7 @@ public class RedisService {
 
     public Mono<Void> saveResetPasswordToken(String resetKey, String email) {
         return redisTemplate.opsForValue()
-                .set(resetKey, email, Duration.ofMinutes(5))
+                .set(resetKey, email, RESET_PASSWORD_TOKEN_TTL)
                 .doOnSuccess(success -> System.out.println("✅ [REDIS] Save reset password token success for " + email))
                 .then();
     }
@@ -0,0 +1,123 @@
+package QLNKcom.example.QLNK.service.rule;
+
+import QLNKcom.example.QLNK.enums.FeedState;
+import QLNKcom.example.QLNK.model.data.FeedRule;
+
+import java.util.List;
+
+/**
+ * The rules of one input feed, compiled into primitive threshold arrays so a reading is checked against all of them
+ * with comparisons only: no boxing, no iterator and no allocation unless a rule fires or changes state.
+ * <p>
+ * Each side of a rule has a hysteresis band: it becomes VIOLATING when the value crosses the threshold
+ * (above the ceiling, below the floor) but only returns to NORMAL once the value is back past
+ * {@code ceiling - hysteresis} or {@code floor + hysteresis}, so a reading hovering around the threshold
+ * does not switch the actuator on and off. Inside the band the state is held. A band is narrowed to half the gap
+ * between floor and ceiling, so {@code ceiling - hysteresis} stays above the floor and {@code floor + hysteresis}
+ * below the ceiling: otherwise a side could only clear once the value had crossed the opposite threshold.
+ * <p>
+ * Instances are immutable apart from the states kept on the {@link FeedRule}s; {@link FeedRuleIndex} compiles a new
+ * set whenever a rule of the feed changes.
+ */
+public final class CompiledRuleSet {
+
+    public static final CompiledRuleSet EMPTY = new CompiledRuleSet(List.of(), 0);
+
+    // evaluate() outcome flags
+    public static final int ABOVE = 1;              // value is above the ceiling
+    public static final int BELOW = 1 << 1;         // value is below the floor
+    public static final int ABOVE_ENTERED = 1 << 2; // above side moved from NORMAL to VIOLATING
+    public static final int ABOVE_CLEARED = 1 << 3; // above side moved back to NORMAL, past the band
+    public static final int BELOW_ENTERED = 1 << 4;
+    public static final int BELOW_CLEARED = 1 << 5;
+    public static final int CHANGED = ABOVE_ENTERED | ABOVE_CLEARED | BELOW_ENTERED | BELOW_CLEARED;
+
+    private final List<FeedRule> ruleList;
+    private final FeedRule[] rules;
+    private final double[] ceilings;        // +Infinity when the rule has no ceiling
+    private final double[] floors;          // -Infinity when the rule has no floor
+    private final double[] ceilingResets;
+    private final double[] floorResets;
+
+    private CompiledRuleSet(List<FeedRule> ruleList, double defaultHysteresis) {
+        int n = ruleList.size();
+        this.ruleList = List.copyOf(ruleList);
+        this.rules = this.ruleList.toArray(new FeedRule[0]);
+        this.ceilings = new double[n];
+        this.floors = new double[n];
+        this.ceilingResets = new double[n];
+        this.floorResets = new double[n];
+        for (int i = 0; i < n; i++) {
+            FeedRule rule = rules[i];
+            ceilings[i] = rule.getCeiling() != null ? rule.getCeiling() : Double.POSITIVE_INFINITY;
+            floors[i] = rule.getFloor() != null ? rule.getFloor() : Double.NEGATIVE_INFINITY;
+            double band = Math.max(0, rule.getHysteresis() != null ? rule.getHysteresis() : defaultHysteresis);
+            band = Math.max(0, Math.min(band, (ceilings[i] - floors[i]) / 2));
+            ceilingResets[i] = ceilings[i] - band;
+            floorResets[i] = floors[i] + band;
+        }
+    }
+
+    /**
+     * @param defaultHysteresis band used by rules that do not set their own
+     */
+    public static CompiledRuleSet compile(List<FeedRule> rules, double defaultHysteresis) {
+        return rules.isEmpty() ? EMPTY : new CompiledRuleSet(rules, defaultHysteresis);
+    }
+
+    public int size() {
+        return rules.length;
+    }
+
+    public FeedRule rule(int i) {
+        return rules[i];
+    }
+
+    public List<FeedRule> rules() {
+        return ruleList;
+    }
+
+    public double ceiling(int i) {
+        return ceilings[i];
+    }
+
+    public double floor(int i) {
+        return floors[i];
+    }
+
+    /**
+     * Checks {@code value} against rule {@code i} and moves the rule's states across the thresholds and bands.
+     * Callers processing readings of the same feed concurrently must serialise calls, as the ingest lanes do.
+     *
+     * @return a combination of the outcome flags, 0 when the value is within bounds and no state changed
+     */
+    public int evaluate(int i, double value) {
+        FeedRule rule = rules[i];
+        int outcome = 0;
+
+        boolean aboveViolating = rule.getAboveState() == FeedState.VIOLATING;
+        if (value > ceilings[i]) {
+            outcome |= ABOVE;
+            if (!aboveViolating) {
+                rule.setAboveState(FeedState.VIOLATING);
+                outcome |= ABOVE_ENTERED;
+            }
+        } else if (aboveViolating && value <= ceilingResets[i]) {
+            rule.setAboveState(FeedState.NORMAL);
+            outcome |= ABOVE_CLEARED;
+        }
+
+        boolean belowViolating = rule.getBelowState() == FeedState.VIOLATING;
+        if (value < floors[i]) {
+            outcome |= BELOW;
+            if (!belowViolating) {
+                rule.setBelowState(FeedState.VIOLATING);
+                outcome |= BELOW_ENTERED;
+            }
+        } else if (belowViolating && value >= floorResets[i]) {
+            rule.setBelowState(FeedState.NORMAL);
+            outcome |= BELOW_CLEARED;
+        }
+        return outcome;
+    }
+}
@@ -0,0 +1,225 @@
+package QLNKcom.example.QLNK.service.rule;
+
+import QLNKcom.example.QLNK.model.data.FeedRule;
+import QLNKcom.example.QLNK.repository.FeedRuleRepository;
+import com.mongodb.client.model.changestream.FullDocument;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonValue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Node-local copy of every {@link FeedRule}, indexed by owner email and input feed and compiled into a
+ * {@link CompiledRuleSet} per feed, so the ingest path can evaluate the rules of a reading without a database round trip.
+ * The index is loaded at startup, updated by {@code UserService} on every rule change and,
+ * when {@code rules.index.change-stream.enabled} is set, by a Mongo change stream for changes made by other nodes.
+ * Cluster mode requires the change stream. When the stream fails it is reopened with backoff; the index is then
+ * reloaded and the stream replays the changes made since just before the reload, so nothing from the gap is lost.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class FeedRuleIndex {
+
+    private static final String COLLECTION = "feedRule";
+    // the stream starts at Mongo's cluster time, which may lag this node's clock; replaying a few changes is harmless
+    private static final Duration CLOCK_SKEW = Duration.ofSeconds(5);
+
+    private final FeedRuleRepository feedRuleRepository;
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${rules.index.change-stream.enabled:false}")
+    private boolean changeStreamEnabled;
+
+    @Value("${cluster.enabled:false}")
+    private boolean clusterEnabled;
+
+    @Value("${rules.hysteresis.default:0}")
+    private double defaultHysteresis;
+
+    private final Map<String, Map<String, CompiledRuleSet>> rulesByEmail = new ConcurrentHashMap<>();
+    private final Map<String, FeedRule> rulesById = new ConcurrentHashMap<>();
+    private Disposable changeStream;
+
+    @Order(0)
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (clusterEnabled && !changeStreamEnabled) {
+            throw new IllegalStateException("cluster.enabled requires rules.index.change-stream.enabled, "
+                    + "otherwise rule edits made on one node never reach the others");
+        }
+        Gauge.builder("qlnk.rules.indexed", rulesById, Map::size).register(meterRegistry);
+        Instant loadedAt = Instant.now();
+        reload()
+                .doOnSuccess(count -> log.info("📚 Loaded {} feed rules into the rule index", count))
+                .doOnError(e -> log.error("❌ Failed to load feed rules into the rule index: {}", e.getMessage()))
+                .block();
+
+        if (changeStreamEnabled) {
+            changeStream = watch(loadedAt)
+                    .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30))
+                            .doBeforeRetry(signal -> log.warn("⚠️ Feed rule change stream failed, reopening: {}", signal.failure().getMessage())))
+                    // an invalidate event, e.g. the collection was dropped, ends the stream without an error
+                    .repeatWhen(completions -> completions.delayElements(Duration.ofSeconds(1)))
+                    .subscribe();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (changeStream != null) {
+            changeStream.dispose();
+        }
+    }
+
+    /**
+     * @return the compiled rules whose input is {@code inputFeed}, or {@link CompiledRuleSet#EMPTY}; never queries the database
+     */
+    public CompiledRuleSet find(String email, String inputFeed) {
+        Map<String, CompiledRuleSet> rulesByFeed = rulesByEmail.get(email);
+        if (rulesByFeed == null) {
+            return CompiledRuleSet.EMPTY;
+        }
+        CompiledRuleSet rules = rulesByFeed.get(inputFeed);
+        return rules == null ? CompiledRuleSet.EMPTY : rules;
+    }
+
+    public synchronized void put(FeedRule rule) {
+        if (rule.getId() == null || rule.getEmail() == null || rule.getInputFeed() == null) {
+            return;
+        }
+        remove(rule.getId());
+        rulesById.put(rule.getId(), rule);
+        rulesByEmail.computeIfAbsent(rule.getEmail(), email -> new ConcurrentHashMap<>())
+                .merge(rule.getInputFeed(), CompiledRuleSet.compile(List.of(rule), defaultHysteresis), (current, added) -> {
+                    List<FeedRule> rules = new ArrayList<>(current.rules());
+                    rules.add(rule);
+                    return CompiledRuleSet.compile(rules, defaultHysteresis);
+                });
+    }
+
+    public synchronized void remove(String ruleId) {
+        FeedRule rule = rulesById.remove(ruleId);
+        if (rule == null) {
+            return;
+        }
+        Map<String, CompiledRuleSet> rulesByFeed = rulesByEmail.get(rule.getEmail());
+        if (rulesByFeed == null) {
+            return;
+        }
+        rulesByFeed.computeIfPresent(rule.getInputFeed(), (feed, current) -> {
+            List<FeedRule> rules = current.rules().stream()
+                    .filter(r -> !ruleId.equals(r.getId()))
+                    .toList();
+            return rules.isEmpty() ? null : CompiledRuleSet.compile(rules, defaultHysteresis);
+        });
+        if (rulesByFeed.isEmpty()) {
+            rulesByEmail.remove(rule.getEmail());
+        }
+    }
+
+    /**
+     * Reloads every rule of {@code email}; used after bulk changes such as renaming a feed or changing the email.
+     */
+    public Mono<Void> refresh(String email) {
+        return feedRuleRepository.findByEmail(email)
+                .collectList()
+                .doOnNext(rules -> replace(email, rules))
+                .then();
+    }
+
+    private synchronized void replace(String email, List<FeedRule> rules) {
+        Map<String, CompiledRuleSet> rulesByFeed = rulesByEmail.get(email);
+        if (rulesByFeed != null) {
+            rulesByFeed.values().stream()
+                    .flatMap(compiled -> compiled.rules().stream())
+                    .map(FeedRule::getId)
+                    .toList()
+                    .forEach(this::remove);
+        }
+        rules.forEach(this::put);
+    }
+
+    /**
+     * The first subscription streams the changes made since the initial load. Every later one, after the stream ended,
+     * reloads the index and streams the changes made since just before the reload.
+     */
+    private Flux<ChangeStreamEvent<FeedRule>> watch(Instant loadedAt) {
+        AtomicBoolean resumed = new AtomicBoolean();
+        return Flux.defer(() -> {
+            if (!resumed.getAndSet(true)) {
+                return changesSince(loadedAt);
+            }
+            Instant reloadedAt = Instant.now();
+            return reload()
+                    .doOnSuccess(count -> log.info("📚 Reloaded {} feed rules after a change stream gap", count))
+                    .thenMany(changesSince(reloadedAt));
+        });
+    }
+
+    private Flux<ChangeStreamEvent<FeedRule>> changesSince(Instant from) {
+        return reactiveMongoTemplate.changeStream(FeedRule.class)
+                .withOptions(options -> options.fullDocumentLookup(FullDocument.UPDATE_LOOKUP).resumeAt(from.minus(CLOCK_SKEW)))
+                .watchCollection(COLLECTION)
+                .listen()
+                .doOnNext(this::apply);
+    }
+
+    private Mono<Long> reload() {
+        return feedRuleRepository.findAll()
+                .collectList()
+                .doOnNext(this::replaceAll)
+                .map(rules -> (long) rules.size());
+    }
+
+    private synchronized void replaceAll(List<FeedRule> rules) {
+        Set<String> ids = rules.stream().map(FeedRule::getId).collect(Collectors.toSet());
+        List.copyOf(rulesById.keySet()).stream()
+                .filter(id -> !ids.contains(id))
+                .forEach(this::remove);
+        rules.forEach(this::put);
+    }
+
+    private void apply(ChangeStreamEvent<FeedRule> event) {
+        switch (event.getOperationType()) {
+            case INSERT, UPDATE, REPLACE -> {
+                if (event.getBody() != null) {
+                    put(event.getBody());
+                }
+            }
+            case DELETE -> {
+                BsonValue id = event.getRaw() != null && event.getRaw().getDocumentKey() != null
+                        ? event.getRaw().getDocumentKey().get("_id")
+                        : null;
+                if (id != null) {
+                    remove(id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.asString().getValue());
+                }
+            }
+            default -> log.debug("Ignoring feed rule change {}", event.getOperationType());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package QLNKcom.example.QLNK.service.rule;
+
+import QLNKcom.example.QLNK.enums.FeedState;
+import QLNKcom.example.QLNK.model.data.FeedRule;
+import QLNKcom.example.QLNK.repository.FeedRuleRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists the NORMAL/VIOLATING state of a {@link FeedRule}. The state lives on the indexed rule instance
+ * and is written with a single {@code $set} only when an evaluation flipped it.
+ */
+@Component
+@Slf4j
+public class FeedRuleStateWriter {
+
+    private final FeedRuleRepository feedRuleRepository;
+    private final Counter persisted;
+    private final Counter unchanged;
+    private final Counter failed;
+    private final Timer writeTimer;
+
+    public FeedRuleStateWriter(FeedRuleRepository feedRuleRepository, MeterRegistry meterRegistry) {
+        this.feedRuleRepository = feedRuleRepository;
+        this.persisted = Counter.builder("qlnk.rules.state.transitions")
+                .description("Rule state transitions written to Mongo")
+                .tag("result", "persisted")
+                .register(meterRegistry);
+        this.unchanged = Counter.builder("qlnk.rules.state.transitions")
+                .description("Rule evaluations that left the state unchanged and skipped the write")
+                .tag("result", "unchanged")
+                .register(meterRegistry);
+        this.failed = Counter.builder("qlnk.rules.state.transitions")
+                .description("Rule state transitions that could not be written")
+                .tag("result", "failed")
+                .register(meterRegistry);
+        this.writeTimer = Timer.builder("qlnk.rules.state.write")
+                .description("Latency of the Mongo update writing a rule state transition")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Counts evaluations that did not flip a state; they never reach {@link #persistIfChanged}.
+     */
+    public void recordUnchanged(int evaluations) {
+        unchanged.increment(evaluations);
+    }
+
+    public Mono<Void> persistIfChanged(FeedRule rule, FeedState previousAbove, FeedState previousBelow) {
+        if (Objects.equals(previousAbove, rule.getAboveState()) && Objects.equals(previousBelow, rule.getBelowState())) {
+            unchanged.increment();
+            return Mono.empty();
+        }
+
+        return Mono.defer(() -> {
+                    long start = System.nanoTime();
+                    return feedRuleRepository.updateStates(rule.getId(), rule.getAboveState(), rule.getBelowState())
+                            .doFinally(signal -> writeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+                })
+                .doOnSuccess(count -> {
+                    persisted.increment();
+                    log.info("🔁 Rule {} on {} moved to above={} below={}",
+                            rule.getId(), rule.getInputFeed(), rule.getAboveState(), rule.getBelowState());
+                })
+                .doOnError(e -> {
+                    failed.increment();
+                    log.error("❌ Failed to persist state of rule {}: {}", rule.getId(), e.getMessage());
+                })
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+}
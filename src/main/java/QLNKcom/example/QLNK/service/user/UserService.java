@@ -22,6 +22,7 @@ import QLNKcom.example.QLNK.repository.FeedRuleRepository;
 import QLNKcom.example.QLNK.service.adafruit.AdafruitService;
 import QLNKcom.example.QLNK.service.mqtt.MqttService;
 import QLNKcom.example.QLNK.service.mqtt.MqttSubscriptionManager;
+import QLNKcom.example.QLNK.service.rule.FeedRuleIndex;
 import QLNKcom.example.QLNK.service.scheduler.ScheduleService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -43,6 +44,7 @@ public class UserService {
     private final MqttService mqttService;
     private final MqttSubscriptionManager mqttSubscriptionManager;
     private final FeedRuleRepository feedRuleRepository;
+    private final FeedRuleIndex feedRuleIndex;
     private final ScheduleService scheduleService;
 
     private Mono<Boolean> isGroupExists(User user, String groupName) {
@@ -120,6 +122,7 @@ public class UserService {
                                     .inputFeed(request.getInputFeed())
                                     .floor(request.getFloor())
                                     .ceiling(request.getCeiling())
+                                    .hysteresis(request.getHysteresis())
                                     .aboveValue(request.getAboveValue())
                                     .belowValue(request.getBelowValue())
                                     .outputFeedAbove(request.getOutputFeedAbove())
@@ -127,7 +130,8 @@ public class UserService {
                                     .aboveState(FeedState.NORMAL)
                                     .belowState(FeedState.NORMAL)
                                     .build();
-                            return feedRuleRepository.save(newFeedRule);
+                            return feedRuleRepository.save(newFeedRule)
+                                    .doOnNext(feedRuleIndex::put);
                         }));
     }
 
@@ -172,6 +176,7 @@ public class UserService {
                             .then(feedRuleRepository.deleteByEmailAndInputFeedOrOutputFeedAboveOrOutputFeedBelow(
                                             email, fullFeedKey, fullFeedKey, fullFeedKey)
                                     .onErrorResume(e -> Mono.error(new RuntimeException("Failed to delete feed rules: " + e.getMessage()))))
+                            .then(feedRuleIndex.refresh(email))
                             .then(scheduleService.deleteSchedulesByUserIdAndFullFeedKey(user.getId(), fullFeedKey)
                             .onErrorResume(e -> Mono.error(new RuntimeException("Failed to delete schedules: " + e.getMessage()))));
                 });
@@ -278,8 +283,11 @@ public class UserService {
 
                     return userProvider.saveUser(user).flatMap(
                             updatedUser -> {
+                                mqttService.evictCachedUser(updatedUser.getId());
                                 if (!oldEmail.equals(request.getEmail())) {
                                     return userProvider.updateFeedRulesEmail(oldEmail, request.getEmail())
+                                            .then(feedRuleIndex.refresh(oldEmail))
+                                            .then(feedRuleIndex.refresh(request.getEmail()))
                                             .thenReturn(updatedUser);
                                 }
                                 return Mono.just(updatedUser);
@@ -288,13 +296,14 @@ public class UserService {
                 });
     }
 
-    public Mono<FeedRule> updateFeedRule(String email, String fullFeedKey, UpdateFeedRuleRequest request) {
-        return userProvider.findByEmailAndFullFeedKey(email, fullFeedKey)
+    public Mono<FeedRule> updateFeedRule(String email, String fullFeedKey, String ruleId, UpdateFeedRuleRequest request) {
+        return userProvider.findByEmailAndFullFeedKey(email, fullFeedKey, ruleId)
                 .switchIfEmpty(Mono.error(new RuntimeException("Feed rule not found")))
                 .flatMap(feedRule -> {
                     feedRule.setInputFeed(request.getInputFeed());
                     feedRule.setCeiling(request.getCeiling());
                     feedRule.setFloor(request.getFloor());
+                    feedRule.setHysteresis(request.getHysteresis());
                     feedRule.setOutputFeedAbove(request.getOutputFeedAbove());
                     feedRule.setOutputFeedBelow(request.getOutputFeedBelow());
                     feedRule.setAboveValue(request.getAboveValue());
@@ -317,7 +326,8 @@ public class UserService {
                                                     feedRule.getOutputFeedBelow(),
                                             HttpStatus.BAD_REQUEST));
                                 }
-                                return feedRuleRepository.save(feedRule);
+                                return feedRuleRepository.save(feedRule)
+                                        .doOnNext(feedRuleIndex::put);
                             });
                 });
     }
@@ -343,14 +353,16 @@ public class UserService {
                         rule.setOutputFeedBelow(newFullFeedKey);
                         updated = true;
                     }
-                    return updated ? feedRuleRepository.save(rule).then(Mono.empty()) : Mono.empty();
+                    return updated ? feedRuleRepository.save(rule).doOnNext(feedRuleIndex::put).then(Mono.empty()) : Mono.empty();
                 })
                 .then();
     }
 
     public Mono<Long> deleteFeedRule(String email, String fullFeedKey) {
         return feedRuleRepository.findByEmailAndFeedKey(email, fullFeedKey)
-                .flatMap(rule -> feedRuleRepository.delete(rule).thenReturn(1L))
+                .flatMap(rule -> feedRuleRepository.delete(rule)
+                        .then(Mono.fromRunnable(() -> feedRuleIndex.remove(rule.getId())))
+                        .thenReturn(1L))
                 .count()
                 .doOnSuccess(count -> log.info("Deleted {} feed rules for email {} and feed {}", count, email, fullFeedKey))
                 .doOnError(e -> log.error("Error deleting feed rules for email {} and feed {}: {}", email, fullFeedKey, e.getMessage()));
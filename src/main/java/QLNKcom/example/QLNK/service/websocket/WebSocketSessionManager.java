@@ -1,5 +1,9 @@
 package QLNKcom.example.QLNK.service.websocket;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
@@ -7,11 +11,39 @@ import reactor.core.publisher.Sinks;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 @Component
 @Slf4j
 public class WebSocketSessionManager {
     private final Map<String, Sinks.Many<String>> userSinks = new ConcurrentHashMap<>();
+    private final Timer sendTimer;
+    private final Counter sentCounter;
+    private final Counter noSubscriberCounter;
+    private final Counter failedCounter;
+
+    public WebSocketSessionManager(MeterRegistry meterRegistry) {
+        this.sendTimer = Timer.builder("qlnk.websocket.send")
+                .description("Time to emit one message to a user's WebSocket sink")
+                .register(meterRegistry);
+        this.sentCounter = messageCounter(meterRegistry, "sent");
+        this.noSubscriberCounter = messageCounter(meterRegistry, "no_subscriber");
+        this.failedCounter = messageCounter(meterRegistry, "failed");
+        Gauge.builder("qlnk.websocket.sinks", userSinks, Map::size)
+                .description("Users with a WebSocket sink")
+                .register(meterRegistry);
+        Gauge.builder("qlnk.websocket.subscribers", userSinks,
+                        sinks -> sinks.values().stream().mapToInt(Sinks.Many::currentSubscriberCount).sum())
+                .description("Open WebSocket sessions subscribed to a sink")
+                .register(meterRegistry);
+    }
+
+    private static Counter messageCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("qlnk.websocket.messages")
+                .description("Readings pushed to WebSocket sessions, or skipped because nobody was listening")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
 
     public void registerSession(String userId) {
         userSinks.putIfAbsent(userId, Sinks.many().multicast().onBackpressureBuffer());
@@ -25,23 +57,23 @@ public class WebSocketSessionManager {
     }
 
     public void sendToUser(String userId, String message) {
-        if (userSinks.containsKey(userId)) {
-            Sinks.Many<String> sink = userSinks.get(userId);
-
-            long subscribers = sink.currentSubscriberCount();
-            if (subscribers == 0) {
-                log.warn("⚠️ No active WebSocket subscribers for user {}", userId);
-                return;
-            }
+        long start = System.nanoTime();
+        Sinks.Many<String> sink = userSinks.get(userId);
+        if (sink == null || sink.currentSubscriberCount() == 0) {
+            noSubscriberCounter.increment();
+            log.debug("No active WebSocket subscribers for user {}", userId);
+            return;
+        }
 
-            log.info("📤 Sending WebSocket message to user {}: {}", userId, message);
-            Sinks.EmitResult result = sink.tryEmitNext(message);
+        log.debug("📤 Sending WebSocket message to user {}: {}", userId, message);
+        Sinks.EmitResult result = sink.tryEmitNext(message);
+        sendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
 
-            if (result.isFailure()) {
-                log.error("❌ Failed to send WebSocket message to user {}: {}", userId, result);
-            }
+        if (result.isFailure()) {
+            failedCounter.increment();
+            log.error("❌ Failed to send WebSocket message to user {}: {}", userId, result);
         } else {
-            log.warn("❌ No sink found for user {}", userId);
+            sentCounter.increment();
         }
     }
 
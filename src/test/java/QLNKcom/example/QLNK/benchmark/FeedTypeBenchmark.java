@@ -0,0 +1,38 @@
+package QLNKcom.example.QLNK.benchmark;
+
+import QLNKcom.example.QLNK.enums.DeviceType;
+import QLNKcom.example.QLNK.enums.SensorType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feed classification by full feed key, as done for every reading and for every feed listed by the API,
+ * compared with the split + stream lookup it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeedTypeBenchmark {
+
+    @Param({"cay-1.temp", "cay-1.pump", "cay-1.unknown"})
+    private String fullFeedKey;
+
+    @Benchmark
+    public void classify(Blackhole blackhole) {
+        blackhole.consume(DeviceType.isDevice(fullFeedKey));
+        blackhole.consume(SensorType.isSensor(fullFeedKey));
+    }
+
+    @Benchmark
+    public void legacyStreams(Blackhole blackhole) {
+        String type = fullFeedKey.split("\\.")[1];
+        blackhole.consume(Arrays.stream(DeviceType.values()).anyMatch(device -> device.getType().equals(type)));
+        blackhole.consume(Arrays.stream(SensorType.values()).anyMatch(sensor -> sensor.getType().equals(type)));
+    }
+}
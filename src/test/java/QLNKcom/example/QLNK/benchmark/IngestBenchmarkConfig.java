@@ -0,0 +1,103 @@
+package QLNKcom.example.QLNK.benchmark;
+
+import QLNKcom.example.QLNK.provider.user.UserProvider;
+import QLNKcom.example.QLNK.repository.FeedRuleRepository;
+import QLNKcom.example.QLNK.service.alert.AlertAggregator;
+import QLNKcom.example.QLNK.service.cluster.ClusterMembership;
+import QLNKcom.example.QLNK.service.cluster.SubscriptionChangeBus;
+import QLNKcom.example.QLNK.service.cluster.SubscriptionOwnership;
+import QLNKcom.example.QLNK.service.data.DataBatchWriter;
+import QLNKcom.example.QLNK.service.data.LatestValueStore;
+import QLNKcom.example.QLNK.service.data.RecentReadingStore;
+import QLNKcom.example.QLNK.service.data.SensorRollupService;
+import QLNKcom.example.QLNK.service.email.EmailService;
+import QLNKcom.example.QLNK.service.mqtt.*;
+import QLNKcom.example.QLNK.service.rule.FeedRuleIndex;
+import QLNKcom.example.QLNK.service.rule.FeedRuleStateWriter;
+import QLNKcom.example.QLNK.service.websocket.WebSocketSessionManager;
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * The real ingest beans, from subscription to WebSocket push, with in-process stand-ins for Mongo, Redis and the email outbox.
+ * Mongo bulk inserts, rollup upserts and rule state updates complete after {@code bench.mongo-latency}; nothing is stored.
+ */
+@TestConfiguration
+@Import({
+        ClusterMembership.class, SubscriptionOwnership.class, SubscriptionChangeBus.class,
+        MqttClientFactory.class, MqttAdapterFactory.class, MqttConnectionPool.class,
+        MqttIngestPipeline.class, MqttMessageHandler.class, MqttSubscriptionManager.class, MqttCommandService.class,
+        MqttTopicParser.class, MqttPayloadDecoder.class, DuplicateDeliveryFilter.class,
+        DataBatchWriter.class, SensorRollupService.class, LatestValueStore.class,
+        RecentReadingStore.class, FeedRuleIndex.class, FeedRuleStateWriter.class,
+        WebSocketSessionManager.class, AlertAggregator.class
+})
+public class IngestBenchmarkConfig {
+
+    @Value("${bench.mongo-latency:2ms}")
+    private Duration mongoLatency;
+
+    @Bean
+    public MeterRegistry meterRegistry() {
+        return new SimpleMeterRegistry();
+    }
+
+    @Bean
+    @SuppressWarnings("unchecked")
+    public ReactiveMongoTemplate reactiveMongoTemplate() {
+        ReactiveMongoTemplate template = Mockito.mock(ReactiveMongoTemplate.class);
+        ReactiveBulkOperations bulk = Mockito.mock(ReactiveBulkOperations.class);
+        BulkWriteResult result = Mockito.mock(BulkWriteResult.class);
+        when(template.bulkOps(any(), any(Class.class))).thenReturn(bulk);
+        when(template.bulkOps(any(), anyString())).thenReturn(bulk);
+        when(bulk.insert(anyList())).thenReturn(bulk);
+        when(bulk.upsert(any(Query.class), any(UpdateDefinition.class))).thenReturn(bulk);
+        when(bulk.execute()).thenAnswer(invocation -> Mono.delay(mongoLatency).thenReturn(result));
+        return template;
+    }
+
+    @Bean
+    public FeedRuleRepository feedRuleRepository() {
+        FeedRuleRepository repository = Mockito.mock(FeedRuleRepository.class);
+        when(repository.updateStates(anyString(), any(), any()))
+                .thenAnswer(invocation -> Mono.delay(mongoLatency).thenReturn(1L));
+        return repository;
+    }
+
+    @Bean
+    @SuppressWarnings("unchecked")
+    public ReactiveRedisTemplate<String, String> reactiveRedisTemplate() {
+        // cluster mode and Redis dedup stay off, and alert states and latest values are not loaded or flushed
+        // without ApplicationReadyEvent, so nothing is called on it
+        return Mockito.mock(ReactiveRedisTemplate.class);
+    }
+
+    @Bean
+    public UserProvider userProvider() {
+        return Mockito.mock(UserProvider.class);
+    }
+
+    @Bean
+    public EmailService emailService() {
+        EmailService emailService = Mockito.mock(EmailService.class);
+        when(emailService.sendEmail(anyString(), anyString(), anyString())).thenReturn(Mono.empty());
+        return emailService;
+    }
+}
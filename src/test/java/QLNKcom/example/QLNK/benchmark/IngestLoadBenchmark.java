@@ -0,0 +1,309 @@
+package QLNKcom.example.QLNK.benchmark;
+
+import QLNKcom.example.QLNK.model.User;
+import QLNKcom.example.QLNK.model.adafruit.Feed;
+import QLNKcom.example.QLNK.model.adafruit.Group;
+import QLNKcom.example.QLNK.model.data.FeedRule;
+import QLNKcom.example.QLNK.service.mqtt.MqttSubscriptionManager;
+import QLNKcom.example.QLNK.service.rule.FeedRuleIndex;
+import QLNKcom.example.QLNK.service.websocket.WebSocketSessionManager;
+import ch.qos.logback.classic.Level;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.moquette.broker.Server;
+import io.moquette.broker.config.MemoryConfig;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import reactor.core.Disposable;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end ingest benchmark: an embedded Moquette broker, N simulated users x M feeds published at a fixed rate,
+ * received through the real {@link MqttSubscriptionManager}, ingest pipeline and MqttMessageHandler, and timed
+ * until each reading is pushed to the user's WebSocket sink. Mongo, Redis and SMTP are stand-ins, see {@link IngestBenchmarkConfig}.
+ * <p>
+ * {@code mvn -Pingest-bench -DskipTests verify -Dbench.users=50 -Dbench.feeds=4 -Dbench.rate=5000}
+ * <p>
+ * Every {@code ingest.*} or {@code mqtt.*} property can be overridden the same way, e.g. {@code -Dingest.lanes=2}.
+ * Each user has one rule on its first feed; {@code bench.ceiling} sets how often it fires.
+ */
+public class IngestLoadBenchmark {
+
+    private static final String[] FEED_TYPES = {"temp", "hum", "light", "fan", "pump"};
+    private static final DateTimeFormatter CREATED_AT = DateTimeFormatter.ISO_INSTANT;
+
+    private final int users = Integer.getInteger("bench.users", 20);
+    private final int feeds = Integer.getInteger("bench.feeds", 5);
+    private final int rate = Integer.getInteger("bench.rate", 2000);
+    private final int publishers = Integer.getInteger("bench.publishers", 4);
+    private final int qos = Integer.getInteger("bench.qos", 1);
+    private final double ceiling = Double.parseDouble(System.getProperty("bench.ceiling", "90")); // sensor values are uniform in [0, 100)
+    private final Duration warmup = Duration.ofSeconds(Long.getLong("bench.warmup-seconds", 10));
+    private final Duration measurement = Duration.ofSeconds(Long.getLong("bench.duration-seconds", 30));
+
+    private final Recorder latency = new Recorder(TimeUnit.SECONDS.toNanos(60), 3);
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong sequence = new AtomicLong();
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private volatile long peakHeap;
+
+    public static void main(String[] args) throws Exception {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME))
+                .setLevel(Level.toLevel(System.getProperty("bench.log-level", "WARN")));
+        new IngestLoadBenchmark().run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        int port = freePort();
+        Server broker = startBroker(port);
+        AnnotationConfigApplicationContext context = startContext(port);
+        List<MqttAsyncClient> clients = new ArrayList<>();
+        List<Disposable> sinks = new ArrayList<>();
+        try {
+            List<User> simulatedUsers = subscribe(context, sinks);
+            for (int i = 0; i < publishers; i++) {
+                clients.add(connect(port, "bench-publisher-" + i));
+            }
+
+            System.out.printf("Ingest benchmark: %d users x %d feeds, %d msg/s offered, QoS %d, %d publishers%n",
+                    users, feeds, rate, qos, publishers);
+            publish(clients, simulatedUsers, warmup);
+            awaitQuiet();
+            latency.reset();
+            delivered.set(0);
+            peakHeap = 0;
+
+            long start = System.nanoTime();
+            long published = publish(clients, simulatedUsers, measurement);
+            long elapsed = System.nanoTime() - start;
+            awaitQuiet();
+            report(context.getBean(MeterRegistry.class), published, delivered.get(), elapsed, latency.getIntervalHistogram());
+        } finally {
+            for (MqttAsyncClient client : clients) {
+                client.disconnectForcibly(1_000);
+                client.close();
+            }
+            sinks.forEach(Disposable::dispose);
+            context.close();
+            broker.stopServer();
+        }
+    }
+
+    private Server startBroker(int port) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("host", "127.0.0.1");
+        properties.setProperty("port", Integer.toString(port));
+        properties.setProperty("allow_anonymous", "true");
+        properties.setProperty("persistence_enabled", "false");
+        properties.setProperty("data_path", Files.createTempDirectory("moquette").toString());
+        properties.setProperty("netty.mqtt.message_size", "65536");
+        Server broker = new Server();
+        broker.startServer(new MemoryConfig(properties));
+        return broker;
+    }
+
+    private AnnotationConfigApplicationContext startContext(int port) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getBeanFactory().setConversionService(ApplicationConversionService.getSharedInstance());
+        context.getEnvironment().getPropertySources().addLast(new MapPropertySource("bench", Map.of(
+                "mqtt.broker.url", "tcp://127.0.0.1:" + port
+        )));
+        context.register(IngestBenchmarkConfig.class);
+        context.refresh();
+        return context;
+    }
+
+    /**
+     * Subscribes every simulated user through the subscription manager, adds one rule per user on its first feed
+     * and opens a WebSocket sink that records the end-to-end latency of each reading.
+     */
+    private List<User> subscribe(AnnotationConfigApplicationContext context, List<Disposable> sinks) {
+        MqttSubscriptionManager subscriptionManager = context.getBean(MqttSubscriptionManager.class);
+        FeedRuleIndex feedRuleIndex = context.getBean(FeedRuleIndex.class);
+        WebSocketSessionManager webSocketSessionManager = context.getBean(WebSocketSessionManager.class);
+
+        List<User> simulatedUsers = new ArrayList<>();
+        for (int u = 0; u < users; u++) {
+            User user = simulatedUser(u);
+            simulatedUsers.add(user);
+            feedRuleIndex.put(FeedRule.builder()
+                    .id("rule-" + u)
+                    .email(user.getEmail())
+                    .inputFeed(feedKey(0))
+                    .ceiling(ceiling)
+                    .outputFeedAbove("bench.fan")
+                    .aboveValue(1.0)
+                    .build());
+
+            webSocketSessionManager.registerSession(user.getId());
+            sinks.add(webSocketSessionManager.getUserFlux(user.getId()).subscribe(this::recordDelivery));
+
+            List<String> topics = new ArrayList<>();
+            for (int f = 0; f < feeds; f++) {
+                topics.add(topic(user, f));
+            }
+            subscriptionManager.subscribeFeed(user, topics).block(Duration.ofSeconds(30));
+        }
+        LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(1)); // let the adapters' SUBSCRIBEs complete
+        return simulatedUsers;
+    }
+
+    private void recordDelivery(String payload) {
+        int start = payload.indexOf("\"id\":\"") + 6;
+        long sentAt = Long.parseLong(payload, start, payload.indexOf('"', start), 10);
+        latency.recordValue(Math.max(0, System.nanoTime() - sentAt));
+        delivered.incrementAndGet();
+    }
+
+    /**
+     * Publishes at {@code bench.rate} messages per second, spread round robin over users, feeds and publisher clients.
+     * The data id carries the send time, so the WebSocket sink can compute the end-to-end latency.
+     */
+    private long publish(List<MqttAsyncClient> clients, List<User> simulatedUsers, Duration duration) throws InterruptedException {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        long count = 0;
+        long nextHeapSample = start;
+        for (long next = start; next < end; next += intervalNanos) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            long n = sequence.getAndIncrement();
+            User user = simulatedUsers.get((int) (n % users));
+            int feed = (int) ((n / users) % feeds);
+            String payload = payload(feed);
+            try {
+                clients.get((int) (n % clients.size()))
+                        .publish(topic(user, feed), payload.getBytes(StandardCharsets.UTF_8), qos, false);
+                count++;
+            } catch (MqttException e) {
+                // in-flight window full; the offered rate is above what the broker accepts
+                Thread.sleep(1);
+            }
+            if (System.nanoTime() >= nextHeapSample) {
+                peakHeap = Math.max(peakHeap, memory.getHeapMemoryUsage().getUsed());
+                nextHeapSample += TimeUnit.MILLISECONDS.toNanos(200);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Waits until no reading has arrived for half a second, so backlog of one phase is not counted in the next.
+     */
+    private void awaitQuiet() throws InterruptedException {
+        long last = -1;
+        for (int i = 0; i < 120 && delivered.get() != last; i++) {
+            last = delivered.get();
+            Thread.sleep(500);
+        }
+    }
+
+    private String payload(int feed) {
+        String value = feedType(feed).equals("fan") || feedType(feed).equals("pump")
+                ? Integer.toString(ThreadLocalRandom.current().nextInt(2))
+                : String.format(Locale.ROOT, "%.1f", ThreadLocalRandom.current().nextDouble(0, 100));
+        return "{\"feed_key\":\"" + feedKey(feed) + "\",\"data\":{\"id\":\"" + System.nanoTime() + "\",\"value\":\"" + value
+                + "\",\"created_at\":\"" + CREATED_AT.format(Instant.now().truncatedTo(ChronoUnit.SECONDS)) + "\"}}";
+    }
+
+    private void report(MeterRegistry registry, long published, long received, long elapsedNanos, Histogram histogram) {
+        double seconds = elapsedNanos / 1e9;
+        System.gc();
+        long heapAfterGc = memory.getHeapMemoryUsage().getUsed();
+
+        System.out.println("----------------------------------------------------------------");
+        System.out.printf("published         %,d msg (%.0f msg/s)%n", published, published / seconds);
+        System.out.printf("delivered         %,d msg (%.0f msg/s sustained)%n", received, received / seconds);
+        System.out.printf("lost or dropped   %,d%n", Math.max(0, published - received));
+        System.out.printf("e2e latency       p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms%n",
+                histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(99) / 1e6,
+                histogram.getValueAtPercentile(99.9) / 1e6, histogram.getMaxValue() / 1e6);
+        System.out.printf("heap              peak %d MB, after GC %d MB%n", peakHeap >> 20, heapAfterGc >> 20);
+        for (String stage : List.of("parse", "rule.lookup", "rule.check", "save")) {
+            Timer timer = registry.find("qlnk.ingest.stage").tag("stage", stage).timer();
+            if (timer != null) {
+                System.out.printf("stage %-11s mean %.1f us over %,d (incl. warmup)%n", stage, timer.mean(TimeUnit.MICROSECONDS), timer.count());
+            }
+        }
+        Timer queueWait = registry.find("qlnk.ingest.queue.wait").timer();
+        if (queueWait != null) {
+            System.out.printf("queue wait        mean %.1f us, max %.1f ms (incl. warmup)%n",
+                    queueWait.mean(TimeUnit.MICROSECONDS), queueWait.max(TimeUnit.MILLISECONDS));
+        }
+        System.out.printf("ingest dropped    %.0f%n", registry.get("qlnk.ingest.dropped").counter().count());
+        System.out.println("----------------------------------------------------------------");
+    }
+
+    private MqttAsyncClient connect(int port, String clientId) throws MqttException {
+        MqttAsyncClient client = new MqttAsyncClient("tcp://127.0.0.1:" + port, clientId, new MemoryPersistence());
+        MqttConnectOptions options = new MqttConnectOptions();
+        options.setMaxInflight(65_535);
+        options.setCleanSession(true);
+        client.connect(options).waitForCompletion(10_000);
+        return client;
+    }
+
+    private User simulatedUser(int index) {
+        List<Feed> feedList = new ArrayList<>();
+        for (int f = 0; f < feeds; f++) {
+            feedList.add(Feed.builder().key(feedKey(f)).name(feedKey(f)).build());
+        }
+        return User.builder()
+                .id(String.format("%024x", index))
+                .username("bench-user-" + index)
+                .email("bench-user-" + index + "@localhost")
+                .apikey("bench-key")
+                .groups(List.of(Group.builder().key("bench").name("bench").feeds(feedList).build()))
+                .build();
+    }
+
+    private static String topic(User user, int feed) {
+        return user.getUsername() + "/feeds/" + feedKey(feed) + "/json";
+    }
+
+    private static String feedKey(int feed) {
+        String type = feedType(feed);
+        return feed < FEED_TYPES.length ? "bench." + type : "bench." + type + "." + feed;
+    }
+
+    private static String feedType(int feed) {
+        return FEED_TYPES[feed % FEED_TYPES.length];
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
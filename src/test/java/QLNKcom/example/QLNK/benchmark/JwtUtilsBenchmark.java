@@ -0,0 +1,53 @@
+package QLNKcom.example.QLNK.benchmark;
+
+import QLNKcom.example.QLNK.config.jwt.JwtUtils;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Access token checks done on every authenticated request and WebSocket handshake.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtUtilsBenchmark {
+
+    private JwtUtils jwtUtils;
+    private String accessToken;
+    private long refreshIatSeconds;
+
+    @Setup
+    public void setUp() {
+        jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "accessSecretKey", randomKey());
+        ReflectionTestUtils.setField(jwtUtils, "refreshSecretKey", randomKey());
+        ReflectionTestUtils.setField(jwtUtils, "accessExpirationTime", TimeUnit.HOURS.toMillis(1));
+        ReflectionTestUtils.setField(jwtUtils, "refreshExpirationTime", TimeUnit.DAYS.toMillis(7));
+        jwtUtils.getSignInKey();
+        accessToken = jwtUtils.generateAccessToken("nguyenvana@example.com");
+        refreshIatSeconds = System.currentTimeMillis() / 1000 - 60;
+    }
+
+    @Benchmark
+    public String extractAccessEmail() {
+        return jwtUtils.extractAccessEmail(accessToken);
+    }
+
+    @Benchmark
+    public boolean validateAccessToken() {
+        return jwtUtils.validateAccessToken(accessToken, refreshIatSeconds);
+    }
+
+    private static String randomKey() {
+        byte[] key = new byte[64];
+        new SecureRandom().nextBytes(key);
+        return Base64.getEncoder().encodeToString(key);
+    }
+}
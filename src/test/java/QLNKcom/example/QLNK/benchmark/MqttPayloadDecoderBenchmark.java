@@ -0,0 +1,48 @@
+package QLNKcom.example.QLNK.benchmark;
+
+import QLNKcom.example.QLNK.service.mqtt.FeedPayload;
+import QLNKcom.example.QLNK.service.mqtt.MqttPayloadDecoder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link MqttPayloadDecoder} with the readTree + Double.parseDouble path
+ * that MqttMessageHandler used to run on every message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MqttPayloadDecoderBenchmark {
+
+    @Param({
+            "{\"data\":{\"value\":\"27.5\"}}",
+            "{\"feed_id\":2981234,\"feed_key\":\"cay-1.temp\",\"data\":{\"id\":\"0FM3XZ2B6K4P8T1Q\",\"value\":\"27.5\","
+                    + "\"feed_id\":2981234,\"created_at\":\"2025-04-02T08:15:30Z\",\"lat\":null,\"lon\":null,\"ele\":null}}"
+    })
+    private String payload;
+
+    private final MqttPayloadDecoder decoder = new MqttPayloadDecoder();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Benchmark
+    public void streaming(Blackhole blackhole) {
+        FeedPayload feedPayload = decoder.decode(payload);
+        blackhole.consume(feedPayload.getValue());
+        blackhole.consume(feedPayload.getCreatedAt());
+    }
+
+    @Benchmark
+    public void legacyReadTree(Blackhole blackhole) throws Exception {
+        JsonNode dataNode = objectMapper.readTree(payload).get("data");
+        String valueStr = dataNode.get("value").asText();
+        blackhole.consume(Double.parseDouble(valueStr));
+        blackhole.consume(Double.parseDouble(valueStr));
+    }
+}
@@ -0,0 +1,61 @@
+package QLNKcom.example.QLNK.benchmark;
+
+import QLNKcom.example.QLNK.enums.DeviceType;
+import QLNKcom.example.QLNK.enums.SensorType;
+import QLNKcom.example.QLNK.service.mqtt.FeedTopic;
+import QLNKcom.example.QLNK.service.mqtt.MqttTopicParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link MqttTopicParser} and the hash based feed classification
+ * with the split/stream based code they replaced in MqttMessageHandler.processMessage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MqttTopicParserBenchmark {
+
+    @Param({"nguyenvana/feeds/cay-1.temp/json", "nguyenvana/feeds/cay-1.pump/json"})
+    private String topic;
+
+    private final MqttTopicParser parser = new MqttTopicParser();
+
+    @Benchmark
+    public void parser(Blackhole blackhole) {
+        FeedTopic feedTopic = parser.parse(topic);
+        blackhole.consume(feedTopic);
+        blackhole.consume(DeviceType.fromFeedKey(feedTopic.getFeedKey()) != null
+                || SensorType.fromFeedKey(feedTopic.getFeedKey()) != null);
+    }
+
+    @Benchmark
+    public void legacySplit(Blackhole blackhole) {
+        String[] parts = topic.split("/");
+        String[] groupAndFeed = parts[2].split("\\.");
+        String groupKey = groupAndFeed[0];
+        String feedKey = groupAndFeed[1];
+        String fullFeedKey = groupKey + "." + feedKey;
+        blackhole.consume(parts[0]);
+        blackhole.consume(fullFeedKey);
+        blackhole.consume(legacyIsDevice(fullFeedKey) || legacyIsSensor(fullFeedKey));
+    }
+
+    private static boolean legacyIsDevice(String fullFeedKey) {
+        String deviceType = fullFeedKey.split("\\.")[1];
+        return Arrays.stream(DeviceType.values())
+                .anyMatch(device -> device.getType().equals(deviceType));
+    }
+
+    private static boolean legacyIsSensor(String fullFeedKey) {
+        String sensorType = fullFeedKey.split("\\.")[1];
+        return Arrays.stream(SensorType.values())
+                .anyMatch(sensor -> sensor.getType().equals(sensorType));
+    }
+}
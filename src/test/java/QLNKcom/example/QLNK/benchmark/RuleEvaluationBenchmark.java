@@ -0,0 +1,160 @@
+package QLNKcom.example.QLNK.benchmark;
+
+import QLNKcom.example.QLNK.enums.IngestDedupMode;
+import QLNKcom.example.QLNK.model.User;
+import QLNKcom.example.QLNK.model.data.DeviceData;
+import QLNKcom.example.QLNK.model.data.FeedRule;
+import QLNKcom.example.QLNK.model.data.SensorData;
+import QLNKcom.example.QLNK.repository.FeedRuleRepository;
+import QLNKcom.example.QLNK.service.data.DataBatchWriter;
+import QLNKcom.example.QLNK.service.data.LatestValueStore;
+import QLNKcom.example.QLNK.service.data.RecentReadingStore;
+import QLNKcom.example.QLNK.service.data.SensorRollupService;
+import QLNKcom.example.QLNK.service.alert.AlertAggregator;
+import QLNKcom.example.QLNK.service.email.EmailService;
+import QLNKcom.example.QLNK.service.mqtt.*;
+import QLNKcom.example.QLNK.service.rule.FeedRuleIndex;
+import QLNKcom.example.QLNK.service.rule.FeedRuleStateWriter;
+import QLNKcom.example.QLNK.service.websocket.WebSocketSessionManager;
+import ch.qos.logback.classic.Level;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * One reading through {@link MqttMessageHandler#processMessage} for a feed with {@code rulesPerFeed} ceiling/floor rules:
+ * {@code normal} stays within bounds, {@code alternating} crosses the ceilings on every other reading,
+ * so every rule issues a command, an alert and a state write each time.
+ * Email, commands and Mongo are stubs that complete immediately. They are plain subclasses and a JDK proxy
+ * rather than Mockito mocks, whose per-call stack walk would cost more than the code being measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleEvaluationBenchmark {
+
+    private static final String TOPIC = "nguyenvana/feeds/cay-1.temp/json";
+    private static final String NORMAL = "{\"data\":{\"value\":\"20.0\"}}";
+    private static final String ABOVE = "{\"data\":{\"value\":\"35.0\"}}";
+
+    @Param({"1", "16"})
+    private int rulesPerFeed;
+
+    private MqttMessageHandler handler;
+    private User user;
+    private boolean above;
+
+    @Setup
+    public void setUp() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        Mono<Long> updated = Mono.just(1L);
+        FeedRuleRepository feedRuleRepository = (FeedRuleRepository) Proxy.newProxyInstance(
+                FeedRuleRepository.class.getClassLoader(), new Class<?>[]{FeedRuleRepository.class},
+                (proxy, method, args) -> updated);
+        EmailService emailService = new EmailService(null, null) {
+            @Override
+            public Mono<Void> sendEmail(String to, String subject, String text) {
+                return Mono.empty();
+            }
+        };
+        MqttCommandService mqttCommandService = new MqttCommandService(null, null, meterRegistry) {
+            @Override
+            public Mono<Void> sendMqttCommandIfChanged(User user, String feed, String value) {
+                return Mono.empty();
+            }
+
+            @Override
+            public void recordDeviceState(String userId, String feed, double value) {
+            }
+        };
+        DataBatchWriter dataBatchWriter = new DataBatchWriter(null, meterRegistry) {
+            @Override
+            public void write(SensorData sensorData) {
+            }
+
+            @Override
+            public void write(DeviceData deviceData) {
+            }
+        };
+        DuplicateDeliveryFilter duplicateDeliveryFilter = new DuplicateDeliveryFilter(null, meterRegistry);
+        ReflectionTestUtils.setField(duplicateDeliveryFilter, "mode", IngestDedupMode.OFF);
+
+        FeedRuleIndex feedRuleIndex = new FeedRuleIndex(feedRuleRepository, Mockito.mock(ReactiveMongoTemplate.class), meterRegistry);
+        for (int i = 0; i < rulesPerFeed; i++) {
+            feedRuleIndex.put(FeedRule.builder()
+                    .id("rule-" + i)
+                    .email("nguyenvana@example.com")
+                    .inputFeed("cay-1.temp")
+                    .ceiling(30.0 + i * 0.1)
+                    .floor(10.0 - i * 0.1)
+                    .outputFeedAbove("cay-1.fan-" + i)
+                    .aboveValue(1.0)
+                    .outputFeedBelow("cay-1.pump-" + i)
+                    .belowValue(1.0)
+                    .build());
+        }
+
+        handler = new MqttMessageHandler(
+                new WebSocketSessionManager(meterRegistry),
+                dataBatchWriter,
+                new SensorRollupService(null, meterRegistry) {
+                    @Override
+                    public void record(SensorData sensorData) {
+                    }
+                },
+                new LatestValueStore(null, meterRegistry),
+                recentReadingStore(meterRegistry),
+                new FeedRuleStateWriter(feedRuleRepository, meterRegistry),
+                alertAggregator(emailService, meterRegistry),
+                feedRuleIndex,
+                mqttCommandService,
+                new MqttTopicParser(),
+                new MqttPayloadDecoder(),
+                duplicateDeliveryFilter,
+                meterRegistry);
+        handler.registerMeters();
+        user = User.builder().id("u1").username("nguyenvana").email("nguyenvana@example.com").build();
+    }
+
+    @Benchmark
+    public void normal() {
+        handler.processMessage(user, TOPIC, NORMAL).block();
+    }
+
+    @Benchmark
+    public void alternating() {
+        above = !above;
+        handler.processMessage(user, TOPIC, above ? ABOVE : NORMAL).block();
+    }
+
+    private static RecentReadingStore recentReadingStore(MeterRegistry meterRegistry) {
+        RecentReadingStore store = new RecentReadingStore(meterRegistry);
+        ReflectionTestUtils.setField(store, "capacity", 1024);
+        ReflectionTestUtils.setField(store, "memoryBudget", DataSize.ofMegabytes(64));
+        store.registerMeters();
+        return store;
+    }
+
+    private static AlertAggregator alertAggregator(EmailService emailService, MeterRegistry meterRegistry) {
+        AlertAggregator aggregator = new AlertAggregator(emailService, null, meterRegistry);
+        ReflectionTestUtils.setField(aggregator, "cooldown", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(aggregator, "escalateAfter", Duration.ofHours(1));
+        return aggregator;
+    }
+}
@@ -0,0 +1,41 @@
+package QLNKcom.example.QLNK.benchmark;
+
+import QLNKcom.example.QLNK.config.websocket.WebSocketFeedFilter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-reading, per-session WebSocket filter, compared with the readTree based shouldSendData
+ * that MqttReactiveWebSocketHandler used before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebSocketFeedFilterBenchmark {
+
+    private static final String READING = "{\"key\":\"cay-1.temp\",\"id\":\"0FM3XZ2B6K4P8T1Q\",\"value\":\"27.5\","
+            + "\"feed_id\":2981234,\"created_at\":\"2025-04-02T08:15:30Z\",\"lat\":null,\"lon\":null,\"ele\":null}";
+
+    @Param({"cay-1.temp", "cay-1.hum"})
+    private String requestedKey;
+
+    private final WebSocketFeedFilter filter = new WebSocketFeedFilter();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Benchmark
+    public boolean streaming() {
+        return filter.shouldSendData(READING, requestedKey);
+    }
+
+    @Benchmark
+    public boolean legacyReadTree() throws Exception {
+        JsonNode jsonNode = objectMapper.readTree(READING);
+        return jsonNode.get("key").asText().equals(requestedKey);
+    }
+}
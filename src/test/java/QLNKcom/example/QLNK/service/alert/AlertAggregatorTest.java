@@ -0,0 +1,171 @@
+package QLNKcom.example.QLNK.service.alert;
+
+import QLNKcom.example.QLNK.enums.AlertDirection;
+import QLNKcom.example.QLNK.service.email.EmailService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AlertAggregatorTest {
+
+    private static final String EMAIL = "nguyenvana@example.com";
+    private static final String FEED = "cay-1.temp";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private EmailService emailService;
+    private AlertAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        emailService = Mockito.mock(EmailService.class);
+        when(emailService.sendEmail(anyString(), anyString(), anyString())).thenReturn(Mono.empty());
+        aggregator = aggregator(Duration.ofMinutes(10), Duration.ofHours(1));
+    }
+
+    @Test
+    void emailsTheFirstViolationAndDigestsTheRest() {
+        aggregator.violation("rule-1", EMAIL, FEED, AlertDirection.ABOVE, 31, 30);
+        aggregator.violation("rule-1", EMAIL, FEED, AlertDirection.ABOVE, 35, 30);
+        aggregator.violation("rule-1", EMAIL, FEED, AlertDirection.ABOVE, 33, 30);
+
+        assertEquals(List.of("Alert: cay-1.temp Exceeded Upper Threshold"), subjects(1));
+        assertEquals(2.0, count("deferred"));
+
+        aggregator.sendDigests().block();
+
+        List<String> texts = texts(2);
+        assertEquals("Alert digest: 1 feed outside thresholds", subjects(2).get(1));
+        assertTrue(texts.get(1).contains("- cay-1.temp above 30.0: 2 readings"), texts.get(1));
+        assertTrue(texts.get(1).contains("highest 35.0"), texts.get(1));
+
+        // nothing pending, no digest
+        aggregator.sendDigests().block();
+        verify(emailService, times(2)).sendEmail(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void digestsAViolationRightAfterTheEpisodeEnded() {
+        aggregator.violation("rule-1", EMAIL, FEED, AlertDirection.ABOVE, 31, 30);
+        aggregator.resolve("rule-1", AlertDirection.ABOVE);
+        aggregator.violation("rule-1", EMAIL, FEED, AlertDirection.ABOVE, 32, 30);
+
+        assertEquals(1, subjects(1).size());
+        assertEquals(1.0, count("deferred"));
+    }
+
+    @Test
+    void emailsAgainOnceTheCooldownHasPassed() throws InterruptedException {
+        aggregator = aggregator(Duration.ofMillis(50), Duration.ofHours(1));
+
+        aggregator.violation("rule-1", EMAIL, FEED, AlertDirection.ABOVE, 31, 30);
+        aggregator.resolve("rule-1", AlertDirection.ABOVE);
+        Thread.sleep(100);
+        aggregator.violation("rule-1", EMAIL, FEED, AlertDirection.ABOVE, 31, 30);
+
+        assertEquals(2.0, count("immediate"));
+    }
+
+    @Test
+    void escalatesALastingViolationAtDoublingDurations() throws InterruptedException {
+        aggregator = aggregator(Duration.ofMinutes(10), Duration.ofMillis(200));
+
+        aggregator.violation("rule-1", EMAIL, FEED, AlertDirection.BELOW, 9, 10);
+        Thread.sleep(250);
+        aggregator.violation("rule-1", EMAIL, FEED, AlertDirection.BELOW, 8, 10);
+        aggregator.violation("rule-1", EMAIL, FEED, AlertDirection.BELOW, 8, 10);
+
+        assertEquals(1.0, count("escalated"));
+        assertEquals(1.0, count("deferred"));
+        assertTrue(subjects(2).get(1).startsWith("Alert: cay-1.temp still below threshold for"), subjects(2).get(1));
+
+        // the next escalation comes once the violation has lasted twice as long
+        Thread.sleep(50);
+        aggregator.violation("rule-1", EMAIL, FEED, AlertDirection.BELOW, 8, 10);
+        assertEquals(1.0, count("escalated"));
+        Thread.sleep(150);
+        aggregator.violation("rule-1", EMAIL, FEED, AlertDirection.BELOW, 8, 10);
+        assertEquals(2.0, count("escalated"));
+    }
+
+    @Test
+    void escalatesAViolationThatFlapsWithinTheCooldown() throws InterruptedException {
+        aggregator = aggregator(Duration.ofMinutes(10), Duration.ofMillis(200));
+
+        aggregator.violation("rule-1", EMAIL, FEED, AlertDirection.ABOVE, 31, 30);
+        for (int i = 0; i < 5; i++) {
+            Thread.sleep(50);
+            aggregator.resolve("rule-1", AlertDirection.ABOVE);
+            aggregator.violation("rule-1", EMAIL, FEED, AlertDirection.ABOVE, 31, 30);
+        }
+
+        assertEquals(1.0, count("immediate"));
+        assertEquals(1.0, count("escalated"));
+        assertTrue(subjects(2).get(1).startsWith("Alert: cay-1.temp still above threshold for"), subjects(2).get(1));
+    }
+
+    @Test
+    void keepsTheEpisodesOfRulesSharingAFeedApart() {
+        aggregator.violation("rule-1", EMAIL, FEED, AlertDirection.ABOVE, 31, 30);
+        aggregator.violation("rule-2", EMAIL, FEED, AlertDirection.ABOVE, 31, 25);
+        aggregator.resolve("rule-1", AlertDirection.ABOVE);
+        aggregator.violation("rule-2", EMAIL, FEED, AlertDirection.ABOVE, 32, 25);
+
+        assertEquals(2.0, count("immediate"));
+        assertEquals(1.0, count("deferred"));
+
+        aggregator.sendDigests().block();
+        String digest = texts(3).get(2);
+        assertTrue(digest.contains("above 25.0: 1 readings"), digest);
+    }
+
+    @Test
+    void resolvesOnlyTheDirectionThatCleared() {
+        aggregator.violation("rule-1", EMAIL, FEED, AlertDirection.BELOW, 9, 10);
+        aggregator.violation("rule-1", EMAIL, FEED, AlertDirection.ABOVE, 31, 30);
+        aggregator.resolve("rule-1", AlertDirection.BELOW);
+        aggregator.violation("rule-1", EMAIL, FEED, AlertDirection.ABOVE, 32, 30);
+
+        aggregator.sendDigests().block();
+        String digest = texts(3).get(2);
+        assertTrue(digest.contains("above 30.0: 1 readings"), digest);
+        assertFalse(digest.contains("back to normal"), digest);
+    }
+
+    private AlertAggregator aggregator(Duration cooldown, Duration escalateAfter) {
+        AlertAggregator aggregator = new AlertAggregator(emailService, null, meterRegistry);
+        ReflectionTestUtils.setField(aggregator, "cooldown", cooldown);
+        ReflectionTestUtils.setField(aggregator, "escalateAfter", escalateAfter);
+        return aggregator;
+    }
+
+    private double count(String outcome) {
+        return meterRegistry.get("qlnk.alerts").tag("outcome", outcome).counter().count();
+    }
+
+    private List<String> subjects(int sent) {
+        ArgumentCaptor<String> subjects = ArgumentCaptor.forClass(String.class);
+        verify(emailService, times(sent)).sendEmail(anyString(), subjects.capture(), anyString());
+        return subjects.getAllValues();
+    }
+
+    private List<String> texts(int sent) {
+        ArgumentCaptor<String> texts = ArgumentCaptor.forClass(String.class);
+        verify(emailService, times(sent)).sendEmail(anyString(), anyString(), texts.capture());
+        return texts.getAllValues();
+    }
+}
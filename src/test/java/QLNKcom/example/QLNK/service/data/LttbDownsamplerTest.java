@@ -0,0 +1,119 @@
+package QLNKcom.example.QLNK.service.data;
+
+import QLNKcom.example.QLNK.response.data.HistoryPoint;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class LttbDownsamplerTest {
+
+    @Test
+    void matchesTheClassicAlgorithm() {
+        List<HistoryPoint> readings = readings(10_000, 42);
+
+        List<HistoryPoint> streamed = LttbDownsampler.downsample(Flux.fromIterable(readings), readings.size(), 100)
+                .collectList()
+                .block();
+
+        assertEquals(lttb(readings, 100), streamed);
+    }
+
+    @Test
+    void keepsFirstAndLastReadings() {
+        List<HistoryPoint> readings = readings(1_001, 7);
+
+        List<HistoryPoint> streamed = LttbDownsampler.downsample(Flux.fromIterable(readings), readings.size(), 10)
+                .collectList()
+                .block();
+
+        assertEquals(10, streamed.size());
+        assertSame(readings.get(0), streamed.get(0));
+        assertSame(readings.get(readings.size() - 1), streamed.get(streamed.size() - 1));
+    }
+
+    @Test
+    void passesShortSeriesThrough() {
+        List<HistoryPoint> readings = readings(50, 1);
+
+        List<HistoryPoint> streamed = LttbDownsampler.downsample(Flux.fromIterable(readings), readings.size(), 100)
+                .collectList()
+                .block();
+
+        assertEquals(readings, streamed);
+    }
+
+    @Test
+    void toleratesMoreReadingsThanExpected() {
+        List<HistoryPoint> readings = readings(1_200, 3);
+
+        List<HistoryPoint> streamed = LttbDownsampler.downsample(Flux.fromIterable(readings), 1_000, 20)
+                .collectList()
+                .block();
+
+        assertSame(readings.get(0), streamed.get(0));
+        assertSame(readings.get(readings.size() - 1), streamed.get(streamed.size() - 1));
+        assertEquals(24, streamed.size());
+    }
+
+    private static List<HistoryPoint> readings(int count, long seed) {
+        Random random = new Random(seed);
+        List<HistoryPoint> readings = new ArrayList<>(count);
+        double value = 25;
+        for (int i = 0; i < count; i++) {
+            value += random.nextGaussian();
+            readings.add(HistoryPoint.builder().timeStamp(Instant.ofEpochSecond(1_700_000_000L + i * 5L)).value(value).build());
+        }
+        return readings;
+    }
+
+    /**
+     * Reference implementation over a list, as in Steinarsson's thesis.
+     */
+    private static List<HistoryPoint> lttb(List<HistoryPoint> data, int threshold) {
+        List<HistoryPoint> sampled = new ArrayList<>(threshold);
+        double every = (double) (data.size() - 2) / (threshold - 2);
+        int a = 0;
+        sampled.add(data.get(0));
+        for (int i = 0; i < threshold - 2; i++) {
+            int nextStart = (int) ((i + 1) * every) + 1;
+            int nextEnd = Math.min((int) ((i + 2) * every) + 1, data.size());
+            double avgX = 0;
+            double avgY = 0;
+            for (int j = nextStart; j < nextEnd; j++) {
+                avgX += x(data.get(j));
+                avgY += data.get(j).getValue();
+            }
+            avgX /= nextEnd - nextStart;
+            avgY /= nextEnd - nextStart;
+
+            int start = (int) (i * every) + 1;
+            int end = (int) ((i + 1) * every) + 1;
+            double ax = x(data.get(a));
+            double ay = data.get(a).getValue();
+            double maxArea = -1;
+            int next = start;
+            for (int j = start; j < end; j++) {
+                double area = Math.abs((ax - avgX) * (data.get(j).getValue() - ay) - (ax - x(data.get(j))) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = j;
+                }
+            }
+            sampled.add(data.get(next));
+            a = next;
+        }
+        sampled.add(data.get(data.size() - 1));
+        return sampled;
+    }
+
+    private static double x(HistoryPoint point) {
+        return point.getTimeStamp().toEpochMilli();
+    }
+}
@@ -0,0 +1,143 @@
+package QLNKcom.example.QLNK.service.data;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks with {@code explain} that the repository queries are answered from the declared indexes. Needs a MongoDB
+ * 6.0+ server; set {@code QLNK_TEST_MONGO_URI}, e.g. {@code mongodb://localhost:27017}. A scratch database is used
+ * and dropped.
+ */
+@EnabledIfEnvironmentVariable(named = "QLNK_TEST_MONGO_URI", matches = ".+")
+class MongoIndexesQueryPlanTest {
+
+    private static MongoClient client;
+    private static ReactiveMongoTemplate template;
+
+    @BeforeAll
+    static void setUp() {
+        client = MongoClients.create(System.getenv("QLNK_TEST_MONGO_URI"));
+        template = new ReactiveMongoTemplate(client, "qlnk_index_plan_test");
+        template.getMongoDatabase().flatMap(db -> Mono.from(db.drop())).block();
+        template.createCollection("sensorData", CollectionOptions.timeSeries("timeStamp",
+                options -> options.metaField("meta"))).block();
+        template.createCollection("deviceData", CollectionOptions.timeSeries("timeStamp",
+                options -> options.metaField("meta"))).block();
+
+        MongoIndexes indexes = new MongoIndexes(template, new SimpleMeterRegistry());
+        indexes.ensure().block();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        template.getMongoDatabase().flatMap(db -> Mono.from(db.drop())).block();
+        client.close();
+    }
+
+    @Test
+    void findsUsersByEmail() {
+        assertUsesIndex("users", new Document("email", "a@b.c"), null, "email_1");
+    }
+
+    @Test
+    void findsRulesOfAFeed() {
+        assertUsesIndex("feedRule", new Document("email", "a@b.c").append("inputFeed", "g.temp"), null,
+                "email_1_inputFeed_1");
+        assertUsesIndex("feedRule", new Document("email", "a@b.c").append("$or", List.of(
+                new Document("inputFeed", "g.temp"),
+                new Document("outputFeedAbove", "g.temp"),
+                new Document("outputFeedBelow", "g.temp"))), null, "email_1_inputFeed_1");
+    }
+
+    @Test
+    void deletesRulesTouchingAFeed() {
+        assertNoCollectionScan("feedRule", new Document("$or", List.of(
+                new Document("email", "a@b.c").append("inputFeed", "g.temp"),
+                new Document("outputFeedAbove", "g.temp"),
+                new Document("outputFeedBelow", "g.temp"))), null);
+    }
+
+    @Test
+    void findsSchedulesOfAFeed() {
+        assertUsesIndex("schedules", new Document("userId", "u1").append("fullFeedKey", "g.temp"), null,
+                "userId_1_fullFeedKey_1");
+        assertUsesIndex("schedules", new Document("userId", "u1"), null, "userId_1_fullFeedKey_1");
+    }
+
+    @Test
+    void readsAFeedTimeRange() {
+        Document range = new Document("meta.username", "user")
+                .append("meta.feedKey", "g.temp")
+                .append("timeStamp", new Document("$gte", new Date(0)).append("$lt", new Date()));
+        assertNoCollectionScan("sensorData", range, new Document("timeStamp", 1));
+        assertNoCollectionScan("deviceData", range, new Document("timeStamp", 1));
+    }
+
+    @Test
+    void claimsDueOutboxEmails() {
+        Date now = new Date();
+        assertNoCollectionScan("email_outbox", new Document("$or", List.of(
+                new Document("status", "PENDING").append("nextAttemptAt", new Document("$lte", now)),
+                new Document("status", "SENDING").append("lockedUntil", new Document("$lt", now)))),
+                new Document("nextAttemptAt", 1));
+    }
+
+    private static void assertUsesIndex(String collection, Document filter, Document sort, String index) {
+        Document plan = explain(collection, filter, sort);
+        List<String> stages = collect(plan, "stage");
+        assertFalse(stages.contains("COLLSCAN"), collection + " " + filter.toJson() + " scans the collection: " + plan.toJson());
+        assertTrue(collect(plan, "indexName").contains(index), collection + " " + filter.toJson() + " does not use " + index
+                + ": " + plan.toJson());
+    }
+
+    private static void assertNoCollectionScan(String collection, Document filter, Document sort) {
+        Document plan = explain(collection, filter, sort);
+        assertFalse(collect(plan, "stage").contains("COLLSCAN"),
+                collection + " " + filter.toJson() + " scans the collection: " + plan.toJson());
+    }
+
+    private static Document explain(String collection, Document filter, Document sort) {
+        Document find = new Document("find", collection).append("filter", filter);
+        if (sort != null) {
+            find.append("sort", sort);
+        }
+        return template.getMongoDatabase()
+                .flatMap(db -> Mono.from(db.runCommand(new Document("explain", find).append("verbosity", "queryPlanner"))))
+                .block();
+    }
+
+    /**
+     * Values of {@code key} anywhere in the explain output outside rejected plans.
+     */
+    private static List<String> collect(Object node, String key) {
+        List<String> values = new ArrayList<>();
+        if (node instanceof Document document) {
+            document.forEach((name, value) -> {
+                if (name.equals(key) && value instanceof String string) {
+                    values.add(string);
+                } else if (!name.equals("rejectedPlans")) {
+                    values.addAll(collect(value, key));
+                }
+            });
+        } else if (node instanceof List<?> list) {
+            list.forEach(item -> values.addAll(collect(item, key)));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,175 @@
+package QLNKcom.example.QLNK.service.data;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecentReadingStoreTest {
+
+    private static final String USER = "u1";
+    private static final String FEED = "cay-1.temp";
+
+    private RecentReadingStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = store(8, DataSize.ofMegabytes(1));
+    }
+
+    @Test
+    void returnsTheReadingsOfTheWindowInOrder() {
+        for (int i = 0; i < 5; i++) {
+            store.record(USER, FEED, 1_000L * i, i);
+        }
+
+        RecentReadingStore.Window window = store.find(USER, FEED, 2_000);
+
+        assertNotNull(window);
+        assertEquals(3, window.size());
+        assertEquals(2_000, window.time(0));
+        assertEquals(4.0, window.value(2));
+    }
+
+    @Test
+    void putsLateReadingsInPlace() {
+        store.record(USER, FEED, 1_000, 1);
+        store.record(USER, FEED, 3_000, 3);
+        store.record(USER, FEED, 2_000, 2);
+
+        RecentReadingStore.Window window = store.find(USER, FEED, 1_000);
+
+        assertEquals(3, window.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1_000L * (i + 1), window.time(i));
+            assertEquals(i + 1.0, window.value(i));
+        }
+    }
+
+    @Test
+    void refusesWindowsItDoesNotFullyHold() {
+        for (int i = 0; i < 20; i++) {
+            store.record(USER, FEED, 1_000L * i, i);
+        }
+
+        // the last 8 readings, 12s to 19s, are kept
+        assertNull(store.find(USER, FEED, 11_000));
+        assertEquals(8, store.find(USER, FEED, 12_000).size());
+        assertNull(store.find(USER, "cay-1.hum", 0));
+    }
+
+    @Test
+    void evictsTheLeastRecentlyWrittenFeedOverBudget() {
+        // two rings of 8 readings fit
+        store = store(8, DataSize.ofBytes(2 * (8 * 16 + 96)));
+        store.record(USER, "cay-1.temp", 1_000, 1);
+        store.record(USER, "cay-1.hum", 1_000, 1);
+        store.record(USER, "cay-1.temp", 2_000, 2);
+
+        store.record(USER, "cay-1.light", 1_000, 1);
+
+        assertNotNull(store.find(USER, "cay-1.temp", 1_000));
+        assertNull(store.find(USER, "cay-1.hum", 1_000));
+        assertNotNull(store.find(USER, "cay-1.light", 1_000));
+    }
+
+    @Test
+    void forgetsUsersWhoseLastFeedWasEvicted() {
+        // one ring fits
+        store = store(8, DataSize.ofBytes(8 * 16 + 96));
+        store.record("u1", "cay-1.temp", 1_000, 1);
+        store.record("u2", "cay-1.temp", 1_000, 1);
+
+        assertNull(store.find("u1", "cay-1.temp", 1_000));
+        assertNotNull(store.find("u2", "cay-1.temp", 1_000));
+        assertEquals(Set.of("u2"), ((Map<?, ?>) ReflectionTestUtils.getField(store, "rings")).keySet());
+    }
+
+    @Test
+    void dropsEveryFeedOfAUser() {
+        store.record("u1", "cay-1.temp", 1_000, 1);
+        store.record("u1", "cay-1.hum", 1_000, 1);
+        store.record("u2", "cay-1.temp", 1_000, 1);
+
+        store.drop("u1");
+
+        assertNull(store.find("u1", "cay-1.temp", 1_000));
+        assertNull(store.find("u1", "cay-1.hum", 1_000));
+        assertNotNull(store.find("u2", "cay-1.temp", 1_000));
+        assertEquals(1, ringCount(store));
+    }
+
+    @Test
+    void evictsFeedsNotWrittenForTheIdleTime() throws InterruptedException {
+        ReflectionTestUtils.setField(store, "idle", Duration.ofMillis(50));
+        store.record(USER, "cay-1.temp", 1_000, 1);
+        Thread.sleep(100);
+        store.record(USER, "cay-1.hum", 1_000, 1);
+
+        store.evictIdle();
+
+        assertNull(store.find(USER, "cay-1.temp", 1_000));
+        assertNotNull(store.find(USER, "cay-1.hum", 1_000));
+        assertEquals(1, ringCount(store));
+    }
+
+    @Test
+    void keepsTheRingCountExactWhileWritersEvictEachOther() throws Exception {
+        // four rings fit, eight writers keep creating more
+        store = store(8, DataSize.ofBytes(4 * (8 * 16 + 96)));
+        int writers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch ready = new CountDownLatch(1);
+        List<Future<?>> done = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            String feed = "cay-" + w + ".temp";
+            done.add(executor.submit(() -> {
+                ready.await();
+                for (int i = 0; i < 2_000; i++) {
+                    store.record(USER, feed, i, i);
+                }
+                return null;
+            }));
+        }
+        ready.countDown();
+        for (Future<?> future : done) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Map<?, ?> rings = (Map<?, ?>) ReflectionTestUtils.getField(store, "rings");
+        int mapped = rings.values().stream().mapToInt(byFeed -> ((Map<?, ?>) byFeed).size()).sum();
+        assertEquals(mapped, ringCount(store));
+        assertTrue(mapped <= 4 + writers, "rings: " + mapped);
+    }
+
+    private static RecentReadingStore store(int capacity, DataSize budget) {
+        RecentReadingStore store = new RecentReadingStore(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(store, "capacity", capacity);
+        ReflectionTestUtils.setField(store, "memoryBudget", budget);
+        store.registerMeters();
+        return store;
+    }
+
+    private static int ringCount(RecentReadingStore store) {
+        return ((AtomicInteger) ReflectionTestUtils.getField(store, "ringCount")).get();
+    }
+}
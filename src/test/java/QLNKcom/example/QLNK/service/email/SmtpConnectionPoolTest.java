@@ -0,0 +1,105 @@
+package QLNKcom.example.QLNK.service.email;
+
+import com.icegreen.greenmail.configuration.GreenMailConfiguration;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SmtpConnectionPoolTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP)
+            .withConfiguration(GreenMailConfiguration.aConfig().withDisabledAuthentication());
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final JavaMailSenderImpl javaMailSender = new JavaMailSenderImpl();
+    private SmtpConnectionPool pool;
+
+    @BeforeEach
+    void setUp() {
+        javaMailSender.setHost("localhost");
+        javaMailSender.setPort(ServerSetupTest.SMTP.getPort());
+        pool = new SmtpConnectionPool(javaMailSender, meterRegistry);
+        ReflectionTestUtils.setField(pool, "poolSize", 2);
+        pool.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.stop();
+    }
+
+    @Test
+    void reusesConnectionAcrossBatches() {
+        for (int batch = 0; batch < 3; batch++) {
+            List<MessagingException> results = pool.send(messages(5)).block();
+            assertEquals(5, results.size());
+            assertTrue(results.stream().allMatch(result -> result == null));
+        }
+
+        assertEquals(15, greenMail.getReceivedMessages().length);
+        assertEquals(1.0, connectionsOpened());
+    }
+
+    @Test
+    void opensNoMoreConnectionsThanThePoolSize() {
+        Flux.range(0, 8)
+                .flatMap(batch -> pool.send(messages(3)))
+                .blockLast();
+
+        assertEquals(24, greenMail.getReceivedMessages().length);
+        assertTrue(connectionsOpened() <= 2.0);
+    }
+
+    @Test
+    void reconnectsWhenTheServerDropsAnIdleConnection() {
+        pool.send(messages(1)).block();
+        greenMail.reset(); // restarts the server, closing the pooled connection
+
+        List<MessagingException> results = pool.send(messages(2)).block();
+
+        assertTrue(results.stream().allMatch(result -> result == null));
+        assertEquals(2, greenMail.getReceivedMessages().length);
+        assertEquals(2.0, connectionsOpened());
+    }
+
+    private double connectionsOpened() {
+        return meterRegistry.get("qlnk.email.connections.opened").counter().count();
+    }
+
+    private List<MimeMessage> messages(int count) {
+        List<MimeMessage> messages = new ArrayList<>(count);
+        IntStream.range(0, count).forEach(i -> {
+            try {
+                MimeMessage message = javaMailSender.createMimeMessage();
+                MimeMessageHelper helper = new MimeMessageHelper(message, "UTF-8");
+                helper.setFrom("alerts@localhost");
+                helper.setTo("user" + i + "@localhost");
+                helper.setSubject("Alert " + i);
+                helper.setText("value out of range");
+                messages.add(message);
+            } catch (MessagingException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        return messages;
+    }
+}
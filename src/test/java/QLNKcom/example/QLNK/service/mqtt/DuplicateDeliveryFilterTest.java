@@ -0,0 +1,180 @@
+package QLNKcom.example.QLNK.service.mqtt;
+
+import QLNKcom.example.QLNK.enums.IngestDedupMode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+class DuplicateDeliveryFilterTest {
+
+    private static final String TOPIC = "user/feeds/cay-1.temp/json";
+    private static final Instant CREATED_AT = Instant.parse("2025-03-01T08:15:30Z");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void dropsARedeliveryWithinTheWindow() {
+        DuplicateDeliveryFilter filter = filter(IngestDedupMode.MEMORY, Duration.ofMinutes(10), 100, null);
+
+        assertTrue(first(filter, TOPIC, "id-1"));
+        assertFalse(first(filter, TOPIC, "id-1"));
+        assertTrue(first(filter, TOPIC, "id-2"));
+        assertTrue(first(filter, "user/feeds/cay-1.hum/json", "id-1"));
+        assertEquals(1.0, meterRegistry.get("qlnk.ingest.duplicates").tag("source", "memory").counter().count());
+    }
+
+    @Test
+    void tellsReadingsWithoutIdApartByPayloadAndTime() {
+        DuplicateDeliveryFilter filter = filter(IngestDedupMode.MEMORY, Duration.ofMinutes(10), 100, null);
+        FeedPayload reading = new FeedPayload(27.5, CREATED_AT, null);
+
+        assertTrue(filter.isFirstDelivery(TOPIC, reading, "{\"value\":27.5}").block());
+        assertFalse(filter.isFirstDelivery(TOPIC, reading, "{\"value\":27.5}").block());
+        assertTrue(filter.isFirstDelivery(TOPIC, new FeedPayload(27.5, CREATED_AT.plusSeconds(1), null), "{\"value\":27.5}").block());
+    }
+
+    @Test
+    void processesEveryReadingWithoutIdOrTime() {
+        DuplicateDeliveryFilter filter = filter(IngestDedupMode.MEMORY, Duration.ofMinutes(10), 100, null);
+        FeedPayload reading = new FeedPayload(1.0, null, null);
+
+        assertTrue(filter.isFirstDelivery(TOPIC, reading, "1").block());
+        assertTrue(filter.isFirstDelivery(TOPIC, reading, "1").block());
+    }
+
+    @Test
+    void processesEverythingWhenOff() {
+        DuplicateDeliveryFilter filter = filter(IngestDedupMode.OFF, Duration.ofMinutes(10), 100, null);
+
+        assertTrue(first(filter, TOPIC, "id-1"));
+        assertTrue(first(filter, TOPIC, "id-1"));
+    }
+
+    @Test
+    void forgetsFingerprintsPastTheWindow() throws InterruptedException {
+        DuplicateDeliveryFilter filter = filter(IngestDedupMode.MEMORY, Duration.ofMillis(50), 100, null);
+
+        assertTrue(first(filter, TOPIC, "id-1"));
+        Thread.sleep(100);
+        assertTrue(first(filter, TOPIC, "id-1"));
+    }
+
+    @Test
+    void forgetsTheOldestFingerprintsOverTheBound() {
+        DuplicateDeliveryFilter filter = filter(IngestDedupMode.MEMORY, Duration.ofMinutes(10), 2, null);
+
+        assertTrue(first(filter, TOPIC, "id-1"));
+        assertTrue(first(filter, TOPIC, "id-2"));
+        assertTrue(first(filter, TOPIC, "id-3"));
+
+        assertFalse(first(filter, TOPIC, "id-3"));
+        assertTrue(first(filter, TOPIC, "id-1"));
+    }
+
+    @Test
+    void staysWithinTheBoundAcrossShards() {
+        DuplicateDeliveryFilter filter = filter(IngestDedupMode.MEMORY, Duration.ofMinutes(10), 4096, null);
+
+        for (int i = 0; i < 20_000; i++) {
+            assertTrue(first(filter, TOPIC, "id-" + i));
+        }
+        double entries = meterRegistry.get("qlnk.ingest.dedup.entries").gauge().value();
+        assertTrue(entries > 4096 * 0.9 && entries <= 4096, "entries: " + entries);
+        assertFalse(first(filter, TOPIC, "id-19999"));
+    }
+
+    @Test
+    void letsOnlyOneOfConcurrentDeliveriesThrough() throws Exception {
+        DuplicateDeliveryFilter filter = filter(IngestDedupMode.MEMORY, Duration.ofMinutes(10), 100_000, null);
+        int lanes = 8;
+        int ids = 5_000;
+        ExecutorService executor = Executors.newFixedThreadPool(lanes);
+        CountDownLatch ready = new CountDownLatch(1);
+        List<Future<Integer>> firsts = new ArrayList<>();
+        for (int lane = 0; lane < lanes; lane++) {
+            firsts.add(executor.submit(() -> {
+                ready.await();
+                int count = 0;
+                for (int i = 0; i < ids; i++) {
+                    if (first(filter, TOPIC, "id-" + i)) {
+                        count++;
+                    }
+                }
+                return count;
+            }));
+        }
+        ready.countDown();
+
+        int total = 0;
+        for (Future<Integer> future : firsts) {
+            total += future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        assertEquals(ids, total);
+    }
+
+    @Test
+    void dropsARedeliverySeenByAnotherNode() {
+        ReactiveValueOperations<String, String> values = values(Mono.just(false));
+        DuplicateDeliveryFilter filter = filter(IngestDedupMode.REDIS, Duration.ofMinutes(10), 100, values);
+
+        assertFalse(first(filter, TOPIC, "id-1"));
+        assertEquals(1.0, meterRegistry.get("qlnk.ingest.duplicates").tag("source", "redis").counter().count());
+    }
+
+    @Test
+    void processesTheMessageWhenRedisFails() {
+        ReactiveValueOperations<String, String> values = values(Mono.error(new IllegalStateException("down")));
+        DuplicateDeliveryFilter filter = filter(IngestDedupMode.REDIS, Duration.ofMinutes(10), 100, values);
+
+        assertTrue(first(filter, TOPIC, "id-1"));
+        // still remembered in memory
+        assertFalse(first(filter, TOPIC, "id-1"));
+    }
+
+    private static boolean first(DuplicateDeliveryFilter filter, String topic, String id) {
+        return filter.isFirstDelivery(topic, new FeedPayload(1.0, CREATED_AT, id), "{}").block();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ReactiveValueOperations<String, String> values(Mono<Boolean> setIfAbsent) {
+        ReactiveValueOperations<String, String> values = Mockito.mock(ReactiveValueOperations.class);
+        when(values.setIfAbsent(anyString(), eq("1"), any(Duration.class))).thenReturn(setIfAbsent);
+        return values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private DuplicateDeliveryFilter filter(IngestDedupMode mode, Duration window, int maxEntries,
+                                           ReactiveValueOperations<String, String> values) {
+        ReactiveRedisTemplate<String, String> redisTemplate = Mockito.mock(ReactiveRedisTemplate.class);
+        when(redisTemplate.opsForValue()).thenReturn(values);
+        DuplicateDeliveryFilter filter = new DuplicateDeliveryFilter(redisTemplate, meterRegistry);
+        ReflectionTestUtils.setField(filter, "mode", mode);
+        ReflectionTestUtils.setField(filter, "window", window);
+        ReflectionTestUtils.setField(filter, "maxEntries", maxEntries);
+        filter.start();
+        return filter;
+    }
+}
@@ -0,0 +1,119 @@
+package QLNKcom.example.QLNK.service.mqtt;
+
+import QLNKcom.example.QLNK.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.integration.mqtt.core.Mqttv3ClientManager;
+import org.springframework.integration.mqtt.outbound.MqttPahoMessageHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MqttConnectionPoolTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<Mqttv3ClientManager> clientManagers = new ArrayList<>();
+    private MqttConnectionPool pool;
+
+    @BeforeEach
+    void setUp() {
+        MqttClientFactory clientFactory = Mockito.mock(MqttClientFactory.class);
+        when(clientFactory.createClientManager(anyString(), anyString())).thenAnswer(invocation -> {
+            Mqttv3ClientManager clientManager = Mockito.mock(Mqttv3ClientManager.class);
+            synchronized (clientManagers) {
+                clientManagers.add(clientManager);
+            }
+            return clientManager;
+        });
+        MqttAdapterFactory adapterFactory = Mockito.mock(MqttAdapterFactory.class);
+        when(adapterFactory.createMqttHandler(any())).thenAnswer(invocation -> Mockito.mock(MqttPahoMessageHandler.class));
+        pool = new MqttConnectionPool(clientFactory, adapterFactory, meterRegistry);
+        ReflectionTestUtils.setField(pool, "publishIdleTtl", Duration.ofMinutes(1));
+    }
+
+    @Test
+    void keepsAPublishOnlyConnectionForTheNextCommands() {
+        pool.publish(user("u1"), "nguyenvana/feeds/cay-1.fan", "1.0");
+        pool.publish(user("u2"), "nguyenvana/feeds/cay-1.pump", "0.0");
+        pool.closeIdlePublishers();
+
+        assertEquals(1, clientManagers.size());
+        assertEquals(1, pool.size());
+        assertEquals(2.0, meterRegistry.get("qlnk.mqtt.pool.messages.published").counter().count());
+    }
+
+    @Test
+    void closesAPublishOnlyConnectionOnceIdle() {
+        ReflectionTestUtils.setField(pool, "publishIdleTtl", Duration.ZERO);
+        pool.publish(user("u1"), "nguyenvana/feeds/cay-1.fan", "1.0");
+        pool.closeIdlePublishers();
+
+        assertEquals(0, pool.size());
+        verify(clientManagers.get(0)).stop();
+    }
+
+    @Test
+    void keepsAnIdlePublishConnectionThatAUserStillHolds() {
+        ReflectionTestUtils.setField(pool, "publishIdleTtl", Duration.ZERO);
+        PooledMqttConnection held = pool.acquire(user("u1"));
+        pool.publish(user("u2"), "nguyenvana/feeds/cay-1.fan", "1.0");
+        pool.closeIdlePublishers();
+
+        assertSame(held, pool.find(user("u1")).orElseThrow());
+        assertEquals(1.0, meterRegistry.get("qlnk.mqtt.pool.users").gauge().value());
+
+        pool.release("u1");
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    void sharesOneConnectionWhenUsersOfAnAccountConnectAtOnce() throws Exception {
+        int users = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(users);
+        CountDownLatch ready = new CountDownLatch(1);
+        List<Future<PooledMqttConnection>> acquired = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            User user = user("u" + i);
+            acquired.add(executor.submit(() -> {
+                ready.await();
+                return pool.acquire(user);
+            }));
+        }
+        ready.countDown();
+
+        PooledMqttConnection connection = acquired.get(0).get(5, TimeUnit.SECONDS);
+        for (Future<PooledMqttConnection> future : acquired) {
+            assertSame(connection, future.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        assertEquals(1, pool.size());
+        assertEquals(users, connection.getHolders().size());
+        // connections that lost the race to the map are closed again
+        long stopped = clientManagers.stream()
+                .filter(clientManager -> Mockito.mockingDetails(clientManager).getInvocations().stream()
+                        .anyMatch(invocation -> invocation.getMethod().getName().equals("stop")))
+                .count();
+        assertEquals(clientManagers.size() - 1, stopped);
+    }
+
+    private static User user(String id) {
+        return User.builder().id(id).username("nguyenvana").apikey("aio_key").build();
+    }
+}
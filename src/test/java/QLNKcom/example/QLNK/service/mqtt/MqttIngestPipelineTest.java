@@ -0,0 +1,142 @@
+package QLNKcom.example.QLNK.service.mqtt;
+
+import QLNKcom.example.QLNK.enums.IngestOverflowPolicy;
+import QLNKcom.example.QLNK.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.integration.mqtt.support.MqttHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+class MqttIngestPipelineTest {
+
+    private static final User USER = User.builder().id("u1").username("user").build();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<String> processed = Collections.synchronizedList(new ArrayList<>());
+    private MqttIngestPipeline pipeline;
+
+    @AfterEach
+    void tearDown() {
+        pipeline.stop();
+    }
+
+    @Test
+    void keepsTheOrderOfEachTopic() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(200);
+        MqttMessageHandler handler = Mockito.mock(MqttMessageHandler.class);
+        when(handler.processMessage(any(), anyString(), anyString())).thenAnswer(invocation -> Mono
+                .fromRunnable(() -> {
+                    processed.add(invocation.getArgument(1) + " " + invocation.getArgument(2));
+                    done.countDown();
+                })
+                .subscribeOn(Schedulers.parallel()));
+        pipeline = pipeline(handler, 4, 1_000, IngestOverflowPolicy.BLOCK);
+
+        for (int i = 0; i < 100; i++) {
+            pipeline.submit(USER, message("user/feeds/cay-1.temp/json", Integer.toString(i)));
+            pipeline.submit(USER, message("user/feeds/cay-1.hum/json", Integer.toString(i)));
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(inOrder("user/feeds/cay-1.temp/json", 0, 100), ofTopic("user/feeds/cay-1.temp/json"));
+        assertEquals(inOrder("user/feeds/cay-1.hum/json", 0, 100), ofTopic("user/feeds/cay-1.hum/json"));
+    }
+
+    @Test
+    void dropsTheOldestQueuedMessagesWhenFull() throws InterruptedException {
+        List<String> kept = fillPastCapacity(IngestOverflowPolicy.DROP_OLDEST);
+
+        // 0 was being processed, 1 and 2 were evicted to make room for 4 and 5
+        assertEquals(List.of("0", "3", "4", "5"), kept);
+        assertEquals(2.0, meterRegistry.get("qlnk.ingest.dropped").counter().count());
+    }
+
+    @Test
+    void dropsIncomingMessagesWhenFull() throws InterruptedException {
+        List<String> kept = fillPastCapacity(IngestOverflowPolicy.DROP_LATEST);
+
+        // 0 was being processed, 4 and 5 found the queue full
+        assertEquals(List.of("0", "1", "2", "3"), kept);
+        assertEquals(2.0, meterRegistry.get("qlnk.ingest.dropped").counter().count());
+    }
+
+    /**
+     * Holds the only lane on the first message while five more are submitted to a queue of three.
+     */
+    private List<String> fillPastCapacity(IngestOverflowPolicy policy) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(4);
+        MqttMessageHandler handler = Mockito.mock(MqttMessageHandler.class);
+        when(handler.processMessage(any(), anyString(), anyString())).thenAnswer(invocation -> Mono
+                .fromRunnable(() -> {
+                    started.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    processed.add(invocation.getArgument(2));
+                    done.countDown();
+                })
+                .subscribeOn(Schedulers.boundedElastic()));
+        pipeline = pipeline(handler, 1, 3, policy);
+
+        String topic = "user/feeds/cay-1.temp/json";
+        pipeline.submit(USER, message(topic, "0"));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        for (int i = 1; i <= 5; i++) {
+            pipeline.submit(USER, message(topic, Integer.toString(i)));
+        }
+        release.countDown();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        Thread.sleep(100); // nothing else arrives
+        return List.copyOf(processed);
+    }
+
+    private MqttIngestPipeline pipeline(MqttMessageHandler handler, int lanes, int capacity, IngestOverflowPolicy policy) {
+        MqttIngestPipeline pipeline = new MqttIngestPipeline(handler, meterRegistry);
+        ReflectionTestUtils.setField(pipeline, "laneCount", lanes);
+        ReflectionTestUtils.setField(pipeline, "capacity", capacity);
+        ReflectionTestUtils.setField(pipeline, "overflowPolicy", policy);
+        pipeline.start();
+        return pipeline;
+    }
+
+    private List<String> ofTopic(String topic) {
+        synchronized (processed) {
+            return processed.stream().filter(line -> line.startsWith(topic + " ")).toList();
+        }
+    }
+
+    private static List<String> inOrder(String topic, int from, int to) {
+        List<String> lines = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            lines.add(topic + " " + i);
+        }
+        return lines;
+    }
+
+    private static Message<String> message(String topic, String payload) {
+        return MessageBuilder.withPayload(payload).setHeader(MqttHeaders.RECEIVED_TOPIC, topic).build();
+    }
+}
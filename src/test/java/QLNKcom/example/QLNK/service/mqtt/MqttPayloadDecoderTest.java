@@ -0,0 +1,65 @@
+package QLNKcom.example.QLNK.service.mqtt;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MqttPayloadDecoderTest {
+
+    private final MqttPayloadDecoder decoder = new MqttPayloadDecoder();
+
+    @Test
+    void decodesValueTimeAndId() {
+        FeedPayload payload = decoder.decode(
+                "{\"feed\":{\"key\":\"temp\"},\"data\":{\"id\":\"0F3\",\"value\":\"27.5\",\"created_at\":\"2025-03-01T08:15:30Z\"}}");
+
+        assertNotNull(payload);
+        assertEquals(27.5, payload.getValue());
+        assertEquals(Instant.parse("2025-03-01T08:15:30Z"), payload.getCreatedAt());
+        assertEquals("0F3", payload.getId());
+    }
+
+    @Test
+    void decodesBooleansAndNumbers() {
+        assertEquals(1.0, decoder.decode("{\"data\":{\"value\":true}}").getValue());
+        assertEquals(0.0, decoder.decode("{\"data\":{\"value\":\"false\"}}").getValue());
+        assertEquals(-3.0, decoder.decode("{\"data\":{\"value\":-3}}").getValue());
+    }
+
+    @Test
+    void fallsBackToTheFullParserForOtherTimeFormats() {
+        FeedPayload payload = decoder.decode("{\"data\":{\"value\":1,\"created_at\":\"2025-03-01T08:15:30.250Z\"}}");
+
+        assertEquals(Instant.parse("2025-03-01T08:15:30.250Z"), payload.getCreatedAt());
+    }
+
+    @Test
+    void dropsInvalidTimes() {
+        assertNull(createdAt("2025-13-01T08:15:30Z"));
+        assertNull(createdAt("2025-02-30T08:15:30Z"));
+        assertNull(createdAt("2025-03-01T24:15:30Z"));
+        assertNull(createdAt("2025-03-01T-1:15:30Z"));
+        assertNull(createdAt("2025-03-01T08:-1:30Z"));
+        assertNull(createdAt("2025-03-01T08:15:-1Z"));
+    }
+
+    @Test
+    void rejectsMissingOrNonFiniteValues() {
+        assertNull(decoder.decode("{\"data\":{\"created_at\":\"2025-03-01T08:15:30Z\"}}"));
+        assertNull(decoder.decode("{\"data\":{\"value\":\"warm\"}}"));
+        assertNull(decoder.decode("{\"data\":{\"value\":\"NaN\"}}"));
+        assertNull(decoder.decode("{\"data\":{\"value\":\"Infinity\"}}"));
+        assertNull(decoder.decode("{\"data\":{\"value\":\"-Infinity\"}}"));
+        assertNull(decoder.decode("{\"data\":{\"value\":1e400}}"));
+        assertNull(decoder.decode("{\"data\":{\"value\":1"));
+        assertNull(decoder.decode("[]"));
+    }
+
+    private Instant createdAt(String text) {
+        return decoder.decode("{\"data\":{\"value\":1,\"created_at\":\"" + text + "\"}}").getCreatedAt();
+    }
+}
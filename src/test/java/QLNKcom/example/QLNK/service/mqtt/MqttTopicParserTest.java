@@ -0,0 +1,51 @@
+package QLNKcom.example.QLNK.service.mqtt;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MqttTopicParserTest {
+
+    private final MqttTopicParser parser = new MqttTopicParser();
+
+    @Test
+    void parsesAFeedTopic() {
+        FeedTopic topic = parser.parse("nguyenvana/feeds/cay-1.temp/json");
+
+        assertNotNull(topic);
+        assertEquals("nguyenvana", topic.getUsername());
+        assertEquals("cay-1", topic.getGroupKey());
+        assertEquals("temp", topic.getFeedKey());
+        assertEquals("cay-1.temp", topic.getFullFeedKey());
+    }
+
+    @Test
+    void keepsOnlyTheFirstTwoKeysOfAFeed() {
+        FeedTopic topic = parser.parse("user/feeds/cay-1.temp.extra/json");
+
+        assertNotNull(topic);
+        assertEquals("temp", topic.getFeedKey());
+        assertEquals("cay-1.temp", topic.getFullFeedKey());
+    }
+
+    @Test
+    void rejectsTopicsWithoutTheFeedsSegment() {
+        assertNull(parser.parse("user/fee/g.t/json"));
+        assertNull(parser.parse("user//g.t/json"));
+        assertNull(parser.parse("user/feedsx/g.t/json"));
+        assertNull(parser.parse("user/groups/g.t/json"));
+    }
+
+    @Test
+    void rejectsMalformedTopics() {
+        assertNull(parser.parse("/feeds/g.t/json"));
+        assertNull(parser.parse("user/feeds"));
+        assertNull(parser.parse("user/feeds/g.t"));
+        assertNull(parser.parse("user/feeds/g.t/"));
+        assertNull(parser.parse("user/feeds/.t/json"));
+        assertNull(parser.parse("user/feeds/g./json"));
+        assertNull(parser.parse("user/feeds/gt/json"));
+    }
+}
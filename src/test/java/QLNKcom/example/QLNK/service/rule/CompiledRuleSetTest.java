@@ -0,0 +1,94 @@
+package QLNKcom.example.QLNK.service.rule;
+
+import QLNKcom.example.QLNK.enums.FeedState;
+import QLNKcom.example.QLNK.model.data.FeedRule;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CompiledRuleSetTest {
+
+    @Test
+    void holdsTheStateInsideTheBand() {
+        CompiledRuleSet rules = compile(rule(10.0, 30.0, 2.0), 0);
+
+        assertEquals(CompiledRuleSet.ABOVE | CompiledRuleSet.ABOVE_ENTERED, rules.evaluate(0, 31));
+        assertEquals(CompiledRuleSet.ABOVE, rules.evaluate(0, 31));
+        assertEquals(0, rules.evaluate(0, 29));     // inside the band, still violating
+        assertEquals(FeedState.VIOLATING, rules.rule(0).getAboveState());
+        assertEquals(CompiledRuleSet.ABOVE_CLEARED, rules.evaluate(0, 28));
+        assertEquals(FeedState.NORMAL, rules.rule(0).getAboveState());
+        assertEquals(0, rules.evaluate(0, 29));
+
+        assertEquals(CompiledRuleSet.BELOW | CompiledRuleSet.BELOW_ENTERED, rules.evaluate(0, 9));
+        assertEquals(0, rules.evaluate(0, 11));
+        assertEquals(CompiledRuleSet.BELOW_CLEARED, rules.evaluate(0, 12));
+    }
+
+    @Test
+    void usesTheDefaultBandForRulesWithoutOne() {
+        CompiledRuleSet rules = compile(rule(10.0, 30.0, null), 1.0);
+
+        rules.evaluate(0, 31);
+        assertEquals(0, rules.evaluate(0, 29.5));
+        assertEquals(CompiledRuleSet.ABOVE_CLEARED, rules.evaluate(0, 29));
+    }
+
+    @Test
+    void keepsTheCeilingResetAboveTheFloor() {
+        // a band of 25 would put the ceiling reset at 5, below the floor
+        CompiledRuleSet rules = compile(rule(10.0, 30.0, 25.0), 0);
+
+        rules.evaluate(0, 31);
+        assertEquals(0, rules.evaluate(0, 21));
+        // narrowed to half the gap: the above side clears at 20 without the value going below the floor
+        assertEquals(CompiledRuleSet.ABOVE_CLEARED, rules.evaluate(0, 20));
+        assertEquals(FeedState.NORMAL, rules.rule(0).getBelowState());
+    }
+
+    @Test
+    void keepsTheFloorResetBelowTheCeiling() {
+        CompiledRuleSet rules = compile(rule(10.0, 30.0, 25.0), 0);
+
+        rules.evaluate(0, 9);
+        assertEquals(0, rules.evaluate(0, 19));
+        assertEquals(CompiledRuleSet.BELOW_CLEARED, rules.evaluate(0, 20));
+        assertEquals(FeedState.NORMAL, rules.rule(0).getAboveState());
+    }
+
+    @Test
+    void clearsTheBelowSideWhenJumpingAboveTheCeiling() {
+        CompiledRuleSet rules = compile(rule(10.0, 30.0, 2.0), 0);
+
+        rules.evaluate(0, 5);
+        assertEquals(CompiledRuleSet.ABOVE | CompiledRuleSet.ABOVE_ENTERED | CompiledRuleSet.BELOW_CLEARED,
+                rules.evaluate(0, 35));
+    }
+
+    @Test
+    void keepsTheBandOfAOneSidedRule() {
+        CompiledRuleSet rules = compile(rule(null, 30.0, 25.0), 0);
+
+        rules.evaluate(0, 31);
+        assertEquals(0, rules.evaluate(0, 10));
+        assertEquals(CompiledRuleSet.ABOVE_CLEARED, rules.evaluate(0, 5));
+    }
+
+    private static CompiledRuleSet compile(FeedRule rule, double defaultHysteresis) {
+        return CompiledRuleSet.compile(List.of(rule), defaultHysteresis);
+    }
+
+    private static FeedRule rule(Double floor, Double ceiling, Double hysteresis) {
+        return FeedRule.builder()
+                .id("rule-1")
+                .inputFeed("cay-1.temp")
+                .floor(floor)
+                .ceiling(ceiling)
+                .hysteresis(hysteresis)
+                .aboveState(FeedState.NORMAL)
+                .belowState(FeedState.NORMAL)
+                .build();
+    }
+}
@@ -0,0 +1,100 @@
+package QLNKcom.example.QLNK.service.rule;
+
+import QLNKcom.example.QLNK.model.data.FeedRule;
+import QLNKcom.example.QLNK.repository.FeedRuleRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FeedRuleIndexTest {
+
+    private static final String EMAIL = "nguyenvana@example.com";
+
+    private final FeedRuleRepository feedRuleRepository = Mockito.mock(FeedRuleRepository.class);
+    private final ReactiveMongoTemplate reactiveMongoTemplate = Mockito.mock(ReactiveMongoTemplate.class, RETURNS_DEEP_STUBS);
+    private FeedRuleIndex index;
+
+    @AfterEach
+    void tearDown() {
+        if (index != null) {
+            index.stop();
+        }
+    }
+
+    @Test
+    void reloadsTheIndexWhenTheChangeStreamIsReopened() {
+        when(feedRuleRepository.findAll()).thenReturn(
+                Flux.just(rule("rule-1", "cay-1.temp")),
+                Flux.just(rule("rule-2", "cay-1.hum")));
+        Flux<ChangeStreamEvent<FeedRule>> failed = Flux.error(new IllegalStateException("cursor killed"));
+        when(reactiveMongoTemplate.changeStream(FeedRule.class).withOptions(any()).watchCollection("feedRule").listen())
+                .thenReturn(failed, Flux.never());
+
+        index = index(true, false);
+        index.load();
+
+        verify(feedRuleRepository, timeout(5000).times(2)).findAll();
+        await(() -> index.find(EMAIL, "cay-1.hum").size() == 1);
+        assertEquals(0, index.find(EMAIL, "cay-1.temp").size());
+    }
+
+    @Test
+    void doesNotWatchWithoutTheChangeStream() {
+        when(feedRuleRepository.findAll()).thenReturn(Flux.just(rule("rule-1", "cay-1.temp")));
+
+        index = index(false, false);
+        index.load();
+
+        assertEquals(1, index.find(EMAIL, "cay-1.temp").rules().size());
+        verify(feedRuleRepository, times(1)).findAll();
+    }
+
+    @Test
+    void refusesClusterModeWithoutTheChangeStream() {
+        index = index(false, true);
+
+        assertThrows(IllegalStateException.class, index::load);
+    }
+
+    private FeedRuleIndex index(boolean changeStream, boolean cluster) {
+        FeedRuleIndex index = new FeedRuleIndex(feedRuleRepository, reactiveMongoTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(index, "changeStreamEnabled", changeStream);
+        ReflectionTestUtils.setField(index, "clusterEnabled", cluster);
+        return index;
+    }
+
+    private static FeedRule rule(String id, String inputFeed) {
+        return FeedRule.builder()
+                .id(id)
+                .email(EMAIL)
+                .inputFeed(inputFeed)
+                .ceiling(30.0)
+                .build();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met within 5s");
+            Thread.onSpinWait();
+        }
+    }
+}